@@ -0,0 +1,123 @@
+/**
+ *
+ */
+package com.deviget.minesweeperserver.api;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.util.unit.DataSize;
+
+import com.deviget.minesweeperserver.api.Game.Cell;
+
+/**
+ * @author fernando
+ * Heap against off-heap boards (see {@link OffHeapBoardArena}) with many live games.
+ * Each operation replaces a random live game with a new one and plays its first move,
+ * so old games die while the rest stay live as they would on a busy node. Compare
+ * gc.count and gc.time reported by -prof gc, along with heap left after a full
+ * collection and collection pauses printed at the end of each trial. Small boards, whose
+ * cells are a single array either way, don't gain from it, see minesweeper.board.off-heap.min-size.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g", "-XX:MaxDirectMemorySize=4g", "-XX:+UseG1GC"})
+@State(Scope.Benchmark)
+public class BoardStorageBenchmarks {
+
+	@Param({"heap", "off-heap"})
+	public String storage;
+
+	@Param({"30x16x99", "100x100x1600", "1000x1000x160000"})
+	public String board;
+
+	/**
+	 * Board bytes kept live, whatever the board size
+	 */
+	@Param({"268435456"})
+	public long liveBytes;
+
+	private short rows;
+
+	private short columns;
+
+	private int mines;
+
+	private Cell.Coordinates firstMove;
+
+	private Game[] games;
+
+	private SplittableRandom rnd;
+
+	private OffHeapBoardArena arena;
+
+	@Setup(Level.Trial)
+	public void setUp() throws WrongParametersException {
+		String[] dimensions = board.split("x");
+		rows = Short.parseShort(dimensions[0]);
+		columns = Short.parseShort(dimensions[1]);
+		mines = Integer.parseInt(dimensions[2]);
+		firstMove = new Cell.Coordinates((short)(rows / 2), (short)(columns / 2));
+		if("off-heap".equals(storage)) {
+			//every board off-heap, slices of dead boards come back only once collections find them
+			arena = new OffHeapBoardArena(true, DataSize.ofBytes(0L), DataSize.ofMegabytes(4L),
+				DataSize.ofBytes(8 * liveBytes));
+			arena.activate();
+		}
+		rnd = new SplittableRandom(7L);
+		games = new Game[(int)(liveBytes / (rows * columns))];
+		for(int ix = 0; ix < games.length; ix++) {
+			games[ix] = newGame();
+		}
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		System.gc();
+		Runtime runtime = Runtime.getRuntime();
+		System.out.println();
+		System.out.println("Live games " + games.length + ", heap used after full GC "
+			+ (runtime.totalMemory() - runtime.freeMemory()) / (1024 * 1024) + "MB");
+		for(GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+			System.out.println(collector.getName() + ": " + collector.getCollectionCount() + " collections, "
+				+ collector.getCollectionTime() + "ms");
+		}
+		if(arena != null) {
+			System.out.println("Off-heap reserved " + arena.getReserved() / (1024 * 1024) + "MB, allocated "
+				+ arena.getAllocated() + ", recycled " + arena.getRecycled() + ", fallbacks " + arena.getFallbacks());
+			arena.deactivate();
+		}
+	}
+
+	private Game newGame() throws WrongParametersException {
+		Game game = Game.createGame(rows, columns, mines, true);
+		game.revealCell(firstMove);
+		return game;
+	}
+
+	@Benchmark
+	public Game replaceGame() throws WrongParametersException {
+		int ix = rnd.nextInt(games.length);
+		Game replaced = games[ix];
+		games[ix] = newGame();
+		return replaced;
+	}
+
+}
@@ -0,0 +1,166 @@
+/**
+ *
+ */
+package com.deviget.minesweeperserver.api;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import com.deviget.minesweeperserver.api.Game.Cell;
+import com.deviget.minesweeperserver.api.Game.RevealResult;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+
+/**
+ * @author fernando
+ * Game engine benchmarks, run with the benchmarks profile (see pom.xml) and compared
+ * against src/jmh/baseline.json. Boards are given as rows x columns x mines.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class GameBenchmarks {
+
+	@Param({"9x9x10", "30x16x99", "100x100x1600", "1000x1000x160000"})
+	public String board;
+
+	private short rows;
+
+	private short columns;
+
+	private int mines;
+
+	/**
+	 * Started game shared by benchmarks which don't finish it
+	 */
+	private Game startedGame;
+
+	private Cell.Coordinates unrevealed;
+
+	private ObjectMapper objectMapper;
+
+	@Setup(Level.Trial)
+	public void setUp() throws WrongParametersException {
+		String[] dimensions = board.split("x");
+		rows = Short.parseShort(dimensions[0]);
+		columns = Short.parseShort(dimensions[1]);
+		mines = Integer.parseInt(dimensions[2]);
+		startedGame = Game.createGame(rows, columns, mines);
+		startedGame.revealCell(numberedCell(startedGame));
+		unrevealed = startedGame.getCells().stream().filter(cell -> !cell.isRevealed()).findFirst().get().getCoordinates();
+		//same settings as the application
+		objectMapper = Jackson2ObjectMapperBuilder.json().build();
+		objectMapper.disable(SerializationFeature.FAIL_ON_EMPTY_BEANS);
+	}
+
+	/**
+	 * @param game
+	 * @return a safe cell with adjacent mines, revealing it reveals no other cell
+	 */
+	private static Cell.Coordinates numberedCell(Game game) {
+		return game.getCells().stream().filter(cell -> !cell.isHasMine() && cell.getAdjMinesNumber() > 0)
+			.findFirst().get().getCoordinates();
+	}
+
+	/**
+	 * @author fernando
+	 * Just created game, one per invocation
+	 */
+	@State(Scope.Thread)
+	public static class CreatedGame {
+
+		private Game game;
+
+		private Cell.Coordinates numbered;
+
+		@Setup(Level.Invocation)
+		public void setUp(GameBenchmarks benchmarks) throws WrongParametersException {
+			game = Game.createGame(benchmarks.rows, benchmarks.columns, benchmarks.mines);
+			numbered = numberedCell(game);
+		}
+
+	}
+
+	/**
+	 * @author fernando
+	 * Lazily generated game with a single mine, so first reveal cascades over the whole board
+	 */
+	@State(Scope.Thread)
+	public static class EmptyGame {
+
+		private Game game;
+
+		private Cell.Coordinates center;
+
+		@Setup(Level.Invocation)
+		public void setUp(GameBenchmarks benchmarks) throws WrongParametersException {
+			game = Game.createGame(benchmarks.rows, benchmarks.columns, 1, true);
+			center = new Cell.Coordinates((short)(benchmarks.rows / 2 + 1), (short)(benchmarks.columns / 2 + 1));
+		}
+
+	}
+
+	@Benchmark
+	public Game createGame() throws WrongParametersException {
+		return Game.createGame(rows, columns, mines);
+	}
+
+	@Benchmark
+	public RevealResult revealCell(CreatedGame created) throws WrongParametersException {
+		return created.game.revealCell(created.numbered);
+	}
+
+	@Benchmark
+	public RevealResult cascadingReveal(EmptyGame empty) throws WrongParametersException {
+		return empty.game.revealCell(empty.center);
+	}
+
+	@Benchmark
+	public long flagCell() throws WrongParametersException {
+		startedGame.flagCell(unrevealed);
+		return startedGame.getVersion();
+	}
+
+	@Benchmark
+	public List<Cell> getCells() {
+		return startedGame.getCells();
+	}
+
+	@Benchmark
+	public byte[] serializeGame() throws JsonProcessingException {
+		return objectMapper.writeValueAsBytes(startedGame);
+	}
+
+	@Benchmark
+	public byte[] serializeGameRows() throws JsonProcessingException {
+		return objectMapper.writer().withAttribute(GameSerializer.ROWS, Boolean.TRUE).writeValueAsBytes(startedGame);
+	}
+
+	@Benchmark
+	public byte[] serializeGameBinary() throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		GameWireCodec.encode(startedGame, out);
+		return out.toByteArray();
+	}
+
+}
@@ -0,0 +1,98 @@
+/**
+ *
+ */
+package com.deviget.minesweeperserver.loadtest;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * @author fernando
+ * Latencies recorded per endpoint, one recorder per player so recording takes no lock.
+ * Recorders are merged once players are done.
+ */
+class LatencyRecorder {
+
+	private final Map<String, Samples> samples = new TreeMap<>();
+
+	/**
+	 * @author fernando
+	 * Growable array of latencies in nanoseconds
+	 */
+	private static class Samples {
+
+		private long[] nanos = new long[1024];
+
+		private int size;
+
+		void add(long latency) {
+			if(size == nanos.length) {
+				nanos = Arrays.copyOf(nanos, size * 2);
+			}
+			nanos[size++] = latency;
+		}
+
+		void addAll(Samples other) {
+			for(int ix = 0; ix < other.size; ix++) {
+				add(other.nanos[ix]);
+			}
+		}
+
+	}
+
+	/**
+	 * @param endpoint
+	 * @param nanos
+	 */
+	void record(String endpoint, long nanos) {
+		samples.computeIfAbsent(endpoint, key -> new Samples()).add(nanos);
+	}
+
+	/**
+	 * @param other - recorder merged into this one
+	 */
+	void merge(LatencyRecorder other) {
+		for(Map.Entry<String, Samples> entry : other.samples.entrySet()) {
+			samples.computeIfAbsent(entry.getKey(), key -> new Samples()).addAll(entry.getValue());
+		}
+	}
+
+	/**
+	 * @return total number of requests recorded
+	 */
+	long count() {
+		return samples.values().stream().mapToLong(endpointSamples -> endpointSamples.size).sum();
+	}
+
+	/**
+	 * @param seconds - time requests were recorded for
+	 * @return per endpoint report of requests, throughput and latency percentiles
+	 */
+	String report(double seconds) {
+		StringBuilder builder = new StringBuilder(String.format("%-8s %10s %10s %10s %10s %10s %10s%n",
+			"endpoint", "requests", "req/s", "p50 ms", "p99 ms", "p999 ms", "max ms"));
+		for(Map.Entry<String, Samples> entry : samples.entrySet()) {
+			long[] sorted = Arrays.copyOf(entry.getValue().nanos, entry.getValue().size);
+			Arrays.sort(sorted);
+			builder.append(String.format("%-8s %10d %10.1f %10.3f %10.3f %10.3f %10.3f%n", entry.getKey(), sorted.length,
+				sorted.length / seconds, millis(sorted, 0.50), millis(sorted, 0.99), millis(sorted, 0.999),
+				millis(sorted, 1.0)));
+		}
+		return builder.toString();
+	}
+
+	/**
+	 * @param sorted
+	 * @param percentile - between 0 and 1
+	 * @return latency at given percentile, in milliseconds
+	 */
+	private static double millis(long[] sorted, double percentile) {
+		if(sorted.length == 0) {
+			return 0d;
+		}
+		int ix = (int) Math.ceil(percentile * sorted.length) - 1;
+		return sorted[Math.max(0, Math.min(ix, sorted.length - 1))] / 1_000_000d;
+	}
+
+}
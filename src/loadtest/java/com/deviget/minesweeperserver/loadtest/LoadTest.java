@@ -0,0 +1,126 @@
+/**
+ *
+ */
+package com.deviget.minesweeperserver.loadtest;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.net.http.HttpClient;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.convert.DurationStyle;
+import org.springframework.boot.web.servlet.context.ServletWebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import com.deviget.minesweeperserver.MinesweeperServerApplication;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * @author fernando
+ * End-to-end load test, run with the loadtest profile (see pom.xml).
+ * Starts the application on a random port along with an embedded MongoDB, so it needs
+ * no external service, and drives a fleet of simulated {@link Player}s through the
+ * /games endpoints for a while. Reports latency percentiles per endpoint, throughput
+ * and heap usage. Players share the application's JVM, so heap figures include them.
+ * Settings are system properties:
+ *  loadtest.players - simulated players, 32 by default
+ *  loadtest.board - rows x columns x mines of every game, 16x16x40 by default
+ *  loadtest.warmup - time played before recording, 10s by default
+ *  loadtest.duration - time recorded, 60s by default
+ * Program arguments are passed to the application, such as --minesweeper.shards.count=4
+ */
+public class LoadTest {
+
+	public static void main(String[] args) throws Exception {
+		int players = Integer.getInteger("loadtest.players", 32);
+		String[] board = System.getProperty("loadtest.board", "16x16x40").split("x");
+		short rows = Short.parseShort(board[0]);
+		short columns = Short.parseShort(board[1]);
+		int mines = Integer.parseInt(board[2]);
+		Duration warmup = DurationStyle.detectAndParse(System.getProperty("loadtest.warmup", "10s"));
+		Duration duration = DurationStyle.detectAndParse(System.getProperty("loadtest.duration", "60s"));
+
+		//devtools restarts would run the application apart from players
+		System.setProperty("spring.devtools.restart.enabled", "false");
+		ConfigurableApplicationContext context = new SpringApplicationBuilder(MinesweeperServerApplication.class)
+			.properties("server.port=0", "logging.level.root=WARN")
+			.run(args);
+		int port = ((ServletWebServerApplicationContext) context).getWebServer().getPort();
+		String baseUrl = "http://localhost:" + port + "/games";
+		System.out.println("Application started on port " + port + ", " + players + " players on " + rows + "x" + columns
+			+ " boards with " + mines + " mines, warming up for " + warmup);
+
+		HttpClient httpClient = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+		ObjectMapper objectMapper = new ObjectMapper();
+		long warmupEnd = System.nanoTime() + warmup.toNanos();
+		long end = warmupEnd + duration.toNanos();
+		List<Player> fleet = new ArrayList<>(players);
+		ExecutorService playerThreads = Executors.newFixedThreadPool(players);
+		for(int ix = 0; ix < players; ix++) {
+			Player player = new Player(httpClient, objectMapper, baseUrl, rows, columns, mines,
+				() -> System.nanoTime() < end, () -> System.nanoTime() >= warmupEnd, ix);
+			fleet.add(player);
+			playerThreads.execute(player);
+		}
+
+		//heap is sampled while recording, peak used heap is reported
+		MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+		AtomicLong peakHeap = new AtomicLong();
+		ScheduledExecutorService sampler = Executors.newSingleThreadScheduledExecutor();
+		sampler.scheduleAtFixedRate(() -> {
+			if(System.nanoTime() >= warmupEnd) {
+				peakHeap.accumulateAndGet(memory.getHeapMemoryUsage().getUsed(), Math::max);
+			}
+		}, 0, 100, TimeUnit.MILLISECONDS);
+		TimeUnit.NANOSECONDS.sleep(Math.max(0L, warmupEnd - System.nanoTime()));
+		long gcCountStart = gcCount();
+		long gcTimeStart = gcTime();
+
+		playerThreads.shutdown();
+		playerThreads.awaitTermination(duration.getSeconds() + 60, TimeUnit.SECONDS);
+		sampler.shutdown();
+		long gcCount = gcCount() - gcCountStart;
+		long gcTime = gcTime() - gcTimeStart;
+
+		LatencyRecorder recorder = new LatencyRecorder();
+		long won = 0;
+		long lost = 0;
+		long abandoned = 0;
+		for(Player player : fleet) {
+			recorder.merge(player.getRecorder());
+			won += player.getGamesWon();
+			lost += player.getGamesLost();
+			abandoned += player.getGamesAbandoned();
+		}
+		double seconds = duration.toMillis() / 1000d;
+		System.out.println();
+		System.out.print(recorder.report(seconds));
+		System.out.println();
+		System.out.printf("games finished %d (%.1f/s), won %d, lost %d, abandoned %d%n", won + lost, (won + lost) / seconds,
+			won, lost, abandoned);
+		System.out.printf("requests %d (%.1f/s)%n", recorder.count(), recorder.count() / seconds);
+		System.out.printf("heap peak %d MB of %d MB max, %d collections taking %d ms%n", peakHeap.get() >> 20,
+			memory.getHeapMemoryUsage().getMax() >> 20, gcCount, gcTime);
+
+		context.close();
+		System.exit(0);
+	}
+
+	private static long gcCount() {
+		return ManagementFactory.getGarbageCollectorMXBeans().stream().mapToLong(GarbageCollectorMXBean::getCollectionCount).sum();
+	}
+
+	private static long gcTime() {
+		return ManagementFactory.getGarbageCollectorMXBeans().stream().mapToLong(GarbageCollectorMXBean::getCollectionTime).sum();
+	}
+
+}
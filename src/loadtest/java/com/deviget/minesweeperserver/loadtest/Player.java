@@ -0,0 +1,246 @@
+/**
+ *
+ */
+package com.deviget.minesweeperserver.loadtest;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.function.BooleanSupplier;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * @author fernando
+ * Simulated player, creates games through the HTTP API and plays them to completion
+ * with a simple solver: flags cells that must be mines, chords numbers whose mines are
+ * all flagged and otherwise reveals a random unknown cell.
+ */
+class Player implements Runnable {
+
+	private static final int[][] NEIGHBOURS = {{-1, -1}, {-1, 0}, {-1, 1}, {0, -1}, {0, 1}, {1, -1}, {1, 0}, {1, 1}};
+
+	private final HttpClient httpClient;
+
+	private final ObjectMapper objectMapper;
+
+	private final String baseUrl;
+
+	private final short rows;
+
+	private final short columns;
+
+	private final int mines;
+
+	private final BooleanSupplier running;
+
+	private final BooleanSupplier recording;
+
+	private final Random rnd;
+
+	private final LatencyRecorder recorder = new LatencyRecorder();
+
+	private long gamesWon;
+
+	private long gamesLost;
+
+	private long gamesAbandoned;
+
+	/**
+	 * Adjacent mines of revealed cells, -1 for cells not revealed yet
+	 */
+	private int[] adjMines;
+
+	private boolean[] flagged;
+
+	/**
+	 * @param httpClient
+	 * @param objectMapper
+	 * @param baseUrl - such as http://localhost:8080/games
+	 * @param rows
+	 * @param columns
+	 * @param mines
+	 * @param running - false once player must stop, current game is abandoned
+	 * @param recording - false while warming up
+	 * @param seed
+	 */
+	Player(HttpClient httpClient, ObjectMapper objectMapper, String baseUrl, short rows, short columns, int mines,
+			BooleanSupplier running, BooleanSupplier recording, long seed) {
+		super();
+		this.httpClient = httpClient;
+		this.objectMapper = objectMapper;
+		this.baseUrl = baseUrl;
+		this.rows = rows;
+		this.columns = columns;
+		this.mines = mines;
+		this.running = running;
+		this.recording = recording;
+		this.rnd = new Random(seed);
+	}
+
+	/* (non-Javadoc)
+	 * @see java.lang.Runnable#run()
+	 */
+	@Override
+	public void run() {
+		while(running.getAsBoolean()) {
+			try {
+				play();
+			} catch (IOException e) {
+				gamesAbandoned++;
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return;
+			}
+		}
+	}
+
+	private void play() throws IOException, InterruptedException {
+		JsonNode game = send("create", "POST", baseUrl + "?rows=" + rows + "&columns=" + columns + "&mines=" + mines + "&lazy=true");
+		if(game == null) {
+			gamesAbandoned++;
+			return;
+		}
+		String gameUrl = baseUrl + "/" + game.get("id").asText() + "/cells/";
+		adjMines = new int[rows * columns];
+		Arrays.fill(adjMines, -1);
+		flagged = new boolean[rows * columns];
+		String status = "STARTED";
+		while("STARTED".equals(status)) {
+			if(!running.getAsBoolean()) {
+				gamesAbandoned++;
+				return;
+			}
+			JsonNode result = move(gameUrl);
+			if(result == null) {
+				gamesAbandoned++;
+				return;
+			}
+			status = result.get("status").asText();
+			for(JsonNode cell : result.get("adjCellsRevealed")) {
+				int cellIx = (cell.get("coordinates").get("row").asInt() - 1) * columns
+					+ cell.get("coordinates").get("column").asInt() - 1;
+				adjMines[cellIx] = cell.get("adjMinesNumberRev").asInt();
+			}
+		}
+		if(!recording.getAsBoolean()) {
+			//finished while warming up
+			return;
+		}
+		if("WON".equals(status)) {
+			gamesWon++;
+		} else {
+			gamesLost++;
+		}
+	}
+
+	/**
+	 * Applies next move, flags are applied along the way since they reveal nothing
+	 * @param gameUrl
+	 * @return reveal or chord result, null if game can't be played anymore
+	 * @throws IOException
+	 * @throws InterruptedException
+	 */
+	private JsonNode move(String gameUrl) throws IOException, InterruptedException {
+		for(int cellIx = 0; cellIx < adjMines.length; cellIx++) {
+			if(adjMines[cellIx] <= 0) {
+				continue;
+			}
+			int flags = 0;
+			int unknown = -1;
+			int unknownCount = 0;
+			for(int[] offset : NEIGHBOURS) {
+				int adjIx = neighbour(cellIx, offset);
+				if(adjIx < 0 || adjMines[adjIx] >= 0) {
+					continue;
+				}
+				if(flagged[adjIx]) {
+					flags++;
+				} else {
+					unknown = adjIx;
+					unknownCount++;
+				}
+			}
+			if(unknownCount == 0) {
+				continue;
+			}
+			if(flags == adjMines[cellIx]) {
+				return send("chord", "PUT", gameUrl + "chord?" + coordinates(cellIx));
+			}
+			if(flags + unknownCount == adjMines[cellIx]) {
+				if(send("flag", "PUT", gameUrl + "flag?" + coordinates(unknown)) == null) {
+					return null;
+				}
+				flagged[unknown] = true;
+				//flagging may allow a chord right away
+				cellIx--;
+			}
+		}
+		int cellIx;
+		do {
+			cellIx = rnd.nextInt(adjMines.length);
+		} while(adjMines[cellIx] >= 0 || flagged[cellIx]);
+		return send("reveal", "PUT", gameUrl + "reveal?" + coordinates(cellIx));
+	}
+
+	private int neighbour(int cellIx, int[] offset) {
+		int row = cellIx / columns + offset[0];
+		int column = cellIx % columns + offset[1];
+		return (row < 0 || row >= rows || column < 0 || column >= columns ? -1 : row * columns + column);
+	}
+
+	private String coordinates(int cellIx) {
+		return "row=" + (cellIx / columns + 1) + "&column=" + (cellIx % columns + 1);
+	}
+
+	/**
+	 * @param endpoint - name latency is recorded under
+	 * @param method
+	 * @param url
+	 * @return response body, empty node if there's none, null if request was rejected
+	 * @throws IOException
+	 * @throws InterruptedException
+	 */
+	private JsonNode send(String endpoint, String method, String url) throws IOException, InterruptedException {
+		HttpRequest request = HttpRequest.newBuilder(URI.create(url)).method(method, HttpRequest.BodyPublishers.noBody()).build();
+		while(true) {
+			long start = System.nanoTime();
+			HttpResponse<byte[]> response = httpClient.send(request, HttpResponse.BodyHandlers.ofByteArray());
+			long latency = System.nanoTime() - start;
+			if(recording.getAsBoolean()) {
+				recorder.record(endpoint, latency);
+			}
+			if(response.statusCode() == 503) {
+				//game's shard is full, back off
+				Thread.sleep(1L + rnd.nextInt(10));
+				continue;
+			}
+			if(response.statusCode() / 100 != 2) {
+				return null;
+			}
+			return (response.body().length > 0 ? objectMapper.readTree(response.body()) : objectMapper.createObjectNode());
+		}
+	}
+
+	LatencyRecorder getRecorder() {
+		return recorder;
+	}
+
+	long getGamesWon() {
+		return gamesWon;
+	}
+
+	long getGamesLost() {
+		return gamesLost;
+	}
+
+	long getGamesAbandoned() {
+		return gamesAbandoned;
+	}
+
+}
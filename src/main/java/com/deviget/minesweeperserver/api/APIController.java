@@ -3,91 +3,402 @@
  */
 package com.deviget.minesweeperserver.api;
 
-import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
 
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.InvalidMediaTypeException;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
+import com.deviget.minesweeperserver.api.Game.MovesResult;
 import com.deviget.minesweeperserver.api.Game.RevealResult;
 
 /**
  * @author fernando
  * API entry point
  * Exposes methods for creating and playing games.
- * Games created are stored in memory until they are won or lost.
- * They can be persisted for further recovery (not available yet)
+ * Games created are kept in a {@link GameStore} until they are won or lost.
+ * Every move is appended to the game's log through {@link GameMoveLogService}.
+ * Changes are pushed to subscribers through {@link GameEventHub}.
+ * Moves are applied through {@link GameShards}, on the game's shard if there are any.
+ * Game operations are timed through {@link GameMetrics}.
+ * Finished games are served from {@link GameArchive}, already serialized and compressed.
+ * New games get ids owned by this node when clustered, see {@link GameCluster}.
  */
 @RestController
 @RequestMapping(value={"/games"})
 public class APIController {
 	
-	private static final Map<String, Game> GAMES_CREATED = new ConcurrentHashMap<>();
 	private static final String GAME_DOESNT_EXIST_MSG = "Game doesn't exist";
 	
+	private static final String TOO_MANY_MOVES_MSG = "Too many moves waiting, try again later";
+	
+	private static final String HANDED_OVER_MSG = "Game is being handed over to another node, try again later";
+	
+	/**
+	 * Finished games never change, caches may keep them as long as they like
+	 */
+	private static final String IMMUTABLE_CACHE_CONTROL = "public, max-age=31536000, immutable";
+	
+	private static final String GZIP = "gzip";
+	
+	private final GameStore gameStore;
+	
+	private final GameMoveLogService gameMoveLog;
+	
+	private final GameEventHub gameEventHub;
+	
+	private final GameShards gameShards;
+	
+	private final GameMetrics gameMetrics;
+	
+	private final GameArchive gameArchive;
+	
+	private final GameCluster gameCluster;
+	
+	/**
+	 * @param gameStore
+	 * @param gameMoveLog
+	 * @param gameEventHub
+	 * @param gameShards - moves are applied through
+	 * @param gameMetrics
+	 * @param gameArchive - finished games are kept in
+	 * @param gameCluster
+	 */
+	APIController(GameStore gameStore, GameMoveLogService gameMoveLog, GameEventHub gameEventHub, GameShards gameShards,
+			GameMetrics gameMetrics, GameArchive gameArchive, GameCluster gameCluster) {
+		super();
+		this.gameStore = gameStore;
+		this.gameMoveLog = gameMoveLog;
+		this.gameEventHub = gameEventHub;
+		this.gameShards = gameShards;
+		this.gameMetrics = gameMetrics;
+		this.gameArchive = gameArchive;
+		this.gameCluster = gameCluster;
+	}
+	
+	/**
+	 * @param rows
+	 * @param columns
+	 * @param mines
+	 * @param lazy - if true board is generated on first move and first revealed cell is always safe,
+	 *  cells are not included in the response 
+	 * @return
+	 */
 	@PostMapping(value = "")
-	public ResponseEntity<?> newGame(short rows, short columns, int mines) {
+	public ResponseEntity<?> newGame(short rows, short columns, int mines,
+			@RequestParam(required = false, defaultValue = "false") boolean lazy) {
 		try {
-			Game game = Game.createGame(rows, columns, mines);
-			GAMES_CREATED.put(game.getId(), game);
+			long start = System.nanoTime();
+			Game game = Game.createGame(rows, columns, mines, lazy, gameCluster.newGameId());
+			gameMetrics.recordCreate(System.nanoTime() - start);
+			gameMoveLog.logCreation(game);
+			if(gameCluster.isLocal(game.getId())) {
+				gameStore.put(game);
+			} else {
+				//this node hasn't joined the ring yet
+				gameCluster.handOver(Collections.singletonList(game));
+			}
 			return  ResponseEntity.created(null).body(game);
 		} catch (WrongParametersException ex) {
 			return ResponseEntity.badRequest().body(ex.getMessage());
 		}		 
 	}
 	
+	/**
+	 * @param gameId
+	 * @param sinceVersion - if given only cells changed since that version are returned, unless
+	 *  changes are no longer known and then the whole game is returned
+	 * @param ifNoneMatch - ETag of a previous response, nothing is returned if game didn't change since
+	 * @param accept - finished games are served in the representation asked for, as converters would
+	 * @param acceptEncoding - finished games are sent gzipped if accepted
+	 * @return
+	 */
 	@GetMapping(value = "/{gameId}")
-	public ResponseEntity<?> getGame(@PathVariable String gameId) {
+	public ResponseEntity<?> getGame(@PathVariable String gameId, @RequestParam(required = false) Long sinceVersion,
+			@RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch,
+			@RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept,
+			@RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding) {
 		try {
-			Game game = GAMES_CREATED.get(gameId);
+			GameArchive.ArchivedGame archived = gameArchive.getIfPresent(gameId);
+			Game game = (archived != null ? archived.getGame() : gameStore.get(gameId));
 			if(game == null) {
-				throw new WrongParametersException(APIController.GAME_DOESNT_EXIST_MSG);
+				//the store only reloads games still being played
+				archived = gameArchive.get(gameId);
+				if(archived == null) {
+					throw new WrongParametersException(APIController.GAME_DOESNT_EXIST_MSG);
+				}
+				game = archived.getGame();
 			}
-			return ResponseEntity.ok().body(game);
+			GameArchive.Representation representation = representationOf(accept);
+			if(sinceVersion != null) {
+				Game.Delta delta = game.getDelta(sinceVersion);
+				if(delta != null) {
+					String eTag = weakETagOf(gameId, delta.getVersion(), representation);
+					if(delta.getVersion() == sinceVersion || matches(ifNoneMatch, eTag)) {
+						return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(eTag)
+							.varyBy(HttpHeaders.ACCEPT, HttpHeaders.ACCEPT_ENCODING).build();
+					}
+					return ResponseEntity.ok().eTag(eTag).varyBy(HttpHeaders.ACCEPT, HttpHeaders.ACCEPT_ENCODING)
+						.body(delta);
+				}
+			}
+			if(archived != null && representation != null) {
+				return archivedResponse(archived, representation, ifNoneMatch, acceptEncoding);
+			}
+			String eTag = weakETagOf(gameId, game.getVersion(), representation);
+			if(matches(ifNoneMatch, eTag)) {
+				return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(eTag)
+					.varyBy(HttpHeaders.ACCEPT, HttpHeaders.ACCEPT_ENCODING).build();
+			}
+			return ResponseEntity.ok().eTag(eTag).varyBy(HttpHeaders.ACCEPT, HttpHeaders.ACCEPT_ENCODING).body(game);
 		} catch (WrongParametersException ex) {
 			return ResponseEntity.badRequest().body(ex.getMessage());
 		}		 
 	}
+	
+	/**
+	 * @param gameId
+	 * @return stream of server-sent events, named reveal, flag, chord, status or snapshot, carrying
+	 *  changes as they are applied. Stream ends once game is finished.
+	 *  Bad request with no body if game doesn't exist, since body can only be an event stream.
+	 */
+	@GetMapping(value = "/{gameId}/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+	public ResponseEntity<SseEmitter> subscribe(@PathVariable String gameId) {
+		Game game = gameStore.get(gameId);
+		if(game == null) {
+			return ResponseEntity.badRequest().build();
+		}
+		return ResponseEntity.ok().body(gameEventHub.subscribe(game));
+	}
+	
+	/**
+	 * @param archived
+	 * @param representation - asked for
+	 * @param ifNoneMatch
+	 * @param acceptEncoding
+	 * @return cached body in the representation asked for, gzipped if accepted
+	 */
+	private ResponseEntity<?> archivedResponse(GameArchive.ArchivedGame archived, GameArchive.Representation representation,
+			String ifNoneMatch, String acceptEncoding) {
+		Game game = archived.getGame();
+		boolean gzipped = acceptEncoding != null && acceptEncoding.toLowerCase().contains(APIController.GZIP);
+		String eTag = strongETagOf(game.getId(), game.getVersion(), representation, gzipped);
+		if(matches(ifNoneMatch, eTag)) {
+			return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(eTag)
+				.header(HttpHeaders.CACHE_CONTROL, APIController.IMMUTABLE_CACHE_CONTROL)
+				.varyBy(HttpHeaders.ACCEPT, HttpHeaders.ACCEPT_ENCODING).build();
+		}
+		ResponseEntity.BodyBuilder response = ResponseEntity.ok().eTag(eTag)
+			.header(HttpHeaders.CACHE_CONTROL, APIController.IMMUTABLE_CACHE_CONTROL)
+			.varyBy(HttpHeaders.ACCEPT, HttpHeaders.ACCEPT_ENCODING)
+			.contentType(representation.getMediaType());
+		if(gzipped) {
+			return response.header(HttpHeaders.CONTENT_ENCODING, APIController.GZIP)
+				.body(archived.getGzippedBody(representation));
+		}
+		return response.body(archived.getBody(representation));
+	}
+	
+	/**
+	 * @param accept
+	 * @return representation converters will write, null if none fits
+	 */
+	private static GameArchive.Representation representationOf(String accept) {
+		try {
+			return GameArchive.Representation.of(accept);
+		} catch (InvalidMediaTypeException ex) {
+			return null;
+		}
+	}
+	
+	/**
+	 * Archived bodies never change, so each representation and content coding gets its own strong tag
+	 * @param gameId
+	 * @param version
+	 * @param representation
+	 * @param gzipped
+	 * @return entity tag identifying given bytes of given game version
+	 */
+	private static String strongETagOf(String gameId, long version, GameArchive.Representation representation,
+			boolean gzipped) {
+		return "\"" + gameId + "-" + version + "-" + representation.name().toLowerCase()
+			+ (gzipped ? "-" + APIController.GZIP : "") + "\"";
+	}
+	
+	/**
+	 * Bodies written by converters may be gzipped on the fly, so they are only tagged as equivalent
+	 * @param gameId
+	 * @param version
+	 * @param representation - null if none fits
+	 * @return weak entity tag identifying given game version in given representation
+	 */
+	private static String weakETagOf(String gameId, long version, GameArchive.Representation representation) {
+		return "W/\"" + gameId + "-" + version
+			+ (representation != null ? "-" + representation.name().toLowerCase() : "") + "\"";
+	}
+	
+	/**
+	 * Compares entity tags weakly, as If-None-Match does
+	 * @param ifNoneMatch - may hold several entity tags
+	 * @param eTag
+	 * @return true if eTag is among given ones
+	 */
+	private static boolean matches(String ifNoneMatch, String eTag) {
+		if(ifNoneMatch == null) {
+			return false;
+		}
+		String opaqueTag = opaqueTagOf(eTag);
+		for(String candidate : ifNoneMatch.split(",")) {
+			String trimmed = candidate.trim();
+			if("*".equals(trimmed) || opaqueTagOf(trimmed).equals(opaqueTag)) {
+				return true;
+			}
+		}
+		return false;
+	}
+	
+	private static String opaqueTagOf(String eTag) {
+		return (eTag.startsWith("W/") ? eTag.substring(2) : eTag);
+	}
 	 
 	 
 	@PutMapping(value = "/{gameId}/cells/reveal")
-	public ResponseEntity<?> revealCell(@PathVariable String gameId, @RequestParam short row, @RequestParam short column) {
-		try {
-			Game game = GAMES_CREATED.get(gameId);
-			if(game == null) {
-				throw new WrongParametersException(APIController.GAME_DOESNT_EXIST_MSG);
+	public CompletableFuture<ResponseEntity<?>> revealCell(@PathVariable String gameId, @RequestParam short row, @RequestParam short column) {
+		return onShard(gameId, () -> {
+			try {
+				Game game = gameStore.get(gameId);
+				if(game == null) {
+					throw new WrongParametersException(APIController.GAME_DOESNT_EXIST_MSG);
+				}
+				long start = System.nanoTime();
+				RevealResult revealResult = game.revealCell(new Game.Cell.Coordinates(row, column));
+				gameMetrics.recordReveal(System.nanoTime() - start, revealResult.getAdjCellsRevealedCount());
+				removeIfFinished(gameId, game, revealResult.getStatus());
+				return  ResponseEntity.ok().body(revealResult);
+			} catch (WrongParametersException ex) {
+				return ResponseEntity.badRequest().body(ex.getMessage());
 			}
-			RevealResult revealResult = game.revealCell(new Game.Cell.Coordinates(row, column));
-			synchronized(APIController.class) {
-				if(revealResult.getStatus() != Game.Status.STARTED) {
-					GAMES_CREATED.remove(gameId);
+		});
+	}
+	 
+	/**
+	 * @param gameId
+	 * @param row
+	 * @param column
+	 * @return merged result of revealing every non flagged neighbour of given cell,
+	 *  bad request if red flags around it don't match its adjacent mines number
+	 */
+	@PutMapping(value = "/{gameId}/cells/chord")
+	public CompletableFuture<ResponseEntity<?>> chordCell(@PathVariable String gameId, @RequestParam short row, @RequestParam short column) {
+		return onShard(gameId, () -> {
+			try {
+				Game game = gameStore.get(gameId);
+				if(game == null) {
+					throw new WrongParametersException(APIController.GAME_DOESNT_EXIST_MSG);
 				}
+				long start = System.nanoTime();
+				RevealResult revealResult = game.chordCell(new Game.Cell.Coordinates(row, column));
+				gameMetrics.recordChord(System.nanoTime() - start, revealResult.getAdjCellsRevealedCount());
+				removeIfFinished(gameId, game, revealResult.getStatus());
+				return  ResponseEntity.ok().body(revealResult);
+			} catch (WrongParametersException ex) {
+				return ResponseEntity.badRequest().body(ex.getMessage());
 			}
-			return  ResponseEntity.ok().body(revealResult);
-		} catch (WrongParametersException ex) {
-			return ResponseEntity.badRequest().body(ex.getMessage());
-		}		 
-	 }
+		});
+	}
+	
+	/**
+	 * @param gameId
+	 * @param moves - applied in order, such as [{"op": "reveal", "row": 1, "column": 2}, {"op": "flag", ...}]
+	 * @return merged result of every move applied, sequence stops once game is finished
+	 *  or at first move which can't be applied
+	 */
+	@PostMapping(value = "/{gameId}/moves")
+	public CompletableFuture<ResponseEntity<?>> applyMoves(@PathVariable String gameId, @RequestBody List<MoveRequest> moves) {
+		return onShard(gameId, () -> {
+			try {
+				Game game = gameStore.get(gameId);
+				if(game == null) {
+					throw new WrongParametersException(APIController.GAME_DOESNT_EXIST_MSG);
+				}
+				long start = System.nanoTime();
+				MovesResult movesResult = game.applyMoves(moves);
+				gameMetrics.recordMoves(System.nanoTime() - start, movesResult.getAdjCellsRevealedCount());
+				removeIfFinished(gameId, game, movesResult.getStatus());
+				return  ResponseEntity.ok().body(movesResult);
+			} catch (WrongParametersException ex) {
+				return ResponseEntity.badRequest().body(ex.getMessage());
+			}
+		});
+	}
 	 
-	 @PutMapping(value = "/{gameId}/cells/flag")
-	 public ResponseEntity<?> flagCell(@PathVariable String gameId, @RequestParam short row, @RequestParam short column) {
-		 try {
-			Game game = GAMES_CREATED.get(gameId);
-			if(game == null) {
-				throw new WrongParametersException(APIController.GAME_DOESNT_EXIST_MSG);
+	/**
+	 * @param gameId
+	 * @param command - applied on game's shard
+	 * @return command response, service unavailable if game's shard has too many commands waiting
+	 *  or game was handed over to another node meanwhile, requests are routed to it from then on
+	 */
+	private CompletableFuture<ResponseEntity<?>> onShard(String gameId, Callable<ResponseEntity<?>> command) {
+		return gameShards.submit(gameId, command).exceptionally(ex -> {
+			if(ex instanceof RejectedExecutionException) {
+				return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(APIController.TOO_MANY_MOVES_MSG);
 			}
-			game.flagCell(new Game.Cell.Coordinates(row, column));
-			return  ResponseEntity.ok().body("");
-		} catch (WrongParametersException ex) {
-			return ResponseEntity.badRequest().body(ex.getMessage());
-		}		 
-	 } 
+			Throwable cause = (ex instanceof CompletionException && ex.getCause() != null ? ex.getCause() : ex);
+			if(cause instanceof GameHandedOverException) {
+				return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(APIController.HANDED_OVER_MSG);
+			}
+			throw (ex instanceof CompletionException ? (CompletionException) ex : new CompletionException(ex));
+		});
+	}
+	 
+	/**
+	 * Finished games are no longer kept in the store but archived. Removal is conditional,
+	 * so only the game finished is removed and no lock is shared among games.
+	 * @param gameId
+	 * @param game
+	 * @param status - status returned by the move applied, still CREATED if no move was
+	 */
+	private void removeIfFinished(String gameId, Game game, Game.Status status) {
+		if(GameArchive.isFinished(status)) {
+			gameArchive.put(game);
+			gameStore.remove(gameId, game);
+		}
+	}
+	 
+	@PutMapping(value = "/{gameId}/cells/flag")
+	public CompletableFuture<ResponseEntity<?>> flagCell(@PathVariable String gameId, @RequestParam short row, @RequestParam short column) {
+		return onShard(gameId, () -> {
+			try {
+				Game game = gameStore.get(gameId);
+				if(game == null) {
+					throw new WrongParametersException(APIController.GAME_DOESNT_EXIST_MSG);
+				}
+				long start = System.nanoTime();
+				game.flagCell(new Game.Cell.Coordinates(row, column));
+				gameMetrics.recordFlag(System.nanoTime() - start);
+				return  ResponseEntity.ok().body("");
+			} catch (WrongParametersException ex) {
+				return ResponseEntity.badRequest().body(ex.getMessage());
+			}
+		});
+	}
 		
 
 }
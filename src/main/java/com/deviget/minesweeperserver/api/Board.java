@@ -0,0 +1,336 @@
+/**
+ *
+ */
+package com.deviget.minesweeperserver.api;
+
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+import org.springframework.data.annotation.PersistenceConstructor;
+import org.springframework.data.annotation.Transient;
+
+import com.deviget.minesweeperserver.api.Game.Cell;
+import com.deviget.minesweeperserver.api.Game.Cell.FlaggedStatus;
+import com.deviget.minesweeperserver.api.Game.RelativePosition;
+
+/**
+ * @author fernando
+ * Packed board state, one byte per cell indexed by (row - 1) * columns + (column - 1).
+ * Bit layout of each cell byte:
+ *  bits 0-3 number of adjacent mines
+ *  bit 4 mine
+ *  bit 5 revealed
+ *  bits 6-7 flagged status ordinal
+ * Coordinates exposed to players remain 1-based, indexes are 0-based.
+ * Cells are kept in a byte array, or in a direct slice while an {@link OffHeapBoardArena}
+ * is active.
+ */
+class Board implements Serializable {
+
+	/**
+	 *
+	 */
+	private static final long serialVersionUID = 1L;
+
+	private static final int ADJ_MINES_MASK = 0x0F;
+
+	private static final int MINE_BIT = 0x10;
+
+	private static final int REVEALED_BIT = 0x20;
+
+	private static final int FLAG_SHIFT = 6;
+
+	private static final int FLAG_MASK = 0x03 << FLAG_SHIFT;
+
+	private static final FlaggedStatus[] FLAGGED_STATUSES = FlaggedStatus.values();
+
+	private static final RelativePosition[] RELATIVE_POSITIONS = RelativePosition.values();
+
+	/**
+	 * Number of rows
+	 */
+	private final short rows;
+
+	/**
+	 * Number of columns
+	 */
+	private final short columns;
+
+	/**
+	 * Number of cells
+	 */
+	@Transient
+	private final int size;
+
+	/**
+	 * Packed cell states, null if kept off-heap
+	 */
+	private final byte[] cells;
+
+	/**
+	 * Packed cell states kept off-heap, null if kept in cells
+	 */
+	@Transient
+	private final transient ByteBuffer slice;
+
+	/**
+	 * Board allocated from active {@link OffHeapBoardArena}, if any and not full
+	 * @param rows
+	 * @param columns
+	 */
+	Board(short rows, short columns) {
+		super();
+		this.rows = rows;
+		this.columns = columns;
+		this.size = rows * columns;
+		OffHeapBoardArena arena = OffHeapBoardArena.getActive();
+		this.slice = (arena != null ? arena.allocate(this, this.size) : null);
+		this.cells = (this.slice == null ? new byte[this.size] : null);
+	}
+
+	/**
+	 * @param rows
+	 * @param columns
+	 * @param cells
+	 */
+	@PersistenceConstructor
+	Board(short rows, short columns, byte[] cells) {
+		super();
+		if(cells.length != rows * columns) {
+			throw new IllegalArgumentException("Board size doesn't match its dimensions");
+		}
+		this.rows = rows;
+		this.columns = columns;
+		this.size = cells.length;
+		this.cells = cells;
+		this.slice = null;
+	}
+
+	/**
+	 * @return the rows
+	 */
+	short getRows() {
+		return rows;
+	}
+
+	/**
+	 * @return the columns
+	 */
+	short getColumns() {
+		return columns;
+	}
+
+	/**
+	 * @return total number of cells
+	 */
+	int size() {
+		return size;
+	}
+
+	/**
+	 * @return whether cells are kept off-heap
+	 */
+	boolean isOffHeap() {
+		return slice != null;
+	}
+
+	private int cell(int index) {
+		return (cells != null ? cells[index] : slice.get(index));
+	}
+
+	private void setCell(int index, int cell) {
+		if(cells != null) {
+			cells[index] = (byte)cell;
+		} else {
+			slice.put(index, (byte)cell);
+		}
+	}
+
+	/**
+	 * @param row - 1-based
+	 * @param column - 1-based
+	 * @return cell index or -1 if coordinates are outside the board
+	 */
+	int indexOf(int row, int column) {
+		if(row < 1 || row > rows || column < 1 || column > columns) {
+			return -1;
+		}
+		return (row - 1) * columns + (column - 1);
+	}
+
+	/**
+	 * @param cellCoord
+	 * @return cell index or -1 if coordinates are outside the board
+	 */
+	int indexOf(Cell.Coordinates cellCoord) {
+		return indexOf(cellCoord.getRow(), cellCoord.getColumn());
+	}
+
+	/**
+	 * @param index
+	 * @return 1-based row of cell at index
+	 */
+	short rowOf(int index) {
+		return (short)(index / columns + 1);
+	}
+
+	/**
+	 * @param index
+	 * @return 1-based column of cell at index
+	 */
+	short columnOf(int index) {
+		return (short)(index % columns + 1);
+	}
+
+	/**
+	 * @param index
+	 * @param relPos
+	 * @return index of cell at relative position or -1 if it falls outside the board
+	 */
+	int neighbour(int index, RelativePosition relPos) {
+		int row = index / columns + relPos.getRowOffset();
+		int column = index % columns + relPos.getColumnOffset();
+		if(row < 0 || row >= rows || column < 0 || column >= columns) {
+			return -1;
+		}
+		return row * columns + column;
+	}
+
+	boolean hasMine(int index) {
+		return (cell(index) & MINE_BIT) != 0;
+	}
+
+	void setMine(int index) {
+		setCell(index, cell(index) | MINE_BIT);
+	}
+
+	boolean isRevealed(int index) {
+		return (cell(index) & REVEALED_BIT) != 0;
+	}
+
+	void setRevealed(int index) {
+		setCell(index, cell(index) | REVEALED_BIT);
+	}
+
+	short getAdjMinesNumber(int index) {
+		return (short)(cell(index) & ADJ_MINES_MASK);
+	}
+
+	void setAdjMinesNumber(int index, int adjMines) {
+		setCell(index, (cell(index) & ~ADJ_MINES_MASK) | (adjMines & ADJ_MINES_MASK));
+	}
+
+	FlaggedStatus getFlaggedStatus(int index) {
+		return FLAGGED_STATUSES[(cell(index) & FLAG_MASK) >>> FLAG_SHIFT];
+	}
+
+	void setFlaggedStatus(int index, FlaggedStatus flaggedStatus) {
+		setCell(index, (cell(index) & ~FLAG_MASK) | (flaggedStatus.ordinal() << FLAG_SHIFT));
+	}
+
+	/**
+	 * Places given number of mines uniformly among all cells by a partial Fisher-Yates shuffle
+	 * of cell indexes, stamping adjacent mines number on the neighbours of each placed mine.
+	 * Board must not have mines already.
+	 * @param mines
+	 * @param rnd
+	 * @param safeIx - index of a cell that must not get a mine, -1 if none
+	 */
+	void placeMines(int mines, SplittableRandom rnd, int safeIx) {
+		int[] candidates = new int[size];
+		for(int ix = 0; ix < candidates.length; ix++) {
+			candidates[ix] = ix;
+		}
+		int candidatesNumber = candidates.length;
+		if(safeIx >= 0) {
+			//leave safe cell out of the shuffled range
+			candidatesNumber--;
+			candidates[safeIx] = candidates[candidatesNumber];
+		}
+		for(int ix = 0; ix < mines; ix++) {
+			int pickedIx = ix + rnd.nextInt(candidatesNumber - ix);
+			int mineIx = candidates[pickedIx];
+			candidates[pickedIx] = candidates[ix];
+			candidates[ix] = mineIx;
+			setMine(mineIx);
+			for(RelativePosition relPos : RELATIVE_POSITIONS) {
+				int adjIx = neighbour(mineIx, relPos);
+				if(adjIx >= 0) {
+					//adjacent mines never exceed 8 so it can't overflow into the mine bit
+					setCell(adjIx, cell(adjIx) + 1);
+				}
+			}
+		}
+	}
+
+	/**
+	 * @param index
+	 * @return detached Cell view of current cell state
+	 */
+	Cell toCell(int index) {
+		return new Cell(new Cell.Coordinates(rowOf(index), columnOf(index)), hasMine(index), isRevealed(index),
+			getFlaggedStatus(index), getAdjMinesNumber(index));
+	}
+
+	/**
+	 * @return heap board holding a copy of current cell states
+	 */
+	Board copy() {
+		byte[] copy = new byte[size];
+		if(cells != null) {
+			System.arraycopy(cells, 0, copy, 0, size);
+		} else {
+			slice.duplicate().get(copy);
+		}
+		return new Board(rows, columns, copy);
+	}
+
+	/**
+	 * Off-heap boards are written as heap ones
+	 * @return board to serialize
+	 */
+	private Object writeReplace() {
+		return (cells != null ? this : copy());
+	}
+
+	/* (non-Javadoc)
+	 * @see java.lang.Object#hashCode()
+	 */
+	@Override
+	public int hashCode() {
+		int cellsHash = 1;
+		for(int ix = 0; ix < size; ix++) {
+			cellsHash = 31 * cellsHash + cell(ix);
+		}
+		return 31 * (31 * rows + columns) + cellsHash;
+	}
+
+	/* (non-Javadoc)
+	 * @see java.lang.Object#equals(java.lang.Object)
+	 */
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj) {
+			return true;
+		}
+		if (!(obj instanceof Board)) {
+			return false;
+		}
+		Board other = (Board) obj;
+		if(rows != other.rows || columns != other.columns) {
+			return false;
+		}
+		if(cells != null && other.cells != null) {
+			return Arrays.equals(cells, other.cells);
+		}
+		for(int ix = 0; ix < size; ix++) {
+			if(cell(ix) != other.cell(ix)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+}
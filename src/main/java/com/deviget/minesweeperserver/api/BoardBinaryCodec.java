@@ -0,0 +1,158 @@
+/**
+ *
+ */
+package com.deviget.minesweeperserver.api;
+
+import java.util.Map;
+
+import org.bson.Document;
+
+import com.deviget.minesweeperserver.api.Game.Cell.FlaggedStatus;
+
+/**
+ * @author fernando
+ * Compact binary layout of a {@link Board}, as stored in MongoDB.
+ * Cell states are split in bit planes, one bit per cell for mine, revealed, red flag
+ * and question mark, followed by adjacent mines numbers packed two per byte.
+ * Planes of a typical board are mostly zeros, which compresses well.
+ * Also reads the legacy layout, a sub-document per cell keyed by "row_column".
+ */
+final class BoardBinaryCodec {
+
+	/**
+	 * Layout version stored along data
+	 */
+	static final int PLANES_FORMAT = 1;
+
+	private static final int PLANES = 4;
+
+	private static final int MINE_PLANE = 0;
+
+	private static final int REVEALED_PLANE = 1;
+
+	private static final int RED_FLAG_PLANE = 2;
+
+	private static final int QUESTION_MARK_PLANE = 3;
+
+	private BoardBinaryCodec() {
+		super();
+	}
+
+	/**
+	 * @param cellsNumber
+	 * @return bytes taken by a single bit plane
+	 */
+	private static int planeSize(int cellsNumber) {
+		return (cellsNumber + 7) >>> 3;
+	}
+
+	/**
+	 * @param cellsNumber
+	 * @return bytes taken by encoded board
+	 */
+	static int encodedSize(int cellsNumber) {
+		return PLANES * planeSize(cellsNumber) + ((cellsNumber + 1) >>> 1);
+	}
+
+	/**
+	 * @param board
+	 * @return board state in planes layout
+	 */
+	static byte[] encode(Board board) {
+		int cellsNumber = board.size();
+		int planeSize = planeSize(cellsNumber);
+		byte[] data = new byte[encodedSize(cellsNumber)];
+		int nibblesOffset = PLANES * planeSize;
+		for(int ix = 0; ix < cellsNumber; ix++) {
+			int byteIx = ix >>> 3;
+			int bit = 1 << (ix & 7);
+			if(board.hasMine(ix)) {
+				data[MINE_PLANE * planeSize + byteIx] |= bit;
+			}
+			if(board.isRevealed(ix)) {
+				data[REVEALED_PLANE * planeSize + byteIx] |= bit;
+			}
+			FlaggedStatus flaggedStatus = board.getFlaggedStatus(ix);
+			if(flaggedStatus == FlaggedStatus.RED_FLAG) {
+				data[RED_FLAG_PLANE * planeSize + byteIx] |= bit;
+			} else if(flaggedStatus == FlaggedStatus.QUESTION_MARK) {
+				data[QUESTION_MARK_PLANE * planeSize + byteIx] |= bit;
+			}
+			data[nibblesOffset + (ix >>> 1)] |= board.getAdjMinesNumber(ix) << ((ix & 1) << 2);
+		}
+		return data;
+	}
+
+	/**
+	 * @param rows
+	 * @param columns
+	 * @param data - board state in planes layout
+	 * @return decoded board
+	 */
+	static Board decode(short rows, short columns, byte[] data) {
+		Board board = new Board(rows, columns);
+		int cellsNumber = board.size();
+		if(data.length != encodedSize(cellsNumber)) {
+			throw new IllegalArgumentException("Encoded board size doesn't match its dimensions");
+		}
+		int planeSize = planeSize(cellsNumber);
+		int nibblesOffset = PLANES * planeSize;
+		for(int ix = 0; ix < cellsNumber; ix++) {
+			int byteIx = ix >>> 3;
+			int bit = 1 << (ix & 7);
+			if((data[MINE_PLANE * planeSize + byteIx] & bit) != 0) {
+				board.setMine(ix);
+			}
+			if((data[REVEALED_PLANE * planeSize + byteIx] & bit) != 0) {
+				board.setRevealed(ix);
+			}
+			if((data[RED_FLAG_PLANE * planeSize + byteIx] & bit) != 0) {
+				board.setFlaggedStatus(ix, FlaggedStatus.RED_FLAG);
+			} else if((data[QUESTION_MARK_PLANE * planeSize + byteIx] & bit) != 0) {
+				board.setFlaggedStatus(ix, FlaggedStatus.QUESTION_MARK);
+			}
+			board.setAdjMinesNumber(ix, (data[nibblesOffset + (ix >>> 1)] >>> ((ix & 1) << 2)) & 0x0F);
+		}
+		return board;
+	}
+
+	/**
+	 * Reads legacy layout, a cell sub-document keyed by "row_column" holding
+	 * isRevealed, flaggedStatus, hasMine and adjMinesNumber fields
+	 * @param cells
+	 * @return decoded board
+	 */
+	static Board decodeLegacy(Document cells) {
+		int rows = 0;
+		int columns = 0;
+		for(String key : cells.keySet()) {
+			int separatorIx = key.indexOf('_');
+			rows = Math.max(rows, Integer.parseInt(key.substring(0, separatorIx)));
+			columns = Math.max(columns, Integer.parseInt(key.substring(separatorIx + 1)));
+		}
+		Board board = new Board((short)rows, (short)columns);
+		for(Map.Entry<String, Object> entry : cells.entrySet()) {
+			String key = entry.getKey();
+			int separatorIx = key.indexOf('_');
+			int cellIx = board.indexOf(Integer.parseInt(key.substring(0, separatorIx)),
+				Integer.parseInt(key.substring(separatorIx + 1)));
+			Document cell = (Document) entry.getValue();
+			if(Boolean.TRUE.equals(cell.getBoolean("hasMine"))) {
+				board.setMine(cellIx);
+			}
+			if(Boolean.TRUE.equals(cell.getBoolean("isRevealed"))) {
+				board.setRevealed(cellIx);
+			}
+			String flaggedStatus = cell.getString("flaggedStatus");
+			if(flaggedStatus != null) {
+				board.setFlaggedStatus(cellIx, FlaggedStatus.valueOf(flaggedStatus));
+			}
+			Number adjMinesNumber = (Number) cell.get("adjMinesNumber");
+			if(adjMinesNumber != null) {
+				board.setAdjMinesNumber(cellIx, adjMinesNumber.intValue());
+			}
+		}
+		return board;
+	}
+
+}
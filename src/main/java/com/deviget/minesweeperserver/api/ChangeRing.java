@@ -0,0 +1,116 @@
+/**
+ *
+ */
+package com.deviget.minesweeperserver.api;
+
+import java.util.ArrayDeque;
+import java.util.BitSet;
+import java.util.Iterator;
+
+/**
+ * @author fernando
+ * Bounded history of the cells changed by each game version, used to answer
+ * what changed since a given version without sending the whole board.
+ * Bounded both by number of versions and by number of cell indexes held, oldest
+ * versions are dropped first. Not thread safe, guarded by the game's monitor.
+ */
+class ChangeRing {
+
+	private final int capacity;
+
+	private final int maxCells;
+
+	private final ArrayDeque<Change> changes;
+
+	private int cells;
+
+	/**
+	 * @param capacity - maximum number of versions held
+	 * @param maxCells - maximum number of cell indexes held over all versions
+	 */
+	ChangeRing(int capacity, int maxCells) {
+		super();
+		this.capacity = capacity;
+		this.maxCells = maxCells;
+		this.changes = new ArrayDeque<>(capacity);
+	}
+
+	/**
+	 * @author fernando
+	 * Cells changed by a single version
+	 */
+	private static class Change {
+
+		private final long version;
+
+		/**
+		 * Null if every cell may have changed
+		 */
+		private final int[] cellIxs;
+
+		/**
+		 * @param version
+		 * @param cellIxs
+		 */
+		Change(long version, int[] cellIxs) {
+			super();
+			this.version = version;
+			this.cellIxs = cellIxs;
+		}
+
+	}
+
+	/**
+	 * @param version - must follow last recorded one
+	 * @param cellIxs - indexes of cells changed by version, null if every cell may have changed
+	 *  or too many of them did to be worth keeping
+	 */
+	void record(long version, int[] cellIxs) {
+		if(cellIxs != null && cellIxs.length > maxCells) {
+			cellIxs = null;
+		}
+		changes.addLast(new Change(version, cellIxs));
+		cells += size(cellIxs);
+		while(changes.size() > capacity || cells > maxCells) {
+			cells -= size(changes.removeFirst().cellIxs);
+		}
+	}
+
+	private static int size(int[] cellIxs) {
+		return (cellIxs != null ? cellIxs.length : 0);
+	}
+
+	/**
+	 * @param sinceVersion
+	 * @param currentVersion - last recorded version
+	 * @return indexes of cells changed after given version, or null if they are no longer
+	 *  known and a full snapshot is needed
+	 */
+	BitSet changedSince(long sinceVersion, long currentVersion) {
+		if(sinceVersion > currentVersion) {
+			return null;
+		}
+		BitSet changed = new BitSet();
+		if(sinceVersion == currentVersion) {
+			return changed;
+		}
+		if(changes.isEmpty() || changes.peekFirst().version > sinceVersion + 1) {
+			return null;
+		}
+		Iterator<Change> it = changes.descendingIterator();
+		while(it.hasNext()) {
+			Change change = it.next();
+			if(change.version <= sinceVersion) {
+				break;
+			}
+			if(change.cellIxs == null) {
+				return null;
+			}
+			for(int cellIx : change.cellIxs) {
+				changed.set(cellIx);
+			}
+		}
+		return changed;
+	}
+
+}
@@ -0,0 +1,75 @@
+/**
+ *
+ */
+package com.deviget.minesweeperserver.api;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.annotation.PersistenceConstructor;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+/**
+ * @author fernando
+ * Heartbeat of a cluster node, see {@link GameCluster}.
+ * Times are epoch milliseconds of the node's clock.
+ */
+@Document(collection = "clusterNodes")
+class ClusterNode {
+
+	static final String URL_FIELD = "url";
+
+	static final String JOINED_AT_FIELD = "joinedAt";
+
+	static final String HEARTBEAT_AT_FIELD = "heartbeatAt";
+
+	@Id
+	private final String id;
+
+	/**
+	 * Base url requests for games it owns are sent to, such as http://10.0.0.1:8080
+	 */
+	private final String url;
+
+	private final long joinedAt;
+
+	private final long heartbeatAt;
+
+	/**
+	 * @param id
+	 * @param url
+	 * @param joinedAt
+	 * @param heartbeatAt
+	 */
+	@PersistenceConstructor
+	ClusterNode(String id, String url, long joinedAt, long heartbeatAt) {
+		super();
+		this.id = id;
+		this.url = url;
+		this.joinedAt = joinedAt;
+		this.heartbeatAt = heartbeatAt;
+	}
+
+	String getId() {
+		return id;
+	}
+
+	String getUrl() {
+		return url;
+	}
+
+	long getJoinedAt() {
+		return joinedAt;
+	}
+
+	long getHeartbeatAt() {
+		return heartbeatAt;
+	}
+
+	/* (non-Javadoc)
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString() {
+		return "ClusterNode [id=" + id + ", url=" + url + ", joinedAt=" + joinedAt + ", heartbeatAt=" + heartbeatAt + "]";
+	}
+
+}
@@ -0,0 +1,44 @@
+/**
+ * 
+ */
+package com.deviget.minesweeperserver.api;
+
+import java.util.List;
+
+/**
+ * @author fernando
+ * Forwards game notifications to several listeners, in order
+ */
+class CompositeGameListener implements GameListener {
+	
+	private final GameListener[] listeners;
+
+	/**
+	 * @param listeners
+	 */
+	CompositeGameListener(List<? extends GameListener> listeners) {
+		super();
+		this.listeners = listeners.toArray(new GameListener[0]);
+	}
+
+	/* (non-Javadoc)
+	 * @see com.deviget.minesweeperserver.api.GameListener#moveApplied(com.deviget.minesweeperserver.api.Game, com.deviget.minesweeperserver.api.GameMove)
+	 */
+	@Override
+	public void moveApplied(Game game, GameMove move) {
+		for(GameListener listener : listeners) {
+			listener.moveApplied(game, move);
+		}
+	}
+
+	/* (non-Javadoc)
+	 * @see com.deviget.minesweeperserver.api.GameListener#changeCommitted(com.deviget.minesweeperserver.api.Game, com.deviget.minesweeperserver.api.GameMove.Op, com.deviget.minesweeperserver.api.Game.Status)
+	 */
+	@Override
+	public void changeCommitted(Game game, GameMove.Op cause, Game.Status previousStatus) {
+		for(GameListener listener : listeners) {
+			listener.changeCommitted(game, cause, previousStatus);
+		}
+	}
+
+}
@@ -0,0 +1,139 @@
+/**
+ * 
+ */
+package com.deviget.minesweeperserver.api;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.Consumer;
+
+import org.springframework.stereotype.Component;
+
+/**
+ * @author fernando
+ * Hashed timing wheel with one second ticks keeping game ids by expiration deadline.
+ * Scheduling only appends to the slot of its deadline and advancing only drains slots
+ * of elapsed ticks, so sweeping costs are bound by games due instead of games alive.
+ * Wheel spans more than {@link Game#MAX_DURATION} so deadlines rarely wrap around,
+ * entries whose deadline belongs to a later round are put back when drained.
+ * Scheduling is thread safe, advancing must be done by a single thread at a time.
+ */
+@Component
+class ExpirationWheel {
+	
+	private static final int SLOTS = 1024;
+	
+	private final Queue<Entry>[] slots;
+	
+	/**
+	 * Last tick (epoch second) whose slot was drained
+	 */
+	private volatile long lastTick;
+	
+	@SuppressWarnings("unchecked")
+	ExpirationWheel() {
+		this.slots = new Queue[SLOTS];
+		for(int ix = 0; ix < SLOTS; ix++) {
+			this.slots[ix] = new ConcurrentLinkedQueue<>();
+		}
+		this.lastTick = -1L;
+	}
+	
+	/**
+	 * @author fernando
+	 * Scheduled game id
+	 */
+	private static class Entry {
+		
+		private final String gameId;
+		
+		private final long deadline;
+
+		/**
+		 * @param gameId
+		 * @param deadline
+		 */
+		Entry(String gameId, long deadline) {
+			super();
+			this.gameId = gameId;
+			this.deadline = deadline;
+		}
+		
+	}
+	
+	/**
+	 * @param gameId
+	 * @param deadline - epoch second game expires at, if already elapsed
+	 *  it will be due on next advance
+	 */
+	void schedule(String gameId, long deadline) {
+		long tick = Math.max(deadline, lastTick + 1);
+		slots[slotOf(tick)].add(new Entry(gameId, deadline));
+	}
+	
+	/**
+	 * @param gameId
+	 * @param deadline - date time (system zone) game expires at
+	 */
+	void schedule(String gameId, LocalDateTime deadline) {
+		schedule(gameId, epochSecondOf(deadline));
+	}
+	
+	/**
+	 * @param dateTime
+	 * @return epoch second of given date time in system zone
+	 */
+	static long epochSecondOf(LocalDateTime dateTime) {
+		return dateTime.atZone(ZoneId.systemDefault()).toEpochSecond();
+	}
+	
+	/**
+	 * Drains slots of ticks elapsed since last advance
+	 * @param now - current epoch second
+	 * @param due - receives ids of games whose deadline is not later than now
+	 */
+	void advance(long now, Consumer<String> due) {
+		long tick = (lastTick < 0 ? now - SLOTS + 1 : lastTick + 1);
+		//a full round covers every slot, older ticks need no visit
+		tick = Math.max(tick, now - SLOTS + 1);
+		for(; tick <= now; tick++) {
+			Queue<Entry> slot = slots[slotOf(tick)];
+			List<Entry> laterRounds = null;
+			Entry entry;
+			while((entry = slot.poll()) != null) {
+				if(entry.deadline <= now) {
+					due.accept(entry.gameId);
+				} else {
+					if(laterRounds == null) {
+						laterRounds = new ArrayList<>();
+					}
+					laterRounds.add(entry);
+				}
+			}
+			if(laterRounds != null) {
+				slot.addAll(laterRounds);
+			}
+			lastTick = tick;
+		}
+	}
+	
+	/**
+	 * @return number of scheduled entries, costly since it visits every slot
+	 */
+	int size() {
+		int size = 0;
+		for(Queue<Entry> slot : slots) {
+			size += slot.size();
+		}
+		return size;
+	}
+	
+	private static int slotOf(long tick) {
+		return (int)Math.floorMod(tick, (long)SLOTS);
+	}
+
+}
@@ -6,33 +6,39 @@ package com.deviget.minesweeperserver.api;
 import java.io.Serializable;
 import java.time.Duration;
 import java.time.LocalDateTime;
-import java.util.HashMap;
-import java.util.HashSet;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.LinkedHashSet;
 import java.util.List;
-import java.util.Map;
-import java.util.Map.Entry;
 import java.util.Objects;
-import java.util.Optional;
-import java.util.Random;
 import java.util.Set;
-import java.util.stream.Collectors;
-import java.util.stream.Stream;
+import java.util.SplittableRandom;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
 
 import org.bson.types.ObjectId;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.data.annotation.Id;
 import org.springframework.data.annotation.PersistenceConstructor;
+import org.springframework.data.annotation.Transient;
 import org.springframework.data.mongodb.core.mapping.Document;
+import org.springframework.data.mongodb.core.mapping.Field;
 
-import com.deviget.minesweeperserver.api.Game.Cell.Coordinates;
 import com.deviget.minesweeperserver.api.Game.Cell.FlaggedStatus;
+import com.fasterxml.jackson.annotation.JsonPropertyOrder;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
 
 /**
  * @author fernando
- *
+ * Concurrency model: every mutation of a game is applied holding its monitor, which
+ * sequences moves of the same game while moves of different games never contend.
+ * Status, version and time played may be read without it, status only moves forward
+ * through compare-and-set transitions so a game is finished exactly once.
  */
 @Document
+@JsonSerialize(using = GameSerializer.class)
 class Game implements Serializable {
 
 	/* INTERNAL IMPLEMENTATION */
@@ -50,7 +56,18 @@ class Game implements Serializable {
 	
 	static final Duration MAX_DURATION = Duration.ofSeconds(999L);
 	
-	private static final Random rnd = new Random();
+	/**
+	 * Maximum number of moves applied at once, bounds time the game is locked for
+	 */
+	static final int MAX_MOVES_PER_BATCH = 1000;
+	
+	/**
+	 * Maximum number of versions whose changed cells are remembered
+	 */
+	private static final int CHANGE_RING_CAPACITY = 64;
+	
+	private static final AtomicReferenceFieldUpdater<Game, Status> STATUS_UPDATER =
+		AtomicReferenceFieldUpdater.newUpdater(Game.class, Status.class, "status");
 	
 	/**
 	 * Auto-generated
@@ -74,14 +91,29 @@ class Game implements Serializable {
 	private int mines;
 	
 	/**
-	 * Map of contained cells keyed by coordinates
+	 * Packed state of contained cells, allocated on first move
+	 * for lazily generated games. Stored under legacy cells field
+	 * so games saved with a document per cell are migrated on load.
+	 */
+	@Field("cells")
+	private Board board;
+	
+	/**
+	 * Seed of the generator used for placing mines
 	 */
-	private Map<Cell.Coordinates, Cell> cells;
+	private long seed;
+	
+	/**
+	 * False until mines are placed, lazily generated games
+	 * place them on first reveal so it's always safe
+	 */
+	private boolean minesPlaced;
 	
 	/**
 	 * Created, Started, etc 
+	 * Only changed through {@link #transition(Status, Status)}
 	 */
-	private Status status;
+	private volatile Status status;
 	
 	/**
 	 * Game creator login
@@ -103,7 +135,42 @@ class Game implements Serializable {
 	/**
 	 * Total time in seconds played
 	 */
-	private Duration timePlayed;
+	private volatile Duration timePlayed;
+	
+	/**
+	 * Number of non-mine cells not revealed yet,
+	 * game is won when it reaches zero
+	 */
+	private int safeCellsLeft;
+	
+	/**
+	 * Number of moves applied, sequence of the last one in the {@link GameMoveLog}
+	 */
+	private long moveCount;
+	
+	/**
+	 * Incremented by every change, so clients can ask for changes since the version they have
+	 */
+	private volatile long version;
+	
+	/**
+	 * Cells changed by latest versions, not persisted so a reloaded game
+	 * serves full snapshots until it changes again
+	 */
+	@Transient
+	private transient ChangeRing changes;
+	
+	/**
+	 * Notified of every move applied, not persisted
+	 */
+	@Transient
+	private transient GameListener listener;
+	
+	/**
+	 * Set once another node owns this game, not persisted
+	 */
+	@Transient
+	private transient volatile boolean fenced;
 	
 	//to only allow creation of instance through factory method
 	private Game() {
@@ -114,7 +181,6 @@ class Game implements Serializable {
 		this.createdAt = LocalDateTime.now();
 		this.status = Status.CREATED;
 		this.id = ObjectId.get();
-		this.cells = new HashMap<>();
 	}
 		
 	/**
@@ -122,31 +188,110 @@ class Game implements Serializable {
 	 * @param rows
 	 * @param columns
 	 * @param mines
-	 * @param cells
+	 * @param board
 	 * @param status
 	 * @param createdBy
+	 * @param safeCellsLeft - recomputed from board if missing (games persisted before it was tracked)
+	 * @param seed - 0 if missing (games persisted before it was recorded, whose mines are already placed)
+	 * @param minesPlaced - assumed true if missing (games persisted before lazy generation)
 	 * @param createdAt
 	 * @param startedAt
 	 * @param timePlayed
 	 */
 	@PersistenceConstructor
-	Game(ObjectId id, short rows, short columns, int mines, Map<Cell.Coordinates, Cell> cells, Status status,
-			String createdBy) {
+	Game(ObjectId id, short rows, short columns, int mines, Board board, Status status,
+			String createdBy, Integer safeCellsLeft, Long seed, Boolean minesPlaced) {
 		super();
 		this.id = id;
 		this.rows = rows;
 		this.columns = columns;
 		this.mines = mines;
-		this.cells = cells;
+		this.board = board;
 		this.status = status;
 		this.createdBy = createdBy;
+		this.seed = (seed != null ? seed : 0L);
+		this.minesPlaced = (minesPlaced != null ? minesPlaced : true);
+		this.safeCellsLeft = (safeCellsLeft != null ? safeCellsLeft : countSafeCellsLeft());
 	}	
 	
+	/**
+	 * Must be called holding source's monitor
+	 * @param source
+	 */
+	private Game(Game source) {
+		super();
+		this.id = source.id;
+		this.rows = source.rows;
+		this.columns = source.columns;
+		this.mines = source.mines;
+		this.board = (source.board != null ? source.board.copy() : null);
+		this.seed = source.seed;
+		this.minesPlaced = source.minesPlaced;
+		this.status = source.status;
+		this.createdBy = source.createdBy;
+		this.createdAt = source.createdAt;
+		this.startedAt = source.startedAt;
+		this.timePlayed = source.timePlayed;
+		this.safeCellsLeft = source.safeCellsLeft;
+		this.moveCount = source.moveCount;
+		this.version = source.version;
+	}
+	
+	/**
+	 * Must be called holding this game's monitor
+	 * @return detached copy of current state, with board on the heap and neither listener nor change history
+	 */
+	Game copy() {
+		return new Game(this);
+	}
+	
+	/**
+	 * @return number of non-mine cells not revealed yet
+	 */
+	private int countSafeCellsLeft() {
+		if(!this.minesPlaced) {
+			return rows * columns - mines;
+		}
+		int count = 0;
+		for(int ix = 0; ix < board.size(); ix++) {
+			if(!board.hasMine(ix) && !board.isRevealed(ix)) {
+				count++;
+			}
+		}
+		return count;
+	}
+	
 	
 	enum RelativePosition {
-		TOP_LEFT, TOP_MIDDLE, TOP_RIGHT, LEFT_MIDDLE, RIGHT_MIDDLE, BOTTOM_LEFT, BOTTOM_MIDDLE, BOTTOM_RIGHT
+		TOP_LEFT(-1, -1), TOP_MIDDLE(-1, 0), TOP_RIGHT(-1, 1), LEFT_MIDDLE(0, -1), RIGHT_MIDDLE(0, 1),
+		BOTTOM_LEFT(1, -1), BOTTOM_MIDDLE(1, 0), BOTTOM_RIGHT(1, 1);
+		
+		private final int rowOffset;
+		
+		private final int columnOffset;
+		
+		RelativePosition(int rowOffset, int columnOffset) {
+			this.rowOffset = rowOffset;
+			this.columnOffset = columnOffset;
+		}
+		
+		int getRowOffset() {
+			return rowOffset;
+		}
+		
+		int getColumnOffset() {
+			return columnOffset;
+		}
 	}
 	
+	private static final RelativePosition[] RELATIVE_POSITIONS = RelativePosition.values();
+	
+	/**
+	 * @author fernando
+	 * Detached view of a board cell, actual state is kept packed in {@link Board}.
+	 * Properties are written in a fixed order, the one {@link GameSerializer} streams them in
+	 */
+	@JsonPropertyOrder({"coordinates", "flaggedStatus", "revealed", "adjMinesNumberRev"})
 	static class Cell  {
 
 		private final Coordinates coordinates;
@@ -179,6 +324,7 @@ class Game implements Serializable {
 			
 		}
 
+		@JsonPropertyOrder({"row", "column"})
 		static class Coordinates {
 
 			private final short row;
@@ -222,7 +368,8 @@ class Game implements Serializable {
 			 */
 			@Override
 			public int hashCode() {
-				return Objects.hash(column, row);
+				//avoids varargs boxing of Objects.hash
+				return 31 * row + column;
 			}
 
 			/* (non-Javadoc)
@@ -250,12 +397,25 @@ class Game implements Serializable {
 		 * @param hasMine
 		 */
 		Cell(Coordinates coordinates, boolean hasMine) {
+			this(coordinates, hasMine, false, FlaggedStatus.NON_FLAGGED, (short)0);
+		}		
+
+		/**
+		 * @param coordinates
+		 * @param hasMine
+		 * @param isRevealed
+		 * @param flaggedStatus
+		 * @param adjMinesNumber
+		 */
+		Cell(Coordinates coordinates, boolean hasMine, boolean isRevealed, FlaggedStatus flaggedStatus,
+				short adjMinesNumber) {
 			super();
 			this.coordinates = coordinates;
 			this.hasMine = hasMine;
-			this.isRevealed = false;
-			this.flaggedStatus = FlaggedStatus.NON_FLAGGED;
-		}		
+			this.isRevealed = isRevealed;
+			this.flaggedStatus = flaggedStatus;
+			this.adjMinesNumber = adjMinesNumber;
+		}
 
 		/**
 		 * @return the isRevealed
@@ -313,14 +473,6 @@ class Game implements Serializable {
 			return (isRevealed ? adjMinesNumber : 0);
 		}
 		
-		Cell getClone() {
-			Cell clone = new Cell(coordinates, hasMine);
-			clone.isRevealed = isRevealed;
-			clone.flaggedStatus = flaggedStatus;
-			clone.adjMinesNumber = adjMinesNumber;
-			return clone;
-		}
-
 		/* (non-Javadoc)
 		 * @see java.lang.Object#toString()
 		 */
@@ -336,7 +488,7 @@ class Game implements Serializable {
 		 */
 		@Override
 		public int hashCode() {
-			return Objects.hash(coordinates);
+			return Objects.hashCode(coordinates);
 		}
 
 		/* (non-Javadoc)
@@ -373,21 +525,24 @@ class Game implements Serializable {
 	 *  Game won, all revealed adj cells from last move, or
 	 *  Game lost, no revealed adj cells
 	 *  Game started(ongoing status until finished), revealed adj cells if applicable
+	 * Only cell indexes are kept, cell views are built when requested. This is safe
+	 * since revealed cells and mines never change once reported.
 	 */
+	@JsonSerialize(using = RevealResultSerializer.class)
 	class RevealResult {
 		private final Game.Status status;
 		private long timePlayedInSeconds;
-		private final Set<Cell> adjCellsRevealed;
+		private final int[] adjCellsRevealedIxs;
 		/**
 		 * @param status
 		 * @param timePlayedInSeconds 
-		 * @param adjCellsRevealed
+		 * @param adjCellsRevealedIxs
 		 */
-		RevealResult(Status status, long timePlayedInSeconds, Set<Cell> adjCellsRevealed) {
+		RevealResult(Status status, long timePlayedInSeconds, int[] adjCellsRevealedIxs) {
 			super();
 			this.status = status;
 			this.timePlayedInSeconds = timePlayedInSeconds;
-			this.adjCellsRevealed = adjCellsRevealed;
+			this.adjCellsRevealedIxs = adjCellsRevealedIxs;
 		}
 		/**
 		 * @return the status
@@ -405,85 +560,130 @@ class Game implements Serializable {
 		 * @return the adjCellsRevealed
 		 */
 		public Set<Cell> getAdjCellsRevealed() {
+			Set<Cell> adjCellsRevealed = new LinkedHashSet<>(adjCellsRevealedIxs.length * 4 / 3 + 1);
+			for(int cellIx : adjCellsRevealedIxs) {
+				adjCellsRevealed.add(board.toCell(cellIx));
+			}
 			return adjCellsRevealed;
 		}		
+		/**
+		 * @return number of cells reported by this result
+		 */
+		int getAdjCellsRevealedCount() {
+			return adjCellsRevealedIxs.length;
+		}
+		/**
+		 * @return indexes of cells reported by this result, must not be modified
+		 */
+		int[] getAdjCellsRevealedIxs() {
+			return adjCellsRevealedIxs;
+		}
+		/**
+		 * @return board of the game this result belongs to
+		 */
+		Board getBoard() {
+			return board;
+		}
 		
 	}
 	
-	private Optional<Cell> getRelativeCell(Cell cell, RelativePosition relPos) {
-		
-		Cell relCell = null;
-		switch(relPos) {
-			case TOP_LEFT:
-				if(cell.coordinates.column > 1 && cell.coordinates.row > 1) {
-					relCell = this.cells.get(new Coordinates(
-						(short)(cell.coordinates.row - 1), (short)(cell.coordinates.column - 1)));
-				}
-				break;
-			case TOP_MIDDLE:
-				if(cell.coordinates.row > 1) {
-					relCell = this.cells.get(new Coordinates(
-						(short)(cell.coordinates.row - 1), cell.coordinates.column));
-				}
-				break;
-			case TOP_RIGHT:
-				if(cell.coordinates.row > 1 && cell.coordinates.column < this.columns) {
-					relCell = this.cells.get(new Coordinates(
-						(short)(cell.coordinates.row - 1), (short)(cell.coordinates.column + 1)));
-				}
-				break;
-			case LEFT_MIDDLE:
-				if(cell.coordinates.column > 1) {
-					relCell = this.cells.get(new Coordinates(
-						cell.coordinates.row, (short)(cell.coordinates.column - 1)));
-				}
-				break;
-			case RIGHT_MIDDLE:
-				if(cell.coordinates.column < this.columns) {
-					relCell = this.cells.get(new Coordinates(
-						cell.coordinates.row, (short)(cell.coordinates.column + 1)));
-				}
-				break;
-			case BOTTOM_LEFT:
-				if(cell.coordinates.column > 1 && cell.coordinates.row < this.rows) {
-					relCell = this.cells.get(
-						new Coordinates((short)(cell.coordinates.row + 1), (short)(cell.coordinates.column - 1)));
-				}
-				break;
-			case BOTTOM_MIDDLE:
-				if(cell.coordinates.row < this.rows) {
-					relCell = this.cells.get(
-						new Coordinates((short)(cell.coordinates.row + 1), cell.coordinates.column));
-				}
-				break;
-			case BOTTOM_RIGHT:
-				if(cell.coordinates.column < this.columns && cell.coordinates.row < this.rows) {
-					relCell = this.cells.get(new Coordinates(
-							(short)(cell.coordinates.row + 1), (short)(cell.coordinates.column + 1)));
-				}
-				break;				
-			default:
-				break;
-			
+	/**
+	 * @author fernando
+	 * Merged result of a sequence of moves
+	 */
+	class MovesResult extends RevealResult {
+		private final int movesApplied;
+		/**
+		 * @param status
+		 * @param timePlayedInSeconds
+		 * @param adjCellsRevealedIxs
+		 * @param movesApplied
+		 */
+		MovesResult(Status status, long timePlayedInSeconds, int[] adjCellsRevealedIxs, int movesApplied) {
+			super(status, timePlayedInSeconds, adjCellsRevealedIxs);
+			this.movesApplied = movesApplied;
+		}
+		/**
+		 * @return number of moves applied, lower than requested if game finished or a move couldn't be applied
+		 */
+		public int getMovesApplied() {
+			return movesApplied;
 		}
-		
-		return Optional.ofNullable(relCell);
-		
 	}
 	
-	private Map<RelativePosition, Cell> getAdjacentCells(Cell cell) {
-		Map<RelativePosition, Cell> relCells = new HashMap<>();
-		Stream.of(RelativePosition.values()).forEach(relPos -> {
-			Optional<Cell> optRelCell = this.getRelativeCell(cell, relPos);
-			if(optRelCell.isPresent()) {
-				relCells.put(relPos, optRelCell.get());
-			} else {
-				relCells.put(relPos, null);
-			}
-		});		
-		
-		return relCells;
-
+	/**
+	 * @author fernando
+	 * Cells changed between two game versions, along with current status and time played
+	 */
+	static class Delta {
+		private final String id;
+		private final long sinceVersion;
+		private final long version;
+		private final Game.Status status;
+		private final Duration timePlayed;
+		private final List<Cell> cells;
+		/**
+		 * @param id
+		 * @param sinceVersion
+		 * @param version
+		 * @param status
+		 * @param timePlayed
+		 * @param cells
+		 */
+		Delta(String id, long sinceVersion, long version, Status status, Duration timePlayed, List<Cell> cells) {
+			super();
+			this.id = id;
+			this.sinceVersion = sinceVersion;
+			this.version = version;
+			this.status = status;
+			this.timePlayed = timePlayed;
+			this.cells = cells;
+		}
+		/**
+		 * @return the id
+		 */
+		public String getId() {
+			return id;
+		}
+		/**
+		 * @return the sinceVersion
+		 */
+		public long getSinceVersion() {
+			return sinceVersion;
+		}
+		/**
+		 * @return the version
+		 */
+		public long getVersion() {
+			return version;
+		}
+		/**
+		 * @return the status
+		 */
+		public Game.Status getStatus() {
+			return status;
+		}
+		/**
+		 * @return the timePlayed
+		 */
+		public Duration getTimePlayed() {
+			return timePlayed;
+		}
+		/**
+		 * @return cells changed since sinceVersion, in their current state
+		 */
+		public List<Cell> getCells() {
+			return cells;
+		}
+	}
+	
+	/**
+	 * @param index
+	 * @param relPos
+	 * @return index of relative cell or -1 if it falls outside the board
+	 */
+	private int getRelativeCell(int index, RelativePosition relPos) {
+		return this.board.neighbour(index, relPos);
 	}
 	
 	/* EXPOSED API */
@@ -517,18 +717,31 @@ class Game implements Serializable {
 	}
 
 	Cell getCellByCoordinates(Cell.Coordinates cellCoord) {
-		return cells.get(cellCoord).getClone();
+		return (board != null ? board.toCell(board.indexOf(cellCoord)) : new Cell(cellCoord, false));
 	}
 	
 	/**
-	 * @return Cell list (cloned from originals, so their state cannot be affected)
+	 * @return Cell list (detached views of board state, so it cannot be affected)
+	 * Empty for lazily generated games which had no move yet.
 	 */
 	public List<Cell> getCells() {
-		return cells.values().stream()
-				.map(Cell::getClone)
-				.collect(Collectors.toList());
+		if(board == null) {
+			return new ArrayList<>();
+		}
+		List<Cell> cellList = new ArrayList<>(board.size());
+		for(int ix = 0; ix < board.size(); ix++) {
+			cellList.add(board.toCell(ix));
+		}
+		return cellList;
 	}	
 	
+	/**
+	 * @return packed board state, null for lazily generated games which had no move yet
+	 */
+	Board getBoard() {
+		return board;
+	}
+	
 	/**
 	 * @return the status
 	 */
@@ -536,6 +749,13 @@ class Game implements Serializable {
 		return status;
 	}
 
+	/**
+	 * @return the version, incremented by every change
+	 */
+	public long getVersion() {
+		return version;
+	}
+
 	/**
 	 * @return the startedAt
 	 */
@@ -550,6 +770,106 @@ class Game implements Serializable {
 		return timePlayed;
 	}
 
+	/**
+	 * @return number of non-mine cells not revealed yet
+	 */
+	int getSafeCellsLeft() {
+		return safeCellsLeft;
+	}
+	
+	/**
+	 * @return the seed
+	 */
+	long getSeed() {
+		return seed;
+	}
+	
+	/**
+	 * @return the minesPlaced
+	 */
+	boolean isMinesPlaced() {
+		return minesPlaced;
+	}
+	
+	/**
+	 * @return the createdAt
+	 */
+	LocalDateTime getCreatedAt() {
+		return createdAt;
+	}
+	
+	/**
+	 * @return number of moves applied
+	 */
+	long getMoveCount() {
+		return moveCount;
+	}
+	
+	/**
+	 * @param listener - notified of every move applied from now on, null for none
+	 */
+	synchronized void setListener(GameListener listener) {
+		this.listener = listener;
+	}
+	
+	/**
+	 * @return date time after which game expires if it's not finished,
+	 *  counted from start or from creation if it was never started
+	 */
+	LocalDateTime getExpiresAt() {
+		return (this.startedAt != null ? this.startedAt : this.createdAt).plus(MAX_DURATION);
+	}
+	
+	/**
+	 * Refuses every later move, once the game is handed over to another node.
+	 * Moves applied until then were already passed to the listener.
+	 */
+	synchronized void fence() {
+		this.fenced = true;
+	}
+	
+	/**
+	 * @return true if game was handed over to another node
+	 */
+	boolean isFenced() {
+		return fenced;
+	}
+	
+	/**
+	 * Must be called holding this game's monitor
+	 * @throws GameHandedOverException if game was handed over
+	 * @throws IllegalArgumentException if game is finished
+	 */
+	private void checkPlayable() {
+		if(this.fenced) {
+			throw new GameHandedOverException("Game was handed over to another node");
+		}
+		if(this.status != Game.Status.CREATED && this.status != Game.Status.STARTED) {
+			throw new IllegalArgumentException(Game.ILLEGAL_GAME_STATE_MSG);
+		}
+	}
+	
+	/**
+	 * Ends game as expired if it's still being played and its maximum duration has elapsed
+	 * @param now
+	 * @return true if game was expired by this call
+	 */
+	synchronized boolean expire(LocalDateTime now) {
+		if(this.fenced || (this.status != Game.Status.CREATED && this.status != Game.Status.STARTED)) {
+			return false;
+		}
+		if(now.isBefore(getExpiresAt())) {
+			return false;
+		}
+		if(this.startedAt != null) {
+			this.timePlayed = MAX_DURATION;
+		}
+		Status previousStatus = this.status;
+		transition(previousStatus, Game.Status.EXPIRED);
+		commitVersion(null, previousStatus, new int[0]);
+		return true;
+	}
+
 	/**
 	 * @param cellCoord
 	 * @return
@@ -559,151 +879,508 @@ class Game implements Serializable {
 	 * returns list of additional revealed cells (or mines if game's lost)
 	 */
 	RevealResult revealCell(Cell.Coordinates cellCoord) throws WrongParametersException {
+		return revealCell(cellCoord, moveTime());
+	}
+	
+	/**
+	 * @param cellCoord
+	 * @param at - when move happens, taken from the log when replaying
+	 * @return
+	 * @throws WrongParametersException
+	 */
+	private RevealResult revealCell(Cell.Coordinates cellCoord, LocalDateTime at) throws WrongParametersException {
+		
+		//check cell
+		int cellIx = indexOf(cellCoord);
+		if(cellIx < 0) {
+			throw new WrongParametersException(Game.WRONG_CELL_COORDINATES_MSG); 
+		}
+		
+		//check-then-act semantics, state is checked under the lock so every
+		//recorded move can be replayed exactly
+		synchronized(this) {
+			int[] adjCellsRevIxs = reveal(cellIx, cellCoord, at, new IntList());
+			return new RevealResult(this.status, this.timePlayed.getSeconds(), adjCellsRevIxs);
+		}
+		
+	}
+	
+	/**
+	 * Must be called holding this game's monitor
+	 * @param cellIx
+	 * @param cellCoord
+	 * @param at
+	 * @param adjCellsRev - indexes of cells revealed by this move (or mines if game's lost) are added to it
+	 * @return indexes added by this move
+	 */
+	private int[] reveal(int cellIx, Cell.Coordinates cellCoord, LocalDateTime at, IntList adjCellsRev) {
 		
 		//check game status
-		if(this.status != Game.Status.CREATED && this.status != Game.Status.STARTED) {
-			throw new IllegalArgumentException(Game.ILLEGAL_GAME_STATE_MSG);
+		checkPlayable();
+		Status previousStatus = this.status;
+		startGameIfApplicable(at);
+		boolean boardAllocated = placeMinesIfApplicable(cellIx);
+		recordMove(GameMove.Op.REVEAL, cellCoord, at);
+		int firstAddedPos = adjCellsRev.size();
+		
+		if(board.hasMine(cellIx)) {
+			
+			transition(Game.Status.STARTED, Game.Status.LOST);
+			//set time played until defeat
+			updateTimePlayed(at);					
+			//collect al mine cells now that everything is lost
+			for(int ix = 0; ix < board.size(); ix++) {
+				if(board.hasMine(ix)) {
+					adjCellsRev.add(ix);
+				}
+			}
+		} else {
+			floodReveal(cellIx, adjCellsRev);
+			
+			//if all cells revealed then we have a winner
+			updateTimePlayed(at);
+			if(this.safeCellsLeft == 0) {
+				transition(Game.Status.STARTED, Game.Status.WON);
+			}
+			LOGGER.debug("{} non-revealed cells left", this.safeCellsLeft);
 		}
+		int[] addedIxs = adjCellsRev.toArray(firstAddedPos);
+		commitVersion(GameMove.Op.REVEAL, previousStatus, boardAllocated ? null : addedIxs);
+		return addedIxs;
+	}
+
+	/**
+	 * @param cellCoord
+	 * @return
+	 * @throws WrongParametersException if cell isn't a revealed one with adjacent mines
+	 *  or red flags around it don't match its adjacent mines number
+	 * 
+	 * Reveals every non flagged neighbour of a revealed cell at once, as players do
+	 * clicking on a number whose mines are all flagged. Returns merged list of cells
+	 * revealed (or mines if a wrong flag made the game lost)
+	 */
+	RevealResult chordCell(Cell.Coordinates cellCoord) throws WrongParametersException {
+		return chordCell(cellCoord, moveTime());
+	}
+	
+	/**
+	 * @param cellCoord
+	 * @param at - when move happens, taken from the log when replaying
+	 * @return
+	 * @throws WrongParametersException
+	 */
+	private RevealResult chordCell(Cell.Coordinates cellCoord, LocalDateTime at) throws WrongParametersException {
+		
 		//check cell
-		Cell cell = cells.get(cellCoord);
-		if(cell == null) {
+		int cellIx = indexOf(cellCoord);
+		if(cellIx < 0) {
 			throw new WrongParametersException(Game.WRONG_CELL_COORDINATES_MSG); 
 		}
 		
-		Set<Cell> adjCellsRev = new HashSet<>();		
-		//check-then-act semantics
-		try {
-			synchronized(this) {
-				
-				startGameIfApplicable();
-				
-				if(cell.hasMine) {
-					
-					this.status = Game.Status.LOST;
-					//set time played until defeat
-					updateTimePlayed();					
-					//collect al mine cells now that everything is lost
-					this.cells.values().stream()
-						.filter(gCell -> gCell.isHasMine())
-						.forEach(gCell -> adjCellsRev.add(gCell));
-					return new RevealResult(Game.Status.LOST, this.timePlayed.getSeconds(), adjCellsRev);
-				}				
-				
-				cell.isRevealed = true;
-				//resets flagged status if appropiate
-				if(cell.flaggedStatus != FlaggedStatus.NON_FLAGGED) {
-					cell.flaggedStatus = FlaggedStatus.NON_FLAGGED;
+		synchronized(this) {
+			int[] adjCellsRevIxs = chord(cellIx, cellCoord, at, new IntList());
+			return new RevealResult(this.status, this.timePlayed.getSeconds(), adjCellsRevIxs);
+		}
+		
+	}
+	
+	/**
+	 * Must be called holding this game's monitor
+	 * @param cellIx
+	 * @param cellCoord
+	 * @param at
+	 * @param adjCellsRev - indexes of cells revealed by this move (or mines if game's lost) are added to it
+	 * @return indexes added by this move
+	 * @throws WrongParametersException
+	 */
+	private int[] chord(int cellIx, Cell.Coordinates cellCoord, LocalDateTime at, IntList adjCellsRev) throws WrongParametersException {
+		
+		//check game status
+		checkPlayable();
+		if(board == null || !board.isRevealed(cellIx) || board.getAdjMinesNumber(cellIx) == 0) {
+			throw new WrongParametersException("Can only chord a revealed cell with adjacent mines"); 
+		}
+		int redFlags = 0;
+		boolean hitsMine = false;
+		for(RelativePosition relPos : RELATIVE_POSITIONS) {
+			int adjCellIx = getRelativeCell(cellIx, relPos);
+			if(adjCellIx < 0 || board.isRevealed(adjCellIx)) {
+				continue;
+			}
+			if(board.getFlaggedStatus(adjCellIx) == FlaggedStatus.RED_FLAG) {
+				redFlags++;
+			} else if(board.hasMine(adjCellIx)) {
+				hitsMine = true;
+			}
+		}
+		if(redFlags != board.getAdjMinesNumber(cellIx)) {
+			throw new WrongParametersException("Red flags around cell don't match its adjacent mines"); 
+		}
+		Status previousStatus = this.status;
+		recordMove(GameMove.Op.CHORD, cellCoord, at);
+		int firstAddedPos = adjCellsRev.size();
+		
+		if(hitsMine) {
+			//a flag was misplaced
+			transition(Game.Status.STARTED, Game.Status.LOST);
+			updateTimePlayed(at);
+			for(int ix = 0; ix < board.size(); ix++) {
+				if(board.hasMine(ix)) {
+					adjCellsRev.add(ix);
 				}
-				
-				//if all cells revealed then we have a winner
-				Optional<Cell> nonRevCellOpt = this.cells.values().stream()
-					.filter(gCell -> !gCell.isHasMine() && !gCell.isRevealed())
-					.findFirst();
-				if(!nonRevCellOpt.isPresent()) {
-					throw new GameWonException();
-				} else {
-					LOGGER.debug("Found non-revealed cell at " + nonRevCellOpt.get().getCoordinates());
+			}
+		} else {
+			//every neighbour seeds the same flood fill, so shared regions are walked once
+			IntList pending = new IntList();
+			for(RelativePosition relPos : RELATIVE_POSITIONS) {
+				int adjCellIx = getRelativeCell(cellIx, relPos);
+				if(adjCellIx >= 0 && !board.isRevealed(adjCellIx)
+						&& board.getFlaggedStatus(adjCellIx) != FlaggedStatus.RED_FLAG) {
+					revealIx(adjCellIx);
+					pending.add(adjCellIx);
 				}
-				
+			}
+			flood(pending, adjCellsRev);
 			
-				//reveals adjacent cells if no adjacent mines present
-				if(cell.adjMinesNumber == 0) {
-					LOGGER.debug("Cell " + cell.coordinates + " has no adj mines, revealing adj cells as well!");
-					this.getAdjacentCells(cell).entrySet().stream().forEach(
-						adjCellEntry -> {
-							revealAdjCellToCell(cell, adjCellsRev, adjCellEntry);
-						});				
-				} else {
-					//add current cell so player can get adj mines info
-					adjCellsRev.add(cell);
-					LOGGER.debug("Cell " + cell.coordinates + " has adj mines, no revealing adjacent ones!");
-				}
+			updateTimePlayed(at);
+			if(this.safeCellsLeft == 0) {
+				transition(Game.Status.STARTED, Game.Status.WON);
 			}
-		} catch (GameWonException e) {
-			updateTimePlayed();
-			this.status = Game.Status.WON;
-			return new RevealResult(Game.Status.WON, this.timePlayed.getSeconds(), adjCellsRev);			
 		}
-			
-		updateTimePlayed();
-		return new RevealResult(Game.Status.STARTED, this.timePlayed.getSeconds(), adjCellsRev);
-		
+		int[] addedIxs = adjCellsRev.toArray(firstAddedPos);
+		commitVersion(GameMove.Op.CHORD, previousStatus, addedIxs);
+		return addedIxs;
 	}
 
 	/**
-	 * 
+	 * @return current time at the precision moves are logged with, so replays match exactly
 	 */
-	private void updateTimePlayed() {
-		this.timePlayed = Duration.between(this.startedAt, LocalDateTime.now());
+	private static LocalDateTime moveTime() {
+		return LocalDateTime.now().truncatedTo(ChronoUnit.MILLIS);
 	}
 
 	/**
-	 * @param cell
-	 * @param adjCellsRevAccum
-	 * @param adjCellEntry
+	 * @param at
 	 */
-	private void revealAdjCellToCell(Cell cell, Set<Cell> adjCellsRevAccum, Entry<RelativePosition, Cell> adjCellEntry) {
-		//check that it hasn't been revealed already
-		if(adjCellEntry.getValue() != null && !adjCellEntry.getValue().isRevealed) {
-			adjCellsRevAccum.add(adjCellEntry.getValue());
-			LOGGER.debug("Revealing adj Cell at " + cell.coordinates);							
-			try {
-				RevealResult adjRevRes = revealCell(adjCellEntry.getValue().getCoordinates());
-				adjCellsRevAccum.addAll(adjRevRes.getAdjCellsRevealed());
-				//if game is won by revealing this adjacent cell stop processing
-			    if(adjRevRes.getStatus() == Game.Status.WON) {
-			    	throw new GameWonException(); 
-			    }
-			} catch (WrongParametersException e) {
-				//this should never happen
-				LOGGER.error("Game internal consistency error " + e.getMessage());
-			}														
+	private void updateTimePlayed(LocalDateTime at) {
+		this.timePlayed = Duration.between(this.startedAt, at);
+	}
+	
+	/**
+	 * Bumps version once a change is fully applied, remembering which cells it changed,
+	 * and notifies listener
+	 * Must be called holding this game's monitor
+	 * @param cause - move which caused the change, null if it wasn't caused by a move
+	 * @param previousStatus - status before the change
+	 * @param changedIxs - null if every cell may have changed
+	 */
+	private void commitVersion(GameMove.Op cause, Status previousStatus, int[] changedIxs) {
+		this.version++;
+		if(this.changes == null) {
+			this.changes = new ChangeRing(CHANGE_RING_CAPACITY, Math.max(CHANGE_RING_CAPACITY, rows * columns / 4));
+		}
+		this.changes.record(this.version, changedIxs);
+		if(this.listener != null) {
+			this.listener.changeCommitted(this, cause, previousStatus);
+		}
+	}
+	
+	/**
+	 * @param sinceVersion - version client already has
+	 * @return cells changed since given version along with current status, or null if
+	 *  they are no longer known and a full snapshot must be sent
+	 */
+	synchronized Delta getDelta(long sinceVersion) {
+		BitSet changedIxs = (this.changes != null ? this.changes.changedSince(sinceVersion, this.version)
+			: (sinceVersion == this.version ? new BitSet() : null));
+		if(changedIxs == null) {
+			return null;
+		}
+		List<Cell> cells = new ArrayList<>(changedIxs.cardinality());
+		for(int ix = changedIxs.nextSetBit(0); ix >= 0; ix = changedIxs.nextSetBit(ix + 1)) {
+			cells.add(board.toCell(ix));
+		}
+		return new Delta(getId(), sinceVersion, this.version, this.status, this.timePlayed, cells);
+	}
+	
+	/**
+	 * Assigns next sequence number to a move being applied and notifies listener
+	 * Must be called holding this game's monitor
+	 * @param op
+	 * @param cellCoord
+	 * @param at
+	 */
+	private void recordMove(GameMove.Op op, Cell.Coordinates cellCoord, LocalDateTime at) {
+		this.moveCount++;
+		if(this.listener != null) {
+			this.listener.moveApplied(this, new GameMove(this.moveCount, op, cellCoord.getRow(), cellCoord.getColumn(), at));
 		}
 	}
 
 	/**
-	 * 
+	 * Reveals cell at given index and, if it has no adjacent mines, every cell reachable
+	 * through cells with no adjacent mines as well.
+	 * Iterates over an explicit stack instead of recursing so big empty regions can't
+	 * overflow the call stack. Revealed bit works as visited mark, cells are marked when
+	 * pushed so each one is handled once.
+	 * Must be called holding this game's monitor, cell at given index must not be a mine.
+	 * @param cellIx
+	 * @param revealedAccum - indexes of cells revealed by this move are added to it
 	 */
-	private void startGameIfApplicable() {
+	private void floodReveal(int cellIx, IntList revealedAccum) {
+		if(board.isRevealed(cellIx)) {
+			//already revealed, report it again so player gets adj mines info
+			revealedAccum.add(cellIx);
+			return;
+		}
+		IntList pending = new IntList();
+		revealIx(cellIx);
+		pending.add(cellIx);
+		flood(pending, revealedAccum);
+	}
+	
+	/**
+	 * Flood fill from already revealed cells
+	 * Must be called holding this game's monitor
+	 * @param pending - revealed cells to start from, emptied by this call
+	 * @param revealedAccum - indexes of cells revealed by this move are added to it
+	 */
+	private void flood(IntList pending, IntList revealedAccum) {
+		while(!pending.isEmpty()) {
+			int currIx = pending.pop();
+			revealedAccum.add(currIx);
+			//reveals adjacent cells if no adjacent mines present
+			if(board.getAdjMinesNumber(currIx) != 0) {
+				continue;
+			}
+			for(RelativePosition relPos : RELATIVE_POSITIONS) {
+				int adjCellIx = getRelativeCell(currIx, relPos);
+				//check that it exists and hasn't been revealed already
+				if(adjCellIx >= 0 && !board.isRevealed(adjCellIx)) {
+					revealIx(adjCellIx);
+					pending.add(adjCellIx);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Flips cell at index to revealed, resetting flagged status if appropiate
+	 * Cell must not be a mine nor be revealed already
+	 * @param cellIx
+	 */
+	private void revealIx(int cellIx) {
+		board.setRevealed(cellIx);
+		this.safeCellsLeft--;
+		if(board.getFlaggedStatus(cellIx) != FlaggedStatus.NON_FLAGGED) {
+			board.setFlaggedStatus(cellIx, FlaggedStatus.NON_FLAGGED);
+		}
+	}
+
+	/**
+	 * @param at
+	 */
+	private void startGameIfApplicable(LocalDateTime at) {
 		if(this.status != Game.Status.STARTED) {
-			this.status = Game.Status.STARTED;
-			this.startedAt = LocalDateTime.now();
+			transition(Game.Status.CREATED, Game.Status.STARTED);
+			this.startedAt = at;
 		}
 	}
 	
+	/**
+	 * Moves status forward
+	 * @param expected - status game must be in
+	 * @param next
+	 * @throws IllegalStateException if game wasn't in expected status, which means
+	 *  it was changed without holding this game's monitor
+	 */
+	private void transition(Status expected, Status next) {
+		if(!STATUS_UPDATER.compareAndSet(this, expected, next)) {
+			throw new IllegalStateException("Game " + getId() + " is " + this.status + " instead of " + expected);
+		}
+	}
+	
+	/**
+	 * Allocates board of lazily generated games
+	 * @return true if board was allocated by this call
+	 */
+	private boolean allocateBoardIfApplicable() {
+		if(this.board == null) {
+			this.board = new Board(this.rows, this.columns);
+			return true;
+		}
+		return false;
+	}
+	
+	/**
+	 * Places mines of lazily generated games keeping first revealed cell safe
+	 * @param firstCellIx
+	 * @return true if board was allocated by this call
+	 */
+	private boolean placeMinesIfApplicable(int firstCellIx) {
+		boolean boardAllocated = allocateBoardIfApplicable();
+		if(!this.minesPlaced) {
+			this.board.placeMines(this.mines, new SplittableRandom(this.seed), firstCellIx);
+			this.minesPlaced = true;
+		}
+		return boardAllocated;
+	}
+	
+	/**
+	 * @param cellCoord
+	 * @return cell index or -1 if coordinates are outside the board,
+	 * computed from dimensions since board may not be allocated yet
+	 */
+	private int indexOf(Cell.Coordinates cellCoord) {
+		if(cellCoord.getRow() < 1 || cellCoord.getRow() > this.rows
+				|| cellCoord.getColumn() < 1 || cellCoord.getColumn() > this.columns) {
+			return -1;
+		}
+		return (cellCoord.getRow() - 1) * this.columns + (cellCoord.getColumn() - 1);
+	}
+	
 	void flagCell(Cell.Coordinates cellCoord) throws WrongParametersException {
+		flagCell(cellCoord, moveTime());
+	}
+	
+	/**
+	 * @param cellCoord
+	 * @param at - when move happens, taken from the log when replaying
+	 * @throws WrongParametersException
+	 */
+	private void flagCell(Cell.Coordinates cellCoord, LocalDateTime at) throws WrongParametersException {
 		
-		//check game status
-		if(this.status != Game.Status.CREATED && this.status != Game.Status.STARTED) {
-			throw new IllegalArgumentException(Game.ILLEGAL_GAME_STATE_MSG);
-		}
 		//check cell
-		Cell cell = cells.get(cellCoord);
-		if(cell == null) {
+		int cellIx = indexOf(cellCoord);
+		if(cellIx < 0) {
 			throw new WrongParametersException(Game.WRONG_CELL_COORDINATES_MSG); 
 		}
-		if(cell.isRevealed()) {
+		
+		synchronized(this) {
+			flag(cellIx, cellCoord, at);
+		}
+
+	}
+	
+	/**
+	 * Must be called holding this game's monitor
+	 * @param cellIx
+	 * @param cellCoord
+	 * @param at
+	 * @throws WrongParametersException
+	 */
+	private void flag(int cellIx, Cell.Coordinates cellCoord, LocalDateTime at) throws WrongParametersException {
+		//check game status
+		checkPlayable();
+		if(board != null && board.isRevealed(cellIx)) {
 			throw new WrongParametersException("Can't flag a revealed cell"); 
 		}
+		Status previousStatus = this.status;
+		startGameIfApplicable(at);
+		boolean boardAllocated = allocateBoardIfApplicable();
+		recordMove(GameMove.Op.FLAG, cellCoord, at);
+		switch(board.getFlaggedStatus(cellIx)) {
+			case NON_FLAGGED:
+				board.setFlaggedStatus(cellIx, FlaggedStatus.RED_FLAG);
+				break;
+			case RED_FLAG:
+				board.setFlaggedStatus(cellIx, FlaggedStatus.QUESTION_MARK);
+				break;
+			case QUESTION_MARK:
+				board.setFlaggedStatus(cellIx, FlaggedStatus.NON_FLAGGED);
+				break;				
+			default:
+				break;
+		}
+		updateTimePlayed(at);
+		commitVersion(GameMove.Op.FLAG, previousStatus, boardAllocated ? null : new int[] {cellIx});
+	}
+	
+	/**
+	 * Applies a sequence of moves holding this game's monitor once, so no other move
+	 * can interleave. Stops once game is finished or at first move which can't be applied,
+	 * moves applied until then are kept.
+	 * @param moves
+	 * @return merged result, cells revealed by every move applied (or mines if game's lost)
+	 * @throws WrongParametersException if there are no moves, too many or any has wrong coordinates,
+	 *  in which case none is applied
+	 */
+	MovesResult applyMoves(List<MoveRequest> moves) throws WrongParametersException {
+		if(moves == null || moves.isEmpty()) {
+			throw new WrongParametersException("No moves given");
+		}
+		if(moves.size() > MAX_MOVES_PER_BATCH) {
+			throw new WrongParametersException("No more than " + MAX_MOVES_PER_BATCH + " moves are allowed at once");
+		}
+		int[] cellIxs = new int[moves.size()];
+		for(int ix = 0; ix < cellIxs.length; ix++) {
+			cellIxs[ix] = indexOf(moves.get(ix).getCoordinates());
+			if(cellIxs[ix] < 0) {
+				throw new WrongParametersException(Game.WRONG_CELL_COORDINATES_MSG + " on move " + (ix + 1)); 
+			}
+		}
 		
+		IntList adjCellsRev = new IntList();
+		int movesApplied = 0;
 		synchronized(this) {
-			startGameIfApplicable();
-			switch(cell.getFlaggedStatus()) {
-				case NON_FLAGGED:
-					cell.setFlaggedStatus(FlaggedStatus.RED_FLAG);
-					break;
-				case RED_FLAG:
-					cell.setFlaggedStatus(FlaggedStatus.QUESTION_MARK);
+			//check game status
+			checkPlayable();
+			for(int ix = 0; ix < cellIxs.length; ix++) {
+				if(this.status != Game.Status.CREATED && this.status != Game.Status.STARTED) {
 					break;
-				case QUESTION_MARK:
-					cell.setFlaggedStatus(FlaggedStatus.NON_FLAGGED);
-					break;				
-				default:
+				}
+				MoveRequest move = moves.get(ix);
+				try {
+					switch(move.getOp()) {
+						case REVEAL:
+							reveal(cellIxs[ix], move.getCoordinates(), moveTime(), adjCellsRev);
+							break;
+						case FLAG:
+							flag(cellIxs[ix], move.getCoordinates(), moveTime());
+							break;
+						case CHORD:
+							chord(cellIxs[ix], move.getCoordinates(), moveTime(), adjCellsRev);
+							break;
+						default:
+							throw new WrongParametersException("Unknown move " + move.getOp());
+					}
+				} catch (WrongParametersException e) {
+					LOGGER.debug("Moves stopped at {}: {}", move, e.getMessage());
 					break;
+				}
+				movesApplied++;
 			}
+			return new MovesResult(this.status, (this.timePlayed != null ? this.timePlayed.getSeconds() : 0L),
+				adjCellsRev.toArray(), movesApplied);
 		}
-		updateTimePlayed();
+	}
 
+	/**
+	 * Applies a logged move again, exactly as it was applied the first time
+	 * @param move - must follow last move applied
+	 */
+	synchronized void replay(GameMove move) {
+		if(move.getSeq() != this.moveCount + 1) {
+			throw new IllegalStateException("Move " + move.getSeq() + " doesn't follow move " + this.moveCount);
+		}
+		Cell.Coordinates cellCoord = new Cell.Coordinates(move.getRow(), move.getColumn());
+		try {
+			switch(move.getOp()) {
+				case REVEAL:
+					revealCell(cellCoord, move.getAt());
+					break;
+				case FLAG:
+					flagCell(cellCoord, move.getAt());
+					break;
+				case CHORD:
+					chordCell(cellCoord, move.getAt());
+					break;
+				default:
+					throw new IllegalStateException("Unknown move " + move.getOp());
+			}
+		} catch (WrongParametersException | IllegalArgumentException e) {
+			throw new IllegalStateException("Move " + move + " can't be replayed on game " + getId(), e);
+		}
 	}
 
 	/* (non-Javadoc)
@@ -716,21 +1393,21 @@ class Game implements Serializable {
 		builder.append("Game [id=");
 		builder.append(id);
 		builder.append(", ");
-		if (cells != null) {
+		if (board != null) {
 			builder.append(System.getProperty("line.separator")).append("cells=");
 			for(short ix = 1; ix <= rows; ix++ ) {
 				builder.append(System.getProperty("line.separator"));
 				for(short ij = 1; ij <= columns; ij++ ) {
 					builder.append(" [");
-					Cell cell = this.cells.get(new Coordinates(ix, ij));
-					if(cell.hasMine) {
+					int cellIx = board.indexOf(ix, ij);
+					if(board.hasMine(cellIx)) {
 						builder.append(" * ");
-					} else if(cell.isRevealed) {
-						builder.append(" ").append(cell.adjMinesNumber).append(" ");
-					} else if(cell.flaggedStatus != FlaggedStatus.NON_FLAGGED) {
-						builder.append(" ").append(cell.flaggedStatus.getSymbol()).append(" ");
+					} else if(board.isRevealed(cellIx)) {
+						builder.append(" ").append(board.getAdjMinesNumber(cellIx)).append(" ");
+					} else if(board.getFlaggedStatus(cellIx) != FlaggedStatus.NON_FLAGGED) {
+						builder.append(" ").append(board.getFlaggedStatus(cellIx).getSymbol()).append(" ");
 					} else {
-						builder.append("(").append(cell.adjMinesNumber).append(")");
+						builder.append("(").append(board.getAdjMinesNumber(cellIx)).append(")");
 					}
 					builder.append("]");
 				}				
@@ -775,6 +1452,32 @@ class Game implements Serializable {
 	 * @throws WrongParametersException 
 	 */
 	static Game createGame(short rows, short columns, int mines) throws WrongParametersException {
+		return createGame(rows, columns, mines, false);
+	}
+
+	/**
+	 * @param rows - Must be greater than 2
+	 * @param columns - Must be greater than 2
+	 * @param mines - Positive value, number of mines must not exceed half of total cells.
+	 * @param lazy - If true only dimensions and seed are recorded, board is generated on
+	 *  first move and mines are placed on first reveal so that cell is always safe.
+	 * @return
+	 * @throws WrongParametersException 
+	 */
+	static Game createGame(short rows, short columns, int mines, boolean lazy) throws WrongParametersException {
+		return createGame(rows, columns, mines, lazy, null);
+	}
+
+	/**
+	 * @param rows - Must be greater than 2
+	 * @param columns - Must be greater than 2
+	 * @param mines - Positive value, number of mines must not exceed half of total cells.
+	 * @param lazy - If true board is generated on first move
+	 * @param id - new one if null, such as one owned by this node, see {@link GameCluster#newGameId()}
+	 * @return
+	 * @throws WrongParametersException 
+	 */
+	static Game createGame(short rows, short columns, int mines, boolean lazy, ObjectId id) throws WrongParametersException {
 		
 		//check arguments
 		if(rows < 2) {
@@ -789,48 +1492,58 @@ class Game implements Serializable {
 			throw new WrongParametersException("Number of mines must not be greater than " + maxNumMinesAllowed);
 		}		
 		
-		//initial game state
+		//mines are spread uniformly, each game draws its own generator
+		//so concurrent creations don't contend on a shared one
 		Game game = new Game();
+		if(id != null) {
+			game.id = id;
+		}
+		return initGame(game, rows, columns, mines, lazy, ThreadLocalRandom.current().nextLong());
+		
+	}
+	
+	/**
+	 * Creates again a game recorded in a {@link GameMoveLog}, arguments are not checked
+	 * @param id
+	 * @param createdAt
+	 * @param rows
+	 * @param columns
+	 * @param mines
+	 * @param lazy
+	 * @param seed
+	 * @return game in the same state it was created
+	 */
+	static Game restoreGame(ObjectId id, LocalDateTime createdAt, short rows, short columns, int mines, boolean lazy,
+			long seed) {
+		Game game = new Game();
+		game.id = id;
+		game.createdAt = createdAt;
+		return initGame(game, rows, columns, mines, lazy, seed);
+	}
+	
+	/**
+	 * @param game
+	 * @param rows
+	 * @param columns
+	 * @param mines
+	 * @param lazy
+	 * @param seed - same seed places mines on same cells
+	 * @return given game set to initial state
+	 */
+	private static Game initGame(Game game, short rows, short columns, int mines, boolean lazy, long seed) {
 		game.columns = columns;
 		game.rows = rows;
 		game.mines = mines;
 
-		//generate cells, one row at a time
-		int minesCreated = 0;		
-		int rndVal;
-		for(short ix = 1; ix <= rows; ix++ ) {
-			for(short ij = 1; ij <= columns; ij++ ) {
-				//sets mine cell condition randomly
-				//untill all mine cells have been created
-				boolean hasMine = false;
-				if(minesCreated < mines) {
-					rndVal = rnd.nextInt(2);					
-					if(rndVal > 0) {
-						hasMine = true;
-						minesCreated++;
-					}
-				}
-				Coordinates coord = new Cell.Coordinates(ix, ij);
-				Cell cell = new Cell(coord, hasMine);
-				game.cells.put(coord, cell);
-			}	
-		}
-		
-		//once cells are created, set number of adjacent mines for each
-		//non-mine one
-		for(Cell cell : game.cells.values()) {
-			if(cell.hasMine) {
-				continue;
-			}
-			long adjMines = Stream.of(RelativePosition.values()).filter(relPos -> {
-				Optional<Cell> relCellOpt = game.getRelativeCell(cell, relPos);
-				return (relCellOpt.isPresent() && relCellOpt.get().hasMine);
-			}).count();
-			cell.adjMinesNumber = (short)adjMines;			
+		game.safeCellsLeft = rows * columns - mines;
+		game.seed = seed;
+		if(!lazy) {
+			game.board = new Board(rows, columns);
+			game.board.placeMines(mines, new SplittableRandom(game.seed), -1);
+			game.minesPlaced = true;
 		}
 		
 		return game;
-		
 	}
 	
 
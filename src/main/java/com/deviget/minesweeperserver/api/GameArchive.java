@@ -0,0 +1,334 @@
+/**
+ *
+ */
+package com.deviget.minesweeperserver.api;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+
+/**
+ * @author fernando
+ * Read-only tier for finished games, which never change again.
+ * Games won, lost or expired are kept here once they leave the {@link GameStore}, or
+ * recovered through {@link GameMoveLogService} on a miss. Each one is serialized once
+ * per representation asked for and kept gzipped at best compression, so fetching it
+ * again costs a copy of those bytes. Bounded by number of games, least recently
+ * fetched ones are dropped first.
+ */
+@Component
+class GameArchive {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(GameArchive.class);
+
+	private static final int SEGMENTS = 16;
+
+	/**
+	 * @author fernando
+	 * Representations a game is served in
+	 */
+	enum Representation {
+
+		JSON(MediaType.APPLICATION_JSON_UTF8), ROWS(GameRowsHttpMessageConverter.ROWS_JSON),
+		BINARY(GameBinaryHttpMessageConverter.BINARY);
+
+		private final MediaType mediaType;
+
+		Representation(MediaType mediaType) {
+			this.mediaType = mediaType;
+		}
+
+		MediaType getMediaType() {
+			return mediaType;
+		}
+
+		/**
+		 * @param accept - Accept header, null if there's none
+		 * @return preferred representation among acceptable ones, null if none is
+		 */
+		static Representation of(String accept) {
+			if(accept == null) {
+				return JSON;
+			}
+			List<MediaType> acceptedTypes = MediaType.parseMediaTypes(accept);
+			MediaType.sortBySpecificityAndQuality(acceptedTypes);
+			for(MediaType accepted : acceptedTypes) {
+				if(accepted.getQualityValue() == 0) {
+					continue;
+				}
+				if(ROWS.mediaType.equalsTypeAndSubtype(accepted)) {
+					return ROWS;
+				}
+				if(BINARY.mediaType.equalsTypeAndSubtype(accepted)) {
+					return BINARY;
+				}
+				if(accepted.includes(JSON.mediaType)) {
+					return JSON;
+				}
+			}
+			return null;
+		}
+
+	}
+
+	/**
+	 * @author fernando
+	 * Finished game along with its serialized bodies, built when first asked for.
+	 * Two threads may build the same body at once, both get the same bytes.
+	 */
+	class ArchivedGame {
+
+		private final Game game;
+
+		private final AtomicReferenceArray<byte[]> gzippedBodies =
+			new AtomicReferenceArray<>(Representation.values().length);
+
+		/**
+		 * @param game
+		 */
+		ArchivedGame(Game game) {
+			super();
+			this.game = game;
+		}
+
+		Game getGame() {
+			return game;
+		}
+
+		/**
+		 * @param representation
+		 * @return gzipped body of given representation
+		 */
+		byte[] getGzippedBody(Representation representation) {
+			byte[] body = gzippedBodies.get(representation.ordinal());
+			if(body == null) {
+				body = gzip(serialize(game, representation));
+				gzippedBodies.set(representation.ordinal(), body);
+				bodiesBuilt.increment();
+			}
+			return body;
+		}
+
+		/**
+		 * @param representation
+		 * @return body of given representation, for clients not accepting gzip
+		 */
+		byte[] getBody(Representation representation) {
+			try(InputStream in = new GZIPInputStream(new ByteArrayInputStream(getGzippedBody(representation)))) {
+				ByteArrayOutputStream out = new ByteArrayOutputStream();
+				byte[] buffer = new byte[8192];
+				int read;
+				while((read = in.read(buffer)) >= 0) {
+					out.write(buffer, 0, read);
+				}
+				return out.toByteArray();
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+
+	}
+
+	private final Map<String, ArchivedGame>[] segments;
+
+	private final GameMoveLogService gameMoveLog;
+
+	private final ObjectWriter jsonWriter;
+
+	private final ObjectWriter rowsWriter;
+
+	private final LongAdder hits = new LongAdder();
+
+	private final LongAdder misses = new LongAdder();
+
+	private final LongAdder bodiesBuilt = new LongAdder();
+
+	/**
+	 * @param maxSize - maximum number of games held
+	 * @param gameMoveLog - where games missing are recovered from
+	 * @param objectMapper - application's
+	 */
+	@Autowired
+	@SuppressWarnings("unchecked")
+	GameArchive(@Value("${minesweeper.archive.max-size:10000}") int maxSize, GameMoveLogService gameMoveLog,
+			ObjectMapper objectMapper) {
+		super();
+		if(maxSize < SEGMENTS) {
+			throw new IllegalArgumentException("Archive size must be at least " + SEGMENTS);
+		}
+		int segmentCapacity = maxSize / SEGMENTS;
+		this.segments = new Map[SEGMENTS];
+		for(int ix = 0; ix < SEGMENTS; ix++) {
+			this.segments[ix] = new LinkedHashMap<String, ArchivedGame>(16, 0.75f, true) {
+
+				private static final long serialVersionUID = 1L;
+
+				@Override
+				protected boolean removeEldestEntry(Map.Entry<String, ArchivedGame> eldest) {
+					return size() > segmentCapacity;
+				}
+
+			};
+		}
+		this.gameMoveLog = gameMoveLog;
+		this.jsonWriter = objectMapper.writer();
+		this.rowsWriter = objectMapper.writer().withAttribute(GameSerializer.ROWS, Boolean.TRUE);
+	}
+
+	private Map<String, ArchivedGame> segmentFor(String gameId) {
+		return segments[(gameId.hashCode() & Integer.MAX_VALUE) % SEGMENTS];
+	}
+
+	/**
+	 * @param game - must be finished
+	 */
+	void put(Game game) {
+		if(!isFinished(game.getStatus())) {
+			throw new IllegalArgumentException("Only finished games are archived");
+		}
+		Map<String, ArchivedGame> segment = segmentFor(game.getId());
+		synchronized(segment) {
+			segment.putIfAbsent(game.getId(), new ArchivedGame(game));
+		}
+	}
+
+	/**
+	 * @param gameId
+	 * @return archived game if it's held in memory, null otherwise
+	 */
+	ArchivedGame getIfPresent(String gameId) {
+		Map<String, ArchivedGame> segment = segmentFor(gameId);
+		ArchivedGame archived;
+		synchronized(segment) {
+			archived = segment.get(gameId);
+		}
+		if(archived != null) {
+			hits.increment();
+		}
+		return archived;
+	}
+
+	/**
+	 * @param gameId
+	 * @return archived game, recovered if it isn't held in memory, or null if
+	 *  there's no finished game with given id
+	 */
+	ArchivedGame get(String gameId) {
+		ArchivedGame archived = getIfPresent(gameId);
+		if(archived != null) {
+			return archived;
+		}
+		misses.increment();
+		Game game;
+		try {
+			game = gameMoveLog.recover(gameId);
+		} catch (DataAccessException | IllegalStateException e) {
+			LOGGER.error("Game " + gameId + " couldn't be loaded " + e.getMessage());
+			return null;
+		}
+		if(game == null || !isFinished(game.getStatus())) {
+			return null;
+		}
+		Map<String, ArchivedGame> segment = segmentFor(gameId);
+		synchronized(segment) {
+			//another thread may have archived it meanwhile, keep that one
+			return segment.computeIfAbsent(gameId, id -> new ArchivedGame(game));
+		}
+	}
+
+	/**
+	 * @return number of games held
+	 */
+	int size() {
+		int size = 0;
+		for(Map<String, ArchivedGame> segment : segments) {
+			synchronized(segment) {
+				size += segment.size();
+			}
+		}
+		return size;
+	}
+
+	/**
+	 * @return lookups answered from memory
+	 */
+	long getHits() {
+		return hits.sum();
+	}
+
+	/**
+	 * @return lookups which had to recover the game
+	 */
+	long getMisses() {
+		return misses.sum();
+	}
+
+	/**
+	 * @return number of bodies serialized and compressed
+	 */
+	long getBodiesBuilt() {
+		return bodiesBuilt.sum();
+	}
+
+	/**
+	 * @param status
+	 * @return true if a game with given status never changes again
+	 */
+	static boolean isFinished(Game.Status status) {
+		return status == Game.Status.WON || status == Game.Status.LOST || status == Game.Status.EXPIRED;
+	}
+
+	private byte[] serialize(Game game, Representation representation) {
+		try {
+			switch(representation) {
+				case ROWS:
+					return rowsWriter.writeValueAsBytes(game);
+				case BINARY:
+					ByteArrayOutputStream out = new ByteArrayOutputStream();
+					GameWireCodec.encode(game, out);
+					return out.toByteArray();
+				default:
+					return jsonWriter.writeValueAsBytes(game);
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	private static byte[] gzip(byte[] body) {
+		ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(64, body.length / 8));
+		try(GZIPOutputStream gzip = new GZIPOutputStream(out) {
+			{
+				//built once and served many times, worth the slowest level
+				def.setLevel(Deflater.BEST_COMPRESSION);
+			}
+		}) {
+			gzip.write(body);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		return out.toByteArray();
+	}
+
+}
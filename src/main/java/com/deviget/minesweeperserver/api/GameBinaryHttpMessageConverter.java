@@ -0,0 +1,65 @@
+/**
+ *
+ */
+package com.deviget.minesweeperserver.api;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import org.springframework.http.HttpInputMessage;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.AbstractHttpMessageConverter;
+import org.springframework.http.converter.HttpMessageNotReadableException;
+
+/**
+ * @author fernando
+ * Writes games, move results and deltas in the binary wire format, see {@link GameWireCodec},
+ * to clients asking for {@link #BINARY} through Accept. Registered after the JSON converters
+ * by {@link WebConfig}, so it's never chosen unless asked for.
+ */
+class GameBinaryHttpMessageConverter extends AbstractHttpMessageConverter<Object> {
+
+	static final MediaType BINARY = MediaType.valueOf("application/vnd.minesweeper.binary");
+
+	GameBinaryHttpMessageConverter() {
+		super(BINARY);
+	}
+
+	/* (non-Javadoc)
+	 * @see org.springframework.http.converter.AbstractHttpMessageConverter#supports(java.lang.Class)
+	 */
+	@Override
+	protected boolean supports(Class<?> clazz) {
+		return GameWireCodec.supports(clazz);
+	}
+
+	/* (non-Javadoc)
+	 * @see org.springframework.http.converter.AbstractHttpMessageConverter#canRead(java.lang.Class, org.springframework.http.MediaType)
+	 */
+	@Override
+	public boolean canRead(Class<?> clazz, MediaType mediaType) {
+		return false;
+	}
+
+	/* (non-Javadoc)
+	 * @see org.springframework.http.converter.AbstractHttpMessageConverter#readInternal(java.lang.Class, org.springframework.http.HttpInputMessage)
+	 */
+	@Override
+	protected Object readInternal(Class<? extends Object> clazz, HttpInputMessage inputMessage) throws IOException {
+		throw new HttpMessageNotReadableException("Binary format is only written", inputMessage);
+	}
+
+	/* (non-Javadoc)
+	 * @see org.springframework.http.converter.AbstractHttpMessageConverter#writeInternal(java.lang.Object, org.springframework.http.HttpOutputMessage)
+	 */
+	@Override
+	protected void writeInternal(Object value, HttpOutputMessage outputMessage) throws IOException {
+		//encoded up front so length is known, messages are small
+		ByteArrayOutputStream encoded = new ByteArrayOutputStream(256);
+		GameWireCodec.encode(value, encoded);
+		outputMessage.getHeaders().setContentLength(encoded.size());
+		encoded.writeTo(outputMessage.getBody());
+	}
+
+}
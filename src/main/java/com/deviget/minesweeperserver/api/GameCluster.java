@@ -0,0 +1,371 @@
+/**
+ *
+ */
+package com.deviget.minesweeperserver.api;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+import javax.annotation.PreDestroy;
+
+import org.bson.types.ObjectId;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.web.context.WebServerInitializedEvent;
+import org.springframework.context.ApplicationListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.mongodb.core.MongoOperations;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Component;
+
+/**
+ * @author fernando
+ * Opt-in clustering (minesweeper.cluster.enabled), so several nodes can run behind a
+ * load balancer. Games are partitioned among nodes by a {@link HashRing} over their ids,
+ * requests for games owned by another node are routed to it by {@link GameRoutingFilter}.
+ * Nodes find each other through heartbeats in MongoDB, see {@link ClusterNode}. A node
+ * joins the ring once it has been beating for the join delay, so every node sees it
+ * join about the same time, and leaves it once it stops beating for the node timeout
+ * or shuts down. Whenever the ring changes, games no longer owned are dropped from the
+ * store and fenced, so moves racing the handover are refused rather than lost, then
+ * written in bulk through {@link GameWriteBehind} outside the cluster monitor. Their new
+ * owner recovers them from snapshot and move log on first access. Only moves a crashed
+ * node couldn't log are lost.
+ */
+@Component
+class GameCluster implements ApplicationListener<WebServerInitializedEvent> {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(GameCluster.class);
+
+	/**
+	 * Ids tried to find one owned locally, 1 in members number is
+	 */
+	private static final int MAX_ID_ATTEMPTS_PER_NODE = 64;
+
+	private final boolean enabled;
+
+	private final String nodeId;
+
+	private final String advertisedHost;
+
+	private final long heartbeatIntervalMillis;
+
+	private final long nodeTimeoutMillis;
+
+	private final long joinDelayMillis;
+
+	private final MongoOperations mongoOperations;
+
+	private final GameStore gameStore;
+
+	private final GameWriteBehind gameWriteBehind;
+
+	private final LongSupplier clock;
+
+	private volatile String url;
+
+	private volatile HashRing ring = new HashRing(Collections.emptyList());
+
+	private volatile Map<String, String> urls = Collections.emptyMap();
+
+	private volatile long lastHeartbeatAt;
+
+	private ScheduledExecutorService heartbeater;
+
+	private volatile boolean left;
+
+	private final LongAdder handedOver = new LongAdder();
+
+	/**
+	 * @param enabled
+	 * @param nodeId - unique among nodes, random if empty
+	 * @param advertisedHost - host other nodes reach this one at, local address if empty
+	 * @param heartbeatInterval
+	 * @param nodeTimeout - nodes not beating for longer leave the ring
+	 * @param joinDelay - nodes beating for shorter don't join the ring yet
+	 * @param mongoOperations - where heartbeats are written
+	 * @param gameStore
+	 * @param gameWriteBehind - where games handed over are written through
+	 */
+	@Autowired
+	GameCluster(@Value("${minesweeper.cluster.enabled:false}") boolean enabled,
+			@Value("${minesweeper.cluster.node-id:}") String nodeId,
+			@Value("${minesweeper.cluster.advertised-host:}") String advertisedHost,
+			@Value("${minesweeper.cluster.heartbeat-interval:1s}") Duration heartbeatInterval,
+			@Value("${minesweeper.cluster.node-timeout:5s}") Duration nodeTimeout,
+			@Value("${minesweeper.cluster.join-delay:3s}") Duration joinDelay,
+			MongoOperations mongoOperations, GameStore gameStore, GameWriteBehind gameWriteBehind) {
+		this(enabled, nodeId, advertisedHost, heartbeatInterval, nodeTimeout, joinDelay, mongoOperations, gameStore,
+			gameWriteBehind, System::currentTimeMillis);
+	}
+
+	/**
+	 * @param enabled
+	 * @param nodeId
+	 * @param advertisedHost
+	 * @param heartbeatInterval
+	 * @param nodeTimeout
+	 * @param joinDelay
+	 * @param mongoOperations
+	 * @param gameStore
+	 * @param gameWriteBehind
+	 * @param clock - epoch milliseconds source
+	 */
+	GameCluster(boolean enabled, String nodeId, String advertisedHost, Duration heartbeatInterval, Duration nodeTimeout,
+			Duration joinDelay, MongoOperations mongoOperations, GameStore gameStore, GameWriteBehind gameWriteBehind,
+			LongSupplier clock) {
+		super();
+		if(nodeTimeout.compareTo(heartbeatInterval) <= 0) {
+			throw new IllegalArgumentException("Node timeout must be longer than heartbeat interval");
+		}
+		this.enabled = enabled;
+		this.nodeId = (nodeId == null || nodeId.isEmpty() ? UUID.randomUUID().toString() : nodeId);
+		this.advertisedHost = (advertisedHost == null || advertisedHost.isEmpty() ? localAddress() : advertisedHost);
+		this.heartbeatIntervalMillis = heartbeatInterval.toMillis();
+		this.nodeTimeoutMillis = nodeTimeout.toMillis();
+		this.joinDelayMillis = joinDelay.toMillis();
+		this.mongoOperations = mongoOperations;
+		this.gameStore = gameStore;
+		this.gameWriteBehind = gameWriteBehind;
+		this.clock = clock;
+	}
+
+	private static String localAddress() {
+		try {
+			return InetAddress.getLocalHost().getHostAddress();
+		} catch (UnknownHostException e) {
+			return "localhost";
+		}
+	}
+
+	/* (non-Javadoc)
+	 * @see org.springframework.context.ApplicationListener#onApplicationEvent(org.springframework.context.ApplicationEvent)
+	 */
+	@Override
+	public void onApplicationEvent(WebServerInitializedEvent event) {
+		//port is only known once the server started, management servers have their own namespace
+		if(enabled && event.getApplicationContext().getServerNamespace() == null) {
+			start("http://" + advertisedHost + ":" + event.getWebServer().getPort());
+		}
+	}
+
+	/**
+	 * Starts beating
+	 * @param url - base url other nodes reach this one at
+	 */
+	synchronized void start(String url) {
+		if(heartbeater != null) {
+			return;
+		}
+		this.url = url;
+		this.lastHeartbeatAt = clock.getAsLong();
+		LOGGER.info("Node {} joining cluster at {}", nodeId, url);
+		heartbeater = Executors.newSingleThreadScheduledExecutor(runnable -> {
+			Thread thread = new Thread(runnable, "game-cluster");
+			thread.setDaemon(true);
+			return thread;
+		});
+		heartbeater.scheduleWithFixedDelay(this::heartbeat, 0L, heartbeatIntervalMillis, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Writes this node's heartbeat and rebuilds the ring from nodes still beating
+	 */
+	void heartbeat() {
+		if(left) {
+			return;
+		}
+		long now = clock.getAsLong();
+		List<ClusterNode> alive;
+		try {
+			mongoOperations.upsert(Query.query(Criteria.where("_id").is(nodeId)),
+				new Update().set(ClusterNode.URL_FIELD, url).set(ClusterNode.HEARTBEAT_AT_FIELD, now)
+					.setOnInsert(ClusterNode.JOINED_AT_FIELD, now), ClusterNode.class);
+			alive = mongoOperations.find(Query.query(Criteria.where(ClusterNode.HEARTBEAT_AT_FIELD)
+				.gt(now - nodeTimeoutMillis)), ClusterNode.class);
+		} catch (DataAccessException e) {
+			LOGGER.error("Node " + nodeId + " couldn't beat " + e.getMessage());
+			return;
+		}
+		lastHeartbeatAt = now;
+		Map<String, String> aliveUrls = new HashMap<>();
+		List<String> members = new ArrayList<>();
+		for(ClusterNode node : alive) {
+			aliveUrls.put(node.getId(), node.getUrl());
+			if(node.getJoinedAt() <= now - joinDelayMillis) {
+				members.add(node.getId());
+			}
+		}
+		this.urls = aliveUrls;
+		updateRing(new HashRing(members));
+	}
+
+	/**
+	 * Stops beating and hands every game over to remaining nodes
+	 */
+	@PreDestroy
+	void leave() {
+		ScheduledExecutorService stopped;
+		synchronized(this) {
+			if(heartbeater == null || left) {
+				return;
+			}
+			left = true;
+			stopped = heartbeater;
+		}
+		stopped.shutdown();
+		try {
+			//a heartbeat in flight would beat again after leaving
+			stopped.awaitTermination(nodeTimeoutMillis, TimeUnit.MILLISECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		try {
+			mongoOperations.remove(Query.query(Criteria.where("_id").is(nodeId)), ClusterNode.class);
+		} catch (DataAccessException e) {
+			LOGGER.error("Node " + nodeId + " couldn't leave, it will time out " + e.getMessage());
+		}
+		List<String> members = new ArrayList<>(ring.getNodes());
+		members.remove(nodeId);
+		LOGGER.info("Node {} leaving cluster", nodeId);
+		updateRing(new HashRing(members));
+	}
+
+	private void updateRing(HashRing newRing) {
+		List<Game> leaving = new ArrayList<>();
+		synchronized(this) {
+			if(newRing.equals(ring)) {
+				return;
+			}
+			LOGGER.info("Node {} sees {}", nodeId, newRing);
+			//routed to their new owner from now on
+			ring = newRing;
+			for(Game game : gameStore.getAll()) {
+				//removed first so it's no longer found
+				if(!isLocal(game.getId()) && gameStore.remove(game.getId(), game)) {
+					leaving.add(game);
+				}
+			}
+		}
+		handOver(leaving);
+	}
+
+	/**
+	 * Fences games so no move is applied on them anymore, then writes them with bulk
+	 * operations and waits for them to land, so their owner recovers every move applied
+	 * @param games - no longer held in the store
+	 */
+	void handOver(List<Game> games) {
+		if(games.isEmpty()) {
+			return;
+		}
+		for(Game game : games) {
+			game.fence();
+			gameWriteBehind.enqueue(game);
+		}
+		gameWriteBehind.flushAll();
+		int pending = 0;
+		for(Game game : games) {
+			if(gameWriteBehind.getPendingGame(game.getId()) == game) {
+				pending++;
+			}
+		}
+		handedOver.add(games.size() - pending);
+		if(pending > 0) {
+			//snapshot is retried, their moves are logged meanwhile
+			LOGGER.error("{} games couldn't be written yet, their owner recovers them from their log", pending);
+		}
+		LOGGER.debug("{} games handed over", games.size() - pending);
+	}
+
+	/**
+	 * @param gameId
+	 * @return true if game is owned by this node, always if clustering is disabled,
+	 *  there are no members yet or id is not a valid one
+	 */
+	boolean isLocal(String gameId) {
+		if(!enabled || !ObjectId.isValid(gameId)) {
+			return true;
+		}
+		HashRing current = ring;
+		return current.isEmpty() || nodeId.equals(current.ownerOf(gameId));
+	}
+
+	/**
+	 * @param gameId
+	 * @return base url of node owning given game, null if it's owned by this node
+	 *  or its owner is no longer beating
+	 */
+	String ownerUrlOf(String gameId) {
+		if(isLocal(gameId)) {
+			return null;
+		}
+		return urls.get(ring.ownerOf(gameId));
+	}
+
+	/**
+	 * @return true if this node couldn't beat for longer than the node timeout, so
+	 *  other nodes may have taken its games over and it must not apply moves
+	 */
+	boolean isFenced() {
+		return url != null && !left && clock.getAsLong() - lastHeartbeatAt > nodeTimeoutMillis;
+	}
+
+	/**
+	 * @return id for a new game, owned by this node if it's a member
+	 */
+	ObjectId newGameId() {
+		HashRing current = ring;
+		ObjectId id = ObjectId.get();
+		if(!enabled || !current.contains(nodeId)) {
+			return id;
+		}
+		int attempts = MAX_ID_ATTEMPTS_PER_NODE * current.getNodes().size();
+		for(int ix = 1; ix < attempts && !nodeId.equals(current.ownerOf(id)); ix++) {
+			id = ObjectId.get();
+		}
+		return id;
+	}
+
+	/**
+	 * @return true if clustering is enabled
+	 */
+	boolean isEnabled() {
+		return enabled;
+	}
+
+	String getNodeId() {
+		return nodeId;
+	}
+
+	/**
+	 * @return ids of nodes on the ring
+	 */
+	List<String> getMembers() {
+		return ring.getNodes();
+	}
+
+	/**
+	 * @return number of games handed over to other nodes
+	 */
+	long getHandedOver() {
+		return handedOver.sum();
+	}
+
+}
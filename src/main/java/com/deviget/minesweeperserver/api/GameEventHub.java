@@ -0,0 +1,337 @@
+/**
+ *
+ */
+package com.deviget.minesweeperserver.api;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.annotation.PreDestroy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * @author fernando
+ * Pushes game changes to subscribers as server-sent events.
+ * Events are built while the change is applied, only for games someone subscribed to,
+ * and queued on each subscriber's bounded buffer. A small pool of dispatcher threads
+ * writes buffers out, so idle subscribers hold no thread. A subscriber whose buffer
+ * fills up is too slow to keep up and is dropped, it may subscribe again and catch up
+ * asking for changes since the last version it got.
+ * Events are named after their cause: reveal, flag, chord and status, the latter sent whenever
+ * game status changes. Their data is a {@link Game.Delta} since previous version,
+ * or the whole game, named snapshot, when changed cells are not known. Snapshots carry a
+ * copy of the game taken as they are published, holding its lock, since the game goes on
+ * changing, and are serialized by dispatchers like any other event.
+ * Subscriptions end once the game is finished.
+ */
+@Component
+class GameEventHub implements GameListener {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(GameEventHub.class);
+
+	/**
+	 * Queued after last event of a finished game
+	 */
+	private static final Event END_OF_STREAM = new Event(null, 0L, null);
+
+	private final ConcurrentHashMap<String, Set<Subscriber>> subscribers = new ConcurrentHashMap<>();
+
+	private final ExecutorService dispatcher;
+
+	private final ObjectMapper objectMapper;
+
+	private final int bufferSize;
+
+	private final long timeoutMillis;
+
+	private final AtomicInteger subscribersCount = new AtomicInteger();
+
+	private final LongAdder sent = new LongAdder();
+
+	private final LongAdder dropped = new LongAdder();
+
+	/**
+	 * @param objectMapper - event data is written with
+	 * @param dispatcherThreads - threads writing events out
+	 * @param bufferSize - events a subscriber may have pending before being dropped
+	 * @param timeout - subscriptions are closed after this time, clients are expected to reconnect
+	 */
+	@Autowired
+	GameEventHub(ObjectMapper objectMapper,
+			@Value("${minesweeper.events.dispatcher-threads:4}") int dispatcherThreads,
+			@Value("${minesweeper.events.buffer-size:64}") int bufferSize,
+			@Value("${minesweeper.events.timeout:30m}") Duration timeout) {
+		super();
+		if(dispatcherThreads < 1 || bufferSize < 1) {
+			throw new IllegalArgumentException("Dispatcher threads and buffer size must be positive");
+		}
+		this.objectMapper = objectMapper;
+		this.bufferSize = bufferSize;
+		this.timeoutMillis = timeout.toMillis();
+		AtomicInteger threadNumber = new AtomicInteger();
+		this.dispatcher = Executors.newFixedThreadPool(dispatcherThreads, runnable -> {
+			Thread thread = new Thread(runnable, "game-events-" + threadNumber.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		});
+	}
+
+	/**
+	 * @author fernando
+	 * Event shared by every subscriber of a game, data is serialized once
+	 * by the first dispatcher sending it
+	 */
+	private static class Event {
+
+		private final String name;
+
+		private final long version;
+
+		private final Object data;
+
+		private String json;
+
+		/**
+		 * @param name
+		 * @param version
+		 * @param data
+		 */
+		Event(String name, long version, Object data) {
+			super();
+			this.name = name;
+			this.version = version;
+			this.data = data;
+		}
+
+		synchronized String toJson(ObjectMapper objectMapper) throws JsonProcessingException {
+			if(json == null) {
+				json = objectMapper.writeValueAsString(data);
+			}
+			return json;
+		}
+
+	}
+
+	/**
+	 * @author fernando
+	 * Subscription to a game, with its own buffer of pending events
+	 */
+	private class Subscriber {
+
+		private final String gameId;
+
+		private final SseEmitter emitter;
+
+		private final ArrayBlockingQueue<Event> buffer;
+
+		/**
+		 * True while a dispatcher is draining or about to drain buffer
+		 */
+		private final AtomicBoolean scheduled = new AtomicBoolean();
+
+		private final AtomicBoolean closed = new AtomicBoolean();
+
+		/**
+		 * @param gameId
+		 * @param emitter
+		 */
+		Subscriber(String gameId, SseEmitter emitter) {
+			super();
+			this.gameId = gameId;
+			this.emitter = emitter;
+			this.buffer = new ArrayBlockingQueue<>(bufferSize);
+		}
+
+		/**
+		 * Never blocks, drops subscriber if its buffer is full
+		 * @param event
+		 */
+		void offer(Event event) {
+			if(closed.get()) {
+				return;
+			}
+			if(!buffer.offer(event)) {
+				dropped.increment();
+				LOGGER.debug("Slow subscriber of game {} dropped", gameId);
+				drop();
+				return;
+			}
+			if(scheduled.compareAndSet(false, true)) {
+				dispatcher.execute(this::drain);
+			}
+		}
+
+		private void drain() {
+			do {
+				Event event;
+				while((event = buffer.poll()) != null && !closed.get()) {
+					if(event == END_OF_STREAM) {
+						close();
+						emitter.complete();
+						return;
+					}
+					try {
+						emitter.send(SseEmitter.event().name(event.name).id(Long.toString(event.version))
+							.data(event.toJson(objectMapper), MediaType.APPLICATION_JSON));
+						sent.increment();
+					} catch (IOException | IllegalStateException e) {
+						//client went away
+						close();
+						emitter.completeWithError(e);
+						return;
+					}
+				}
+				scheduled.set(false);
+				//an event may have been offered after buffer was found empty but before flag was cleared
+			} while(!buffer.isEmpty() && !closed.get() && scheduled.compareAndSet(false, true));
+		}
+
+		/**
+		 * Ends subscription without sending pending events, client may subscribe again and catch up
+		 */
+		void drop() {
+			close();
+			dispatcher.execute(emitter::complete);
+		}
+
+		void close() {
+			if(closed.compareAndSet(false, true)) {
+				buffer.clear();
+				//atomic per game, so a concurrent subscription never lands on a discarded set
+				subscribers.computeIfPresent(gameId, (id, gameSubscribers) -> {
+					gameSubscribers.remove(this);
+					return (gameSubscribers.isEmpty() ? null : gameSubscribers);
+				});
+				subscribersCount.decrementAndGet();
+			}
+		}
+
+	}
+
+	/**
+	 * Subscribes to changes of a game, first event tells current version and status
+	 * @param game
+	 * @return emitter events are sent through
+	 */
+	SseEmitter subscribe(Game game) {
+		SseEmitter emitter = new SseEmitter(timeoutMillis);
+		Subscriber subscriber = new Subscriber(game.getId(), emitter);
+		emitter.onCompletion(subscriber::close);
+		emitter.onTimeout(subscriber::close);
+		emitter.onError(e -> subscriber.close());
+		subscribersCount.incrementAndGet();
+		//no change can be applied between reading current version and subscribing
+		synchronized(game) {
+			subscribers.compute(game.getId(), (id, gameSubscribers) -> {
+				Set<Subscriber> updated = (gameSubscribers != null ? gameSubscribers : ConcurrentHashMap.newKeySet());
+				updated.add(subscriber);
+				return updated;
+			});
+			subscriber.offer(new Event("status", game.getVersion(), game.getDelta(game.getVersion())));
+			if(isFinished(game.getStatus())) {
+				subscriber.offer(END_OF_STREAM);
+			}
+		}
+		return emitter;
+	}
+
+	/* (non-Javadoc)
+	 * @see com.deviget.minesweeperserver.api.GameListener#moveApplied(com.deviget.minesweeperserver.api.Game, com.deviget.minesweeperserver.api.GameMove)
+	 */
+	@Override
+	public void moveApplied(Game game, GameMove move) {
+		//events are sent once the change is applied
+	}
+
+	/* (non-Javadoc)
+	 * @see com.deviget.minesweeperserver.api.GameListener#changeCommitted(com.deviget.minesweeperserver.api.Game, com.deviget.minesweeperserver.api.GameMove.Op, com.deviget.minesweeperserver.api.Game.Status)
+	 */
+	@Override
+	public void changeCommitted(Game game, GameMove.Op cause, Game.Status previousStatus) {
+		Set<Subscriber> gameSubscribers = subscribers.get(game.getId());
+		if(gameSubscribers == null || gameSubscribers.isEmpty()) {
+			return;
+		}
+		long version = game.getVersion();
+		Event changeEvent = null;
+		if(cause != null) {
+			Game.Delta delta = game.getDelta(version - 1);
+			changeEvent = (delta != null ? new Event(cause.name().toLowerCase(Locale.ROOT), version, delta)
+				: new Event("snapshot", version, game.copy()));
+		}
+		Event statusEvent = null;
+		if(previousStatus != game.getStatus()) {
+			statusEvent = new Event("status", version, new Game.Delta(game.getId(), version - 1, version,
+				game.getStatus(), game.getTimePlayed(), Collections.emptyList()));
+		}
+		boolean finished = isFinished(game.getStatus());
+		for(Subscriber subscriber : gameSubscribers) {
+			if(changeEvent != null) {
+				subscriber.offer(changeEvent);
+			}
+			if(statusEvent != null) {
+				subscriber.offer(statusEvent);
+			}
+			if(finished) {
+				subscriber.offer(END_OF_STREAM);
+			}
+		}
+	}
+
+	private static boolean isFinished(Game.Status status) {
+		return status != Game.Status.CREATED && status != Game.Status.STARTED;
+	}
+
+	/**
+	 * @return number of open subscriptions
+	 */
+	int getSubscribers() {
+		return subscribersCount.get();
+	}
+
+	/**
+	 * @return number of events sent
+	 */
+	long getSent() {
+		return sent.sum();
+	}
+
+	/**
+	 * @return number of subscribers dropped for being too slow
+	 */
+	long getDropped() {
+		return dropped.sum();
+	}
+
+	@PreDestroy
+	void shutdown() {
+		dispatcher.shutdown();
+		try {
+			dispatcher.awaitTermination(5, TimeUnit.SECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+}
@@ -0,0 +1,45 @@
+/**
+ * 
+ */
+package com.deviget.minesweeperserver.api;
+
+import java.time.Duration;
+
+import org.quartz.JobBuilder;
+import org.quartz.JobDetail;
+import org.quartz.SimpleScheduleBuilder;
+import org.quartz.Trigger;
+import org.quartz.TriggerBuilder;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * @author fernando
+ * Schedules {@link GameExpirationJob}
+ */
+@Configuration
+public class GameExpirationConfig {
+	
+	@Bean
+	public JobDetail gameExpirationJobDetail() {
+		return JobBuilder.newJob(GameExpirationJob.class)
+			.withIdentity("gameExpirationJob")
+			.storeDurably()
+			.build();
+	}
+	
+	@Bean
+	public Trigger gameExpirationTrigger(JobDetail gameExpirationJobDetail,
+			@Value("${minesweeper.expiration.sweep-interval:1s}") Duration sweepInterval) {
+		return TriggerBuilder.newTrigger()
+			.forJob(gameExpirationJobDetail)
+			.withIdentity("gameExpirationTrigger")
+			.withSchedule(SimpleScheduleBuilder.simpleSchedule()
+				.withIntervalInMilliseconds(sweepInterval.toMillis())
+				.repeatForever()
+				.withMisfireHandlingInstructionNextWithRemainingCount())
+			.build();
+	}
+
+}
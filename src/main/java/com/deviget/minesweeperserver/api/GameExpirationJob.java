@@ -0,0 +1,37 @@
+/**
+ * 
+ */
+package com.deviget.minesweeperserver.api;
+
+import org.quartz.DisallowConcurrentExecution;
+import org.quartz.JobExecutionContext;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.quartz.QuartzJobBean;
+
+/**
+ * @author fernando
+ * Quartz job sweeping expired games, executions never overlap
+ * since the expiration wheel must be advanced by a single thread.
+ */
+@DisallowConcurrentExecution
+public class GameExpirationJob extends QuartzJobBean {
+	
+	private GameExpirationService gameExpirationService;
+
+	/**
+	 * @param gameExpirationService the gameExpirationService to set
+	 */
+	@Autowired
+	void setGameExpirationService(GameExpirationService gameExpirationService) {
+		this.gameExpirationService = gameExpirationService;
+	}
+
+	/* (non-Javadoc)
+	 * @see org.springframework.scheduling.quartz.QuartzJobBean#executeInternal(org.quartz.JobExecutionContext)
+	 */
+	@Override
+	protected void executeInternal(JobExecutionContext context) {
+		gameExpirationService.sweep();
+	}
+
+}
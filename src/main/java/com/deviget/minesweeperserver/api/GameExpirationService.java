@@ -0,0 +1,93 @@
+/**
+ * 
+ */
+package com.deviget.minesweeperserver.api;
+
+import java.time.LocalDateTime;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+/**
+ * @author fernando
+ * Expires games whose maximum duration elapsed, see {@link Game#MAX_DURATION}.
+ * Due games are taken from the {@link ExpirationWheel} so sweeping never scans the store.
+ * Expired games are queued on {@link GameWriteBehind}, so a burst of expirations costs
+ * no round trip per game, then archived and evicted from the store. The archive serves them
+ * from memory meanwhile.
+ */
+@Component
+class GameExpirationService {
+	
+	private static final Logger LOGGER = LoggerFactory.getLogger(GameExpirationService.class);
+	
+	private final ExpirationWheel expirationWheel;
+	
+	private final GameStore gameStore;
+	
+	private final GameWriteBehind gameWriteBehind;
+	
+	private final GameArchive gameArchive;
+	
+	private final LongAdder expired = new LongAdder();
+
+	/**
+	 * @param expirationWheel
+	 * @param gameStore
+	 * @param gameWriteBehind
+	 * @param gameArchive
+	 */
+	GameExpirationService(ExpirationWheel expirationWheel, GameStore gameStore, GameWriteBehind gameWriteBehind,
+			GameArchive gameArchive) {
+		super();
+		this.expirationWheel = expirationWheel;
+		this.gameStore = gameStore;
+		this.gameWriteBehind = gameWriteBehind;
+		this.gameArchive = gameArchive;
+	}
+	
+	/**
+	 * Expires every game due until now
+	 * Must not be called concurrently
+	 */
+	void sweep() {
+		sweep(LocalDateTime.now());
+	}
+	
+	/**
+	 * @param now
+	 */
+	void sweep(LocalDateTime now) {
+		expirationWheel.advance(ExpirationWheel.epochSecondOf(now), gameId -> expireIfDue(gameId, now));
+	}
+	
+	/**
+	 * @return number of games expired so far
+	 */
+	long getExpired() {
+		return expired.sum();
+	}
+	
+	private void expireIfDue(String gameId, LocalDateTime now) {
+		Game game = gameStore.getIfPresent(gameId);
+		//already finished or evicted, evicted ones are rescheduled when reloaded
+		if(game == null) {
+			return;
+		}
+		if(!game.expire(now)) {
+			if(game.getStatus() == Game.Status.STARTED) {
+				//deadline moved since it was scheduled, game was started afterwards
+				expirationWheel.schedule(gameId, game.getExpiresAt());
+			}
+			return;
+		}
+		expired.increment();
+		LOGGER.debug("Game {} expired", gameId);
+		gameWriteBehind.enqueue(game);
+		gameArchive.put(game);
+		gameStore.remove(gameId, game);
+	}
+
+}
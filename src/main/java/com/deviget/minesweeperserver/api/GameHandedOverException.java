@@ -0,0 +1,24 @@
+/**
+ * 
+ */
+package com.deviget.minesweeperserver.api;
+
+/**
+ * @author fernando
+ * Thrown by moves on a game handed over to another node, see {@link Game#fence()}
+ */
+class GameHandedOverException extends IllegalStateException {
+
+	/**
+	 * 
+	 */
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * @param msg
+	 */
+	GameHandedOverException(String msg) {
+		super(msg);
+	}
+	
+}
@@ -0,0 +1,31 @@
+/**
+ * 
+ */
+package com.deviget.minesweeperserver.api;
+
+/**
+ * @author fernando
+ * Notified of changes applied to a game.
+ * Called while holding game's monitor so implementations must return quickly
+ * and never block nor lock other games.
+ */
+interface GameListener {
+	
+	/**
+	 * Called before the move changes game state
+	 * @param game
+	 * @param move - being applied
+	 */
+	void moveApplied(Game game, GameMove move);
+	
+	/**
+	 * Called once a change is fully applied and game version incremented
+	 * @param game
+	 * @param cause - move which caused the change, null if it wasn't caused by a move (expiration)
+	 * @param previousStatus - status before the change
+	 */
+	default void changeCommitted(Game game, GameMove.Op cause, Game.Status previousStatus) {
+		//most listeners only care about moves
+	}
+
+}
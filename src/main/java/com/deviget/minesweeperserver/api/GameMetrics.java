@@ -0,0 +1,221 @@
+/**
+ *
+ */
+package com.deviget.minesweeperserver.api;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.FunctionTimer;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+/**
+ * @author fernando
+ * Game metrics, exposed on /actuator/prometheus.
+ * Meters timing moves are registered once and recorded with primitives, so recording
+ * allocates nothing on the hot path. Everything else is read from counters components
+ * already keep, such as {@link GameStore#getStats()}, only when metrics are scraped.
+ */
+@Component
+class GameMetrics {
+
+	private final Timer createTimer;
+
+	private final Timer revealTimer;
+
+	private final Timer chordTimer;
+
+	private final Timer flagTimer;
+
+	private final Timer movesTimer;
+
+	private final DistributionSummary revealCascade;
+
+	private final DistributionSummary chordCascade;
+
+	private final DistributionSummary movesCascade;
+
+	/**
+	 * Registers meters timing moves only
+	 * @param registry
+	 */
+	GameMetrics(MeterRegistry registry) {
+		super();
+		this.createTimer = operationTimer(registry, "create");
+		this.revealTimer = operationTimer(registry, "reveal");
+		this.chordTimer = operationTimer(registry, "chord");
+		this.flagTimer = operationTimer(registry, "flag");
+		this.movesTimer = operationTimer(registry, "moves");
+		this.revealCascade = cascadeSummary(registry, "reveal");
+		this.chordCascade = cascadeSummary(registry, "chord");
+		this.movesCascade = cascadeSummary(registry, "moves");
+	}
+
+	/**
+	 * @param registry
+	 * @param gameStore
+	 * @param gameWriteBehind
+	 * @param gameMoveLog
+	 * @param gameEventHub
+	 * @param gameShards
+	 * @param gameExpiration
+	 * @param gameArchive
+	 * @param gameCluster
+	 * @param gameRouting
+	 * @param boardArena
+	 */
+	@Autowired
+	GameMetrics(MeterRegistry registry, GameStore gameStore, GameWriteBehind gameWriteBehind,
+			GameMoveLogService gameMoveLog, GameEventHub gameEventHub, GameShards gameShards,
+			GameExpirationService gameExpiration, GameArchive gameArchive, GameCluster gameCluster,
+			GameRoutingFilter gameRouting, OffHeapBoardArena boardArena) {
+		this(registry);
+		Gauge.builder("minesweeper.store.size", gameStore, GameStore::size)
+			.description("Games held in memory").register(registry);
+		for(Game.Status status : Game.Status.values()) {
+			Gauge.builder("minesweeper.games.active", gameStore, store -> store.count(status))
+				.description("Games held in memory by status").tag("status", status.name()).register(registry);
+		}
+		FunctionCounter.builder("minesweeper.store.hits", gameStore, store -> store.getStats().getHits())
+			.register(registry);
+		FunctionCounter.builder("minesweeper.store.misses", gameStore, store -> store.getStats().getMisses())
+			.register(registry);
+		FunctionCounter.builder("minesweeper.store.loads", gameStore, store -> store.getStats().getLoads())
+			.description("Evicted games reloaded").register(registry);
+		FunctionCounter.builder("minesweeper.store.evictions", gameStore, store -> store.getStats().getEvictions())
+			.register(registry);
+
+		FunctionTimer.builder("minesweeper.write-behind.flush", gameWriteBehind, GameWriteBehind::getFlushes,
+				GameWriteBehind::getFlushNanos, TimeUnit.NANOSECONDS)
+			.description("Bulk writes of dirty games").register(registry);
+		Gauge.builder("minesweeper.write-behind.pending", gameWriteBehind, GameWriteBehind::getPending)
+			.register(registry);
+		FunctionCounter.builder("minesweeper.write-behind.written", gameWriteBehind, GameWriteBehind::getWritten)
+			.register(registry);
+		FunctionCounter.builder("minesweeper.write-behind.refused", gameWriteBehind, GameWriteBehind::getRefused)
+			.description("Snapshots refused for too many games pending").register(registry);
+
+		Gauge.builder("minesweeper.move-log.pending", gameMoveLog, GameMoveLogService::getPending)
+			.register(registry);
+		FunctionCounter.builder("minesweeper.move-log.appended", gameMoveLog, GameMoveLogService::getAppended)
+			.register(registry);
+		FunctionCounter.builder("minesweeper.move-log.replayed", gameMoveLog, GameMoveLogService::getReplayed)
+			.register(registry);
+		FunctionCounter.builder("minesweeper.move-log.lost", gameMoveLog, GameMoveLogService::getLost)
+			.register(registry);
+		FunctionCounter.builder("minesweeper.move-log.trimmed", gameMoveLog, GameMoveLogService::getTrimmed)
+			.register(registry);
+
+		Gauge.builder("minesweeper.events.subscribers", gameEventHub, GameEventHub::getSubscribers)
+			.register(registry);
+		FunctionCounter.builder("minesweeper.events.sent", gameEventHub, GameEventHub::getSent)
+			.register(registry);
+		FunctionCounter.builder("minesweeper.events.dropped", gameEventHub, GameEventHub::getDropped)
+			.description("Subscribers dropped for being too slow").register(registry);
+
+		FunctionCounter.builder("minesweeper.shards.submitted", gameShards, GameShards::getSubmitted)
+			.register(registry);
+		FunctionCounter.builder("minesweeper.shards.rejected", gameShards, GameShards::getRejected)
+			.register(registry);
+		for(int ix = 0; ix < gameShards.getCount(); ix++) {
+			int shard = ix;
+			Gauge.builder("minesweeper.shards.queue-depth", gameShards, shards -> shards.getQueueDepth(shard))
+				.tag("shard", String.valueOf(shard)).register(registry);
+		}
+
+		FunctionCounter.builder("minesweeper.games.expired", gameExpiration, GameExpirationService::getExpired)
+			.register(registry);
+
+		Gauge.builder("minesweeper.archive.size", gameArchive, GameArchive::size)
+			.description("Finished games held in memory").register(registry);
+		FunctionCounter.builder("minesweeper.archive.hits", gameArchive, GameArchive::getHits)
+			.register(registry);
+		FunctionCounter.builder("minesweeper.archive.misses", gameArchive, GameArchive::getMisses)
+			.register(registry);
+		FunctionCounter.builder("minesweeper.archive.bodies-built", gameArchive, GameArchive::getBodiesBuilt)
+			.description("Bodies serialized and compressed").register(registry);
+
+		Gauge.builder("minesweeper.cluster.members", gameCluster, cluster -> cluster.getMembers().size())
+			.description("Nodes on the ring, as seen by this one").register(registry);
+		FunctionCounter.builder("minesweeper.cluster.handed-over", gameCluster, GameCluster::getHandedOver)
+			.description("Games handed over to other nodes").register(registry);
+		FunctionCounter.builder("minesweeper.cluster.forwarded", gameRouting, GameRoutingFilter::getForwarded)
+			.register(registry);
+		FunctionCounter.builder("minesweeper.cluster.redirected", gameRouting, GameRoutingFilter::getRedirected)
+			.register(registry);
+
+		Gauge.builder("minesweeper.board.off-heap.reserved", boardArena, OffHeapBoardArena::getReserved)
+			.description("Direct memory held by board slabs").baseUnit("bytes").register(registry);
+		Gauge.builder("minesweeper.board.off-heap.in-use", boardArena, OffHeapBoardArena::getInUse)
+			.description("Direct memory held by live boards").baseUnit("bytes").register(registry);
+		FunctionCounter.builder("minesweeper.board.off-heap.allocated", boardArena, OffHeapBoardArena::getAllocated)
+			.register(registry);
+		FunctionCounter.builder("minesweeper.board.off-heap.recycled", boardArena, OffHeapBoardArena::getRecycled)
+			.register(registry);
+		FunctionCounter.builder("minesweeper.board.off-heap.fallbacks", boardArena, OffHeapBoardArena::getFallbacks)
+			.description("Boards kept on the heap for the arena being full").register(registry);
+	}
+
+	private static Timer operationTimer(MeterRegistry registry, String operation) {
+		return Timer.builder("minesweeper.game.operation").description("Game operations applied")
+			.tag("operation", operation).publishPercentileHistogram()
+			.minimumExpectedValue(Duration.ofNanos(1000L)).maximumExpectedValue(Duration.ofSeconds(1L))
+			.register(registry);
+	}
+
+	private static DistributionSummary cascadeSummary(MeterRegistry registry, String operation) {
+		return DistributionSummary.builder("minesweeper.game.cascade").description("Cells revealed by a move")
+			.baseUnit("cells").tag("operation", operation).publishPercentileHistogram()
+			.minimumExpectedValue(1L).maximumExpectedValue(1000000L)
+			.register(registry);
+	}
+
+	/**
+	 * @param nanos - time taken creating a game
+	 */
+	void recordCreate(long nanos) {
+		createTimer.record(nanos, TimeUnit.NANOSECONDS);
+	}
+
+	/**
+	 * @param nanos - time taken revealing a cell
+	 * @param revealed - cells revealed
+	 */
+	void recordReveal(long nanos, int revealed) {
+		revealTimer.record(nanos, TimeUnit.NANOSECONDS);
+		revealCascade.record(revealed);
+	}
+
+	/**
+	 * @param nanos - time taken chording a cell
+	 * @param revealed - cells revealed
+	 */
+	void recordChord(long nanos, int revealed) {
+		chordTimer.record(nanos, TimeUnit.NANOSECONDS);
+		chordCascade.record(revealed);
+	}
+
+	/**
+	 * @param nanos - time taken flagging a cell
+	 */
+	void recordFlag(long nanos) {
+		flagTimer.record(nanos, TimeUnit.NANOSECONDS);
+	}
+
+	/**
+	 * @param nanos - time taken applying a sequence of moves
+	 * @param revealed - cells revealed by every move applied
+	 */
+	void recordMoves(long nanos, int revealed) {
+		movesTimer.record(nanos, TimeUnit.NANOSECONDS);
+		movesCascade.record(revealed);
+	}
+
+}
@@ -0,0 +1,96 @@
+/**
+ * 
+ */
+package com.deviget.minesweeperserver.api;
+
+import java.time.LocalDateTime;
+
+import org.springframework.data.annotation.PersistenceConstructor;
+
+/**
+ * @author fernando
+ * A move applied to a game, as kept in its {@link GameMoveLog}.
+ * Sequence numbers are assigned by the game while applying moves,
+ * starting at 1 and without gaps.
+ */
+class GameMove {
+	
+	/**
+	 * @author fernando
+	 * Move operations
+	 */
+	enum Op {
+		REVEAL, FLAG, CHORD
+	}
+	
+	private final long seq;
+	
+	private final Op op;
+	
+	private final short row;
+	
+	private final short column;
+	
+	private final LocalDateTime at;
+
+	/**
+	 * @param seq
+	 * @param op
+	 * @param row
+	 * @param column
+	 * @param at
+	 */
+	@PersistenceConstructor
+	GameMove(long seq, Op op, short row, short column, LocalDateTime at) {
+		super();
+		this.seq = seq;
+		this.op = op;
+		this.row = row;
+		this.column = column;
+		this.at = at;
+	}
+
+	/**
+	 * @return the seq
+	 */
+	long getSeq() {
+		return seq;
+	}
+
+	/**
+	 * @return the op
+	 */
+	Op getOp() {
+		return op;
+	}
+
+	/**
+	 * @return the row
+	 */
+	short getRow() {
+		return row;
+	}
+
+	/**
+	 * @return the column
+	 */
+	short getColumn() {
+		return column;
+	}
+
+	/**
+	 * @return the at
+	 */
+	LocalDateTime getAt() {
+		return at;
+	}
+
+	/* (non-Javadoc)
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString() {
+		return "GameMove [seq=" + seq + ", op=" + op + ", row=" + row + ", column=" + column + ", at=" + at + "]";
+	}
+
+}
@@ -0,0 +1,98 @@
+/**
+ * 
+ */
+package com.deviget.minesweeperserver.api;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.bson.types.ObjectId;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.annotation.PersistenceConstructor;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+/**
+ * @author fernando
+ * Log of moves applied to a game, headed by everything needed to create it again.
+ * Since mines are placed from the recorded seed, replaying moves on a game created
+ * from the header rebuilds exactly the same state.
+ */
+@Document(collection = "gameMoveLog")
+class GameMoveLog {
+	
+	/**
+	 * Same as game id
+	 */
+	@Id
+	private final ObjectId id;
+	
+	private final short rows;
+	
+	private final short columns;
+	
+	private final int mines;
+	
+	private final boolean lazy;
+	
+	private final long seed;
+	
+	private final LocalDateTime createdAt;
+	
+	private final List<GameMove> moves;
+
+	/**
+	 * @param id
+	 * @param rows
+	 * @param columns
+	 * @param mines
+	 * @param lazy
+	 * @param seed
+	 * @param createdAt
+	 * @param moves
+	 */
+	@PersistenceConstructor
+	GameMoveLog(ObjectId id, short rows, short columns, int mines, boolean lazy, long seed, LocalDateTime createdAt,
+			List<GameMove> moves) {
+		super();
+		this.id = id;
+		this.rows = rows;
+		this.columns = columns;
+		this.mines = mines;
+		this.lazy = lazy;
+		this.seed = seed;
+		this.createdAt = createdAt;
+		this.moves = (moves != null ? moves : new ArrayList<>());
+	}
+	
+	/**
+	 * @param game - just created
+	 * @return log header for given game, without moves
+	 */
+	static GameMoveLog headerOf(Game game) {
+		return new GameMoveLog(new ObjectId(game.getId()), game.getRows(), game.getColumns(), game.getMines(),
+			!game.isMinesPlaced(), game.getSeed(), game.getCreatedAt(), null);
+	}
+	
+	/**
+	 * @return game as it was created
+	 */
+	Game createGame() {
+		return Game.restoreGame(id, createdAt, rows, columns, mines, lazy, seed);
+	}
+
+	/**
+	 * @return the id
+	 */
+	ObjectId getId() {
+		return id;
+	}
+
+	/**
+	 * @return the moves
+	 */
+	List<GameMove> getMoves() {
+		return moves;
+	}
+
+}
@@ -0,0 +1,365 @@
+/**
+ *
+ */
+package com.deviget.minesweeperserver.api;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.annotation.PreDestroy;
+
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.BulkOperations.BulkMode;
+import org.springframework.data.mongodb.core.MongoOperations;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Component;
+
+/**
+ * @author fernando
+ * Event-sourced persistence of games.
+ * Every move applied is appended to the game's {@link GameMoveLog}, headed by seed and
+ * dimensions, instead of rewriting the whole game. Appends are queued and written by
+ * a single thread, moves of a game queued meanwhile go in a single $push.
+ * Every snapshot interval moves, and once the game is finished, a full snapshot is
+ * written through {@link GameWriteBehind}, so recovering a game replays at most
+ * that many moves on top of its last snapshot, unless write-behind was too far behind to
+ * take some, then logs are longer. Once a snapshot is written the moves
+ * it covers are pulled from the log, so logs don't grow with the game.
+ */
+@Component
+class GameMoveLogService implements GameListener {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(GameMoveLogService.class);
+
+	private static final int MAX_APPEND_ATTEMPTS = 3;
+
+	private final MongoOperations mongoOperations;
+
+	private final GameRepository gameRepository;
+
+	private final GameWriteBehind gameWriteBehind;
+
+	private final int snapshotInterval;
+
+	private final int batchSize;
+
+	private final BlockingQueue<Entry> pending;
+
+	private final Thread appender;
+
+	private volatile boolean running = true;
+
+	private final LongAdder appended = new LongAdder();
+
+	private final LongAdder lost = new LongAdder();
+
+	private final LongAdder replayed = new LongAdder();
+
+	private final LongAdder trimmed = new LongAdder();
+
+	/**
+	 * @param mongoOperations
+	 * @param gameRepository - where snapshots are read from
+	 * @param gameWriteBehind - where snapshots are written through
+	 * @param snapshotInterval - moves between snapshots
+	 * @param batchSize - maximum moves appended by a single bulk operation
+	 * @param capacity - queued moves allowed before moves wait for the log to catch up
+	 */
+	@Autowired
+	GameMoveLogService(MongoOperations mongoOperations, GameRepository gameRepository, GameWriteBehind gameWriteBehind,
+			@Value("${minesweeper.move-log.snapshot-interval:100}") int snapshotInterval,
+			@Value("${minesweeper.move-log.batch-size:1000}") int batchSize,
+			@Value("${minesweeper.move-log.capacity:100000}") int capacity) {
+		super();
+		if(snapshotInterval < 1 || batchSize < 1 || capacity < batchSize) {
+			throw new IllegalArgumentException("Snapshot interval and batch size must be positive and capacity not lower than batch size");
+		}
+		this.mongoOperations = mongoOperations;
+		this.gameRepository = gameRepository;
+		this.gameWriteBehind = gameWriteBehind;
+		this.snapshotInterval = snapshotInterval;
+		this.batchSize = batchSize;
+		this.pending = new LinkedBlockingQueue<>(capacity);
+		gameWriteBehind.addSnapshotListener(this::trim);
+		this.appender = new Thread(this::appendLoop, "game-move-log");
+		this.appender.setDaemon(true);
+		this.appender.start();
+	}
+
+	/**
+	 * @author fernando
+	 * Queued log header or move
+	 */
+	private static class Entry {
+
+		private final Game game;
+
+		private final GameMoveLog header;
+
+		private final GameMove move;
+
+		/**
+		 * @param game
+		 * @param header - null for moves
+		 * @param move - null for headers
+		 */
+		Entry(Game game, GameMoveLog header, GameMove move) {
+			super();
+			this.game = game;
+			this.header = header;
+			this.move = move;
+		}
+
+	}
+
+	/**
+	 * Starts log of a just created game, must be called before any move is applied
+	 * @param game
+	 */
+	void logCreation(Game game) {
+		queue(new Entry(game, GameMoveLog.headerOf(game), null));
+	}
+
+	/* (non-Javadoc)
+	 * @see com.deviget.minesweeperserver.api.GameListener#moveApplied(com.deviget.minesweeperserver.api.Game, com.deviget.minesweeperserver.api.GameMove)
+	 */
+	@Override
+	public void moveApplied(Game game, GameMove move) {
+		queue(new Entry(game, null, move));
+	}
+
+	private void queue(Entry entry) {
+		try {
+			//backpressure, appender never takes game locks so waiting holding one is safe
+			pending.put(entry);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			lost.increment();
+			LOGGER.error("Interrupted while logging game {}, its log is incomplete", entry.game.getId());
+		}
+	}
+
+	/**
+	 * Rebuilds a game from its last snapshot, or from its log header if it has none,
+	 * replaying logged moves that followed
+	 * @param gameId
+	 * @return recovered game or null if there's no trace of it
+	 */
+	Game recover(String gameId) {
+		if(!ObjectId.isValid(gameId)) {
+			return null;
+		}
+		Game game = gameRepository.findById(gameId).orElse(null);
+		GameMoveLog log = mongoOperations.findById(new ObjectId(gameId), GameMoveLog.class);
+		if(log == null) {
+			//created before moves were logged
+			return game;
+		}
+		if(game == null) {
+			game = log.createGame();
+		}
+		List<GameMove> moves = new ArrayList<>(log.getMoves());
+		moves.sort(Comparator.comparingLong(GameMove::getSeq));
+		for(GameMove move : moves) {
+			//moves covered by snapshot, or appended twice by a retry, are skipped
+			if(move.getSeq() > game.getMoveCount()) {
+				game.replay(move);
+				replayed.increment();
+			}
+		}
+		return game;
+	}
+
+	/**
+	 * Pulls logged moves covered by snapshots just written with a single unordered bulk operation.
+	 * Moves still queued then are appended afterwards and skipped by recoveries.
+	 * @param moveCounts - moves applied to each game written, keyed by game id
+	 */
+	void trim(Map<String, Long> moveCounts) {
+		BulkOperations bulkOps = mongoOperations.bulkOps(BulkMode.UNORDERED, GameMoveLog.class);
+		int games = 0;
+		for(Map.Entry<String, Long> moveCount : moveCounts.entrySet()) {
+			if(moveCount.getValue() > 0 && ObjectId.isValid(moveCount.getKey())) {
+				bulkOps.updateOne(Query.query(Criteria.where("_id").is(new ObjectId(moveCount.getKey()))),
+					new Update().pull("moves", new Document("seq", new Document("$lte", moveCount.getValue()))));
+				games++;
+			}
+		}
+		if(games == 0) {
+			return;
+		}
+		try {
+			bulkOps.execute();
+			trimmed.add(games);
+		} catch (DataAccessException e) {
+			//next snapshots trim them
+			LOGGER.warn("Couldn't trim logs of " + games + " games " + e.getMessage());
+		}
+	}
+
+	/**
+	 * @return number of entries waiting to be appended
+	 */
+	int getPending() {
+		return pending.size();
+	}
+
+	/**
+	 * @return number of moves appended
+	 */
+	long getAppended() {
+		return appended.sum();
+	}
+
+	/**
+	 * @return number of moves replayed by recoveries
+	 */
+	long getReplayed() {
+		return replayed.sum();
+	}
+
+	/**
+	 * @return number of logs trimmed after snapshots
+	 */
+	long getTrimmed() {
+		return trimmed.sum();
+	}
+
+	/**
+	 * @return number of entries which couldn't be appended
+	 */
+	long getLost() {
+		return lost.sum();
+	}
+
+	private void appendLoop() {
+		List<Entry> batch = new ArrayList<>(batchSize);
+		while(running || !pending.isEmpty()) {
+			try {
+				Entry first = pending.poll(100, TimeUnit.MILLISECONDS);
+				if(first == null) {
+					continue;
+				}
+				batch.add(first);
+				pending.drainTo(batch, batchSize - 1);
+				append(batch);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return;
+			} catch (RuntimeException e) {
+				lost.add(batch.size());
+				LOGGER.error("Couldn't append " + batch.size() + " log entries", e);
+			} finally {
+				batch.clear();
+			}
+		}
+	}
+
+	/**
+	 * Writes a batch with a single ordered bulk operation, headers first,
+	 * then a $push per game of every move it has in the batch
+	 * @param batch
+	 * @throws InterruptedException
+	 */
+	void append(List<Entry> batch) throws InterruptedException {
+		Map<ObjectId, Document> headers = new LinkedHashMap<>();
+		Map<ObjectId, List<Document>> movesByGame = new LinkedHashMap<>();
+		List<Game> snapshots = new ArrayList<>();
+		int movesNumber = 0;
+		for(Entry entry : batch) {
+			ObjectId gameId = new ObjectId(entry.game.getId());
+			if(entry.header != null) {
+				Document header = new Document();
+				mongoOperations.getConverter().write(entry.header, header);
+				headers.put(gameId, header);
+				continue;
+			}
+			Document move = new Document();
+			mongoOperations.getConverter().write(entry.move, move);
+			move.remove("_class");
+			movesByGame.computeIfAbsent(gameId, id -> new ArrayList<>()).add(move);
+			movesNumber++;
+			if(entry.move.getSeq() % snapshotInterval == 0) {
+				snapshots.add(entry.game);
+			}
+		}
+		BulkOperations bulkOps = mongoOperations.bulkOps(BulkMode.ORDERED, GameMoveLog.class);
+		for(Map.Entry<ObjectId, Document> header : headers.entrySet()) {
+			//idempotent, so a retried batch doesn't fail on headers already written
+			Update update = new Update();
+			for(String key : header.getValue().keySet()) {
+				if(!"_id".equals(key) && !"moves".equals(key)) {
+					update.setOnInsert(key, header.getValue().get(key));
+				}
+			}
+			bulkOps.upsert(Query.query(Criteria.where("_id").is(header.getKey())), update);
+		}
+		for(Map.Entry<ObjectId, List<Document>> moves : movesByGame.entrySet()) {
+			bulkOps.upsert(Query.query(Criteria.where("_id").is(moves.getKey())),
+				new Update().push("moves").each(moves.getValue().toArray()));
+		}
+		for(int attempt = 1; ; attempt++) {
+			try {
+				bulkOps.execute();
+				break;
+			} catch (DataAccessException e) {
+				if(attempt == MAX_APPEND_ATTEMPTS) {
+					throw e;
+				}
+				LOGGER.warn("Couldn't append " + batch.size() + " log entries, will retry " + e.getMessage());
+				TimeUnit.MILLISECONDS.sleep(100L * attempt);
+			}
+		}
+		appended.add(movesNumber);
+		//refused while write-behind is behind, moves stay logged until a later snapshot covers them
+		for(Game game : snapshots) {
+			snapshot(game);
+		}
+		for(Entry entry : batch) {
+			Game.Status status = entry.game.getStatus();
+			if(entry.move != null && status != Game.Status.CREATED && status != Game.Status.STARTED) {
+				//final snapshot, finished games are read as they are
+				snapshot(entry.game);
+			}
+		}
+	}
+
+	private void snapshot(Game game) {
+		if(!gameWriteBehind.offer(game)) {
+			LOGGER.debug("Snapshot of game {} refused, write-behind is full", game.getId());
+		}
+	}
+
+	/**
+	 * Appends every queued entry before shutting down
+	 */
+	@PreDestroy
+	void shutdown() {
+		running = false;
+		try {
+			appender.join(TimeUnit.SECONDS.toMillis(10));
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		if(!pending.isEmpty()) {
+			LOGGER.error("{} log entries couldn't be appended on shutdown", pending.size());
+		}
+	}
+
+}
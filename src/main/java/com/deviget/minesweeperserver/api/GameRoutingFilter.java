@@ -0,0 +1,210 @@
+/**
+ *
+ */
+package com.deviget.minesweeperserver.api;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.bson.types.ObjectId;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StreamUtils;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+/**
+ * @author fernando
+ * Routes requests for games owned by another cluster node to it, see {@link GameCluster}.
+ * Requests are forwarded (minesweeper.cluster.routing=forward), so clients and load
+ * balancers need not know about nodes, or redirected with a 307 so clients talk to
+ * the owner from then on. Event streams are always redirected, since forwarded
+ * responses are buffered. Requests already forwarded are served where they land,
+ * nodes may briefly disagree on the ring while one joins or leaves.
+ */
+@Component
+class GameRoutingFilter extends OncePerRequestFilter {
+
+	static final String FORWARDED_BY = "X-Minesweeper-Forwarded-By";
+
+	private static final String GAMES_PATH = "/games/";
+
+	private static final String EVENTS_PATH = "/events";
+
+	private static final String OWNER_UNREACHABLE_MSG = "Game owner is unreachable, try again later";
+
+	private static final String FENCED_MSG = "Node lost the cluster, try again later";
+
+	/**
+	 * Headers of a single connection, or set by the HTTP client itself
+	 */
+	private static final Set<String> NOT_FORWARDED_HEADERS = Collections.unmodifiableSet(new HashSet<>(Arrays.asList(
+		"connection", "content-length", "date", "expect", "from", "host", "keep-alive", "proxy-authenticate",
+		"proxy-authorization", "te", "trailer", "transfer-encoding", "upgrade", "via", "warning")));
+
+	/**
+	 * @author fernando
+	 * How requests for games owned by another node are routed
+	 */
+	enum Routing {
+		FORWARD, REDIRECT
+	}
+
+	private final GameCluster gameCluster;
+
+	private final Routing routing;
+
+	private final Duration forwardTimeout;
+
+	private final HttpClient httpClient;
+
+	private final LongAdder forwarded = new LongAdder();
+
+	private final LongAdder redirected = new LongAdder();
+
+	/**
+	 * @param gameCluster
+	 * @param routing - forward or redirect
+	 * @param forwardTimeout - forwarded requests not answered within are answered as service unavailable
+	 */
+	@Autowired
+	GameRoutingFilter(GameCluster gameCluster, @Value("${minesweeper.cluster.routing:forward}") String routing,
+			@Value("${minesweeper.cluster.forward-timeout:10s}") Duration forwardTimeout) {
+		super();
+		this.gameCluster = gameCluster;
+		this.routing = Routing.valueOf(routing.toUpperCase());
+		this.forwardTimeout = forwardTimeout;
+		this.httpClient = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).connectTimeout(forwardTimeout)
+			.followRedirects(HttpClient.Redirect.NEVER).build();
+	}
+
+	/* (non-Javadoc)
+	 * @see org.springframework.web.filter.OncePerRequestFilter#shouldNotFilter(javax.servlet.http.HttpServletRequest)
+	 */
+	@Override
+	protected boolean shouldNotFilter(HttpServletRequest request) {
+		return !gameCluster.isEnabled() || gameIdOf(request) == null;
+	}
+
+	/* (non-Javadoc)
+	 * @see org.springframework.web.filter.OncePerRequestFilter#doFilterInternal(javax.servlet.http.HttpServletRequest, javax.servlet.http.HttpServletResponse, javax.servlet.FilterChain)
+	 */
+	@Override
+	protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+			throws ServletException, IOException {
+		if(gameCluster.isFenced()) {
+			sendUnavailable(response, GameRoutingFilter.FENCED_MSG);
+			return;
+		}
+		String ownerUrl = gameCluster.ownerUrlOf(gameIdOf(request));
+		if(ownerUrl == null || request.getHeader(FORWARDED_BY) != null) {
+			filterChain.doFilter(request, response);
+			return;
+		}
+		String target = ownerUrl + request.getRequestURI()
+			+ (request.getQueryString() != null ? "?" + request.getQueryString() : "");
+		if(routing == Routing.REDIRECT || request.getRequestURI().endsWith(GameRoutingFilter.EVENTS_PATH)) {
+			redirected.increment();
+			response.setStatus(HttpStatus.TEMPORARY_REDIRECT.value());
+			response.setHeader(HttpHeaders.LOCATION, target);
+			return;
+		}
+		forward(request, response, target);
+	}
+
+	private void forward(HttpServletRequest request, HttpServletResponse response, String target) throws IOException {
+		HttpRequest.Builder builder = HttpRequest.newBuilder(URI.create(target)).timeout(forwardTimeout);
+		Enumeration<String> names = request.getHeaderNames();
+		while(names.hasMoreElements()) {
+			String name = names.nextElement();
+			if(!NOT_FORWARDED_HEADERS.contains(name.toLowerCase())) {
+				for(String value : Collections.list(request.getHeaders(name))) {
+					builder.header(name, value);
+				}
+			}
+		}
+		builder.header(FORWARDED_BY, gameCluster.getNodeId());
+		byte[] requestBody = StreamUtils.copyToByteArray(request.getInputStream());
+		builder.method(request.getMethod(), requestBody.length == 0 ? HttpRequest.BodyPublishers.noBody()
+			: HttpRequest.BodyPublishers.ofByteArray(requestBody));
+		HttpResponse<byte[]> ownerResponse;
+		try {
+			ownerResponse = httpClient.send(builder.build(), HttpResponse.BodyHandlers.ofByteArray());
+		} catch (IOException e) {
+			logger.warn("Request for " + target + " couldn't be forwarded " + e.getMessage());
+			sendUnavailable(response, GameRoutingFilter.OWNER_UNREACHABLE_MSG);
+			return;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			sendUnavailable(response, GameRoutingFilter.OWNER_UNREACHABLE_MSG);
+			return;
+		}
+		forwarded.increment();
+		response.setStatus(ownerResponse.statusCode());
+		for(Map.Entry<String, List<String>> header : ownerResponse.headers().map().entrySet()) {
+			if(!NOT_FORWARDED_HEADERS.contains(header.getKey().toLowerCase())) {
+				for(String value : header.getValue()) {
+					response.addHeader(header.getKey(), value);
+				}
+			}
+		}
+		byte[] responseBody = ownerResponse.body();
+		response.setContentLength(responseBody.length);
+		response.getOutputStream().write(responseBody);
+	}
+
+	private static void sendUnavailable(HttpServletResponse response, String message) throws IOException {
+		response.setStatus(HttpStatus.SERVICE_UNAVAILABLE.value());
+		response.setContentType(MediaType.TEXT_PLAIN_VALUE);
+		response.getWriter().write(message);
+	}
+
+	/**
+	 * @param request
+	 * @return id of game requested, null if it's not a request for a game
+	 */
+	static String gameIdOf(HttpServletRequest request) {
+		String path = request.getRequestURI().substring(request.getContextPath().length());
+		if(!path.startsWith(GameRoutingFilter.GAMES_PATH)) {
+			return null;
+		}
+		int end = path.indexOf('/', GameRoutingFilter.GAMES_PATH.length());
+		String gameId = path.substring(GameRoutingFilter.GAMES_PATH.length(), end < 0 ? path.length() : end);
+		return (ObjectId.isValid(gameId) ? gameId : null);
+	}
+
+	/**
+	 * @return number of requests forwarded to their game's owner
+	 */
+	long getForwarded() {
+		return forwarded.sum();
+	}
+
+	/**
+	 * @return number of requests redirected to their game's owner
+	 */
+	long getRedirected() {
+		return redirected.sum();
+	}
+
+}
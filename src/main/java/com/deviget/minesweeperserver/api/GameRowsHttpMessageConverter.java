@@ -0,0 +1,86 @@
+/**
+ *
+ */
+package com.deviget.minesweeperserver.api;
+
+import java.io.IOException;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpInputMessage;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.AbstractHttpMessageConverter;
+import org.springframework.http.converter.HttpMessageNotReadableException;
+import org.springframework.stereotype.Component;
+
+import com.deviget.minesweeperserver.api.Game.RevealResult;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+
+/**
+ * @author fernando
+ * Writes games and reveal results in the compact rows format, see {@link GameSerializer},
+ * to clients asking for {@link #ROWS_JSON} through Accept. Never chosen otherwise, so
+ * plain JSON remains the default.
+ */
+@Component
+class GameRowsHttpMessageConverter extends AbstractHttpMessageConverter<Object> {
+
+	static final MediaType ROWS_JSON = MediaType.valueOf("application/vnd.minesweeper.rows+json");
+
+	private final ObjectWriter writer;
+
+	/**
+	 * @param objectMapper - application's, so other values are written as in plain JSON
+	 */
+	@Autowired
+	GameRowsHttpMessageConverter(ObjectMapper objectMapper) {
+		super(ROWS_JSON);
+		//response stream is closed by the container
+		this.writer = objectMapper.writer().withAttribute(GameSerializer.ROWS, Boolean.TRUE)
+			.without(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+	}
+
+	/* (non-Javadoc)
+	 * @see org.springframework.http.converter.AbstractHttpMessageConverter#supports(java.lang.Class)
+	 */
+	@Override
+	protected boolean supports(Class<?> clazz) {
+		return Game.class.isAssignableFrom(clazz) || RevealResult.class.isAssignableFrom(clazz);
+	}
+
+	/* (non-Javadoc)
+	 * @see org.springframework.http.converter.AbstractHttpMessageConverter#canRead(java.lang.Class, org.springframework.http.MediaType)
+	 */
+	@Override
+	public boolean canRead(Class<?> clazz, MediaType mediaType) {
+		return false;
+	}
+
+	/* (non-Javadoc)
+	 * @see org.springframework.http.converter.AbstractHttpMessageConverter#canWrite(java.lang.Class, org.springframework.http.MediaType)
+	 */
+	@Override
+	public boolean canWrite(Class<?> clazz, MediaType mediaType) {
+		//no media type means any is acceptable, rows are only written when asked for
+		return mediaType != null && ROWS_JSON.equalsTypeAndSubtype(mediaType) && supports(clazz);
+	}
+
+	/* (non-Javadoc)
+	 * @see org.springframework.http.converter.AbstractHttpMessageConverter#readInternal(java.lang.Class, org.springframework.http.HttpInputMessage)
+	 */
+	@Override
+	protected Object readInternal(Class<? extends Object> clazz, HttpInputMessage inputMessage) throws IOException {
+		throw new HttpMessageNotReadableException("Rows format is only written", inputMessage);
+	}
+
+	/* (non-Javadoc)
+	 * @see org.springframework.http.converter.AbstractHttpMessageConverter#writeInternal(java.lang.Object, org.springframework.http.HttpOutputMessage)
+	 */
+	@Override
+	protected void writeInternal(Object value, HttpOutputMessage outputMessage) throws IOException {
+		writer.writeValue(outputMessage.getBody(), value);
+	}
+
+}
@@ -0,0 +1,159 @@
+/**
+ *
+ */
+package com.deviget.minesweeperserver.api;
+
+import java.io.IOException;
+
+import com.deviget.minesweeperserver.api.Game.Cell.FlaggedStatus;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.SerializableString;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+
+/**
+ * @author fernando
+ * Streams a game as JSON straight from its {@link Board}, with no intermediate
+ * {@link Game.Cell} views nor reflection. Output holds the same properties and values bean
+ * serialization gave, cells written in the order {@link Game.Cell} declares.
+ * When written with the {@link #ROWS} attribute, as {@link GameRowsHttpMessageConverter}
+ * does, cells are replaced by a board of one string per row, see {@link #symbolOf(Board, int, Game.Status)}.
+ */
+class GameSerializer extends StdSerializer<Game> {
+
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * Serialization attribute asking for the compact rows format
+	 */
+	static final String ROWS = GameSerializer.class.getName() + ".rows";
+
+	static final SerializableString COORDINATES = new SerializedString("coordinates");
+
+	static final SerializableString ROW = new SerializedString("row");
+
+	static final SerializableString COLUMN = new SerializedString("column");
+
+	static final SerializableString FLAGGED_STATUS = new SerializedString("flaggedStatus");
+
+	static final SerializableString REVEALED = new SerializedString("revealed");
+
+	static final SerializableString ADJ_MINES_NUMBER_REV = new SerializedString("adjMinesNumberRev");
+
+	private static final SerializableString[] FLAGGED_STATUS_NAMES = new SerializableString[FlaggedStatus.values().length];
+
+	static {
+		for(FlaggedStatus flaggedStatus : FlaggedStatus.values()) {
+			FLAGGED_STATUS_NAMES[flaggedStatus.ordinal()] = new SerializedString(flaggedStatus.name());
+		}
+	}
+
+	GameSerializer() {
+		super(Game.class);
+	}
+
+	/* (non-Javadoc)
+	 * @see com.fasterxml.jackson.databind.ser.std.StdSerializer#serialize(java.lang.Object, com.fasterxml.jackson.core.JsonGenerator, com.fasterxml.jackson.databind.SerializerProvider)
+	 */
+	@Override
+	public void serialize(Game game, JsonGenerator gen, SerializerProvider provider) throws IOException {
+		gen.writeStartObject();
+		gen.writeStringField("id", game.getId());
+		gen.writeNumberField("rows", game.getRows());
+		gen.writeNumberField("columns", game.getColumns());
+		gen.writeNumberField("mines", game.getMines());
+		provider.defaultSerializeField("status", game.getStatus(), gen);
+		provider.defaultSerializeField("startedAt", game.getStartedAt(), gen);
+		provider.defaultSerializeField("timePlayed", game.getTimePlayed(), gen);
+		gen.writeNumberField("version", game.getVersion());
+		Board board = game.getBoard();
+		if(isRows(provider)) {
+			gen.writeArrayFieldStart("board");
+			if(board != null) {
+				writeRows(board, game.getStatus(), gen);
+			}
+		} else {
+			gen.writeArrayFieldStart("cells");
+			if(board != null) {
+				for(int ix = 0; ix < board.size(); ix++) {
+					writeCell(board, ix, gen);
+				}
+			}
+		}
+		gen.writeEndArray();
+		gen.writeEndObject();
+	}
+
+	/**
+	 * @param provider
+	 * @return true if compact rows format was asked for
+	 */
+	static boolean isRows(SerializerProvider provider) {
+		return provider.getAttribute(ROWS) != null;
+	}
+
+	/**
+	 * Writes a cell as its {@link Game.Cell} view would be written
+	 * @param board
+	 * @param index
+	 * @param gen
+	 * @throws IOException
+	 */
+	static void writeCell(Board board, int index, JsonGenerator gen) throws IOException {
+		gen.writeStartObject();
+		gen.writeFieldName(COORDINATES);
+		gen.writeStartObject();
+		gen.writeFieldName(ROW);
+		gen.writeNumber(board.rowOf(index));
+		gen.writeFieldName(COLUMN);
+		gen.writeNumber(board.columnOf(index));
+		gen.writeEndObject();
+		gen.writeFieldName(FLAGGED_STATUS);
+		gen.writeString(FLAGGED_STATUS_NAMES[board.getFlaggedStatus(index).ordinal()]);
+		boolean revealed = board.isRevealed(index);
+		gen.writeFieldName(REVEALED);
+		gen.writeBoolean(revealed);
+		gen.writeFieldName(ADJ_MINES_NUMBER_REV);
+		gen.writeNumber(revealed ? board.getAdjMinesNumber(index) : 0);
+		gen.writeEndObject();
+	}
+
+	/**
+	 * Writes one string per row, a symbol per cell
+	 * @param board
+	 * @param status - status of the game board belongs to
+	 * @param gen
+	 * @throws IOException
+	 */
+	private static void writeRows(Board board, Game.Status status, JsonGenerator gen) throws IOException {
+		int columns = board.getColumns();
+		char[] row = new char[columns];
+		for(int rowStart = 0; rowStart < board.size(); rowStart += columns) {
+			for(int column = 0; column < columns; column++) {
+				row[column] = symbolOf(board, rowStart + column, status);
+			}
+			gen.writeString(row, 0, columns);
+		}
+	}
+
+	/**
+	 * Mines are never revealed, even the one which was hit, so they are told apart
+	 * only once the game is lost
+	 * @param board
+	 * @param index
+	 * @param status - status of the game board belongs to
+	 * @return * for a mine of a lost game, number of adjacent mines of a revealed cell,
+	 *  flagged status symbol of a cell not revealed yet
+	 */
+	static char symbolOf(Board board, int index, Game.Status status) {
+		if(status == Game.Status.LOST && board.hasMine(index)) {
+			return '*';
+		}
+		if(!board.isRevealed(index)) {
+			return board.getFlaggedStatus(index).getSymbol();
+		}
+		return (char)('0' + board.getAdjMinesNumber(index));
+	}
+
+}
@@ -0,0 +1,151 @@
+/**
+ *
+ */
+package com.deviget.minesweeperserver.api;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.annotation.PreDestroy;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * @author fernando
+ * Optional single writer per game partition.
+ * Games are hash-partitioned by id onto shards, each one a single thread draining its
+ * own bounded queue of commands, so moves on a game are applied in submission order by
+ * the same thread and never contend for the game's monitor. Request threads are released
+ * while commands wait, a command is rejected instead of queued once its shard is full.
+ * With no shards commands run on the calling thread, as they always did.
+ */
+@Component
+class GameShards {
+
+	private final ThreadPoolExecutor[] shards;
+
+	private final LongAdder submitted = new LongAdder();
+
+	private final LongAdder rejected = new LongAdder();
+
+	/**
+	 * @param count - number of shards, 0 runs commands on the calling thread
+	 * @param queueDepth - commands a shard may have waiting before rejecting new ones
+	 */
+	@Autowired
+	GameShards(@Value("${minesweeper.shards.count:0}") int count,
+			@Value("${minesweeper.shards.queue-depth:1024}") int queueDepth) {
+		super();
+		if(count < 0 || queueDepth < 1) {
+			throw new IllegalArgumentException("Shards count can't be negative and queue depth must be positive");
+		}
+		this.shards = new ThreadPoolExecutor[count];
+		for(int ix = 0; ix < count; ix++) {
+			String name = "game-shard-" + ix;
+			this.shards[ix] = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+				new ArrayBlockingQueue<>(queueDepth), runnable -> {
+					Thread thread = new Thread(runnable, name);
+					thread.setDaemon(true);
+					return thread;
+				});
+		}
+	}
+
+	/**
+	 * @param gameId
+	 * @param command - applied to given game
+	 * @return command result, failed with {@link RejectedExecutionException} if game's shard is full
+	 */
+	<T> CompletableFuture<T> submit(String gameId, Callable<T> command) {
+		submitted.increment();
+		CompletableFuture<T> result = new CompletableFuture<>();
+		if(shards.length == 0) {
+			complete(result, command);
+			return result;
+		}
+		try {
+			shardFor(gameId).execute(() -> complete(result, command));
+		} catch (RejectedExecutionException e) {
+			rejected.increment();
+			result.completeExceptionally(e);
+		}
+		return result;
+	}
+
+	private static <T> void complete(CompletableFuture<T> result, Callable<T> command) {
+		try {
+			result.complete(command.call());
+		} catch (Exception e) {
+			result.completeExceptionally(e);
+		}
+	}
+
+	private ThreadPoolExecutor shardFor(String gameId) {
+		return shards[(gameId.hashCode() & Integer.MAX_VALUE) % shards.length];
+	}
+
+	/**
+	 * @return number of shards, 0 if commands run on the calling thread
+	 */
+	int getCount() {
+		return shards.length;
+	}
+
+	/**
+	 * @return commands waiting on each shard
+	 */
+	int[] getQueueDepths() {
+		int[] depths = new int[shards.length];
+		for(int ix = 0; ix < shards.length; ix++) {
+			depths[ix] = shards[ix].getQueue().size();
+		}
+		return depths;
+	}
+
+	/**
+	 * @param shard
+	 * @return commands waiting on given shard
+	 */
+	int getQueueDepth(int shard) {
+		return shards[shard].getQueue().size();
+	}
+
+	/**
+	 * @return number of commands submitted
+	 */
+	long getSubmitted() {
+		return submitted.sum();
+	}
+
+	/**
+	 * @return number of commands rejected for their shard being full
+	 */
+	long getRejected() {
+		return rejected.sum();
+	}
+
+	/**
+	 * Applies every queued command before shutting down
+	 */
+	@PreDestroy
+	void shutdown() {
+		for(ThreadPoolExecutor shard : shards) {
+			shard.shutdown();
+		}
+		try {
+			for(ThreadPoolExecutor shard : shards) {
+				shard.awaitTermination(5, TimeUnit.SECONDS);
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+}
@@ -0,0 +1,137 @@
+/**
+ * 
+ */
+package com.deviget.minesweeperserver.api;
+
+import java.util.List;
+
+/**
+ * @author fernando
+ * Keeps games being played so they can be looked up by id between moves.
+ * Implementations must be thread safe.
+ */
+interface GameStore {
+	
+	/**
+	 * @param gameId
+	 * @return stored game or null if there's none with given id
+	 */
+	Game get(String gameId);
+	
+	/**
+	 * @param gameId
+	 * @return game if it's held in memory, null otherwise. Never reloads evicted games
+	 *  nor refreshes idle time.
+	 */
+	Game getIfPresent(String gameId);
+	
+	/**
+	 * @param game
+	 */
+	void put(Game game);
+	
+	/**
+	 * @param gameId
+	 * @return removed game or null if there was none with given id
+	 */
+	Game remove(String gameId);
+	
+	/**
+	 * Removes game only if it's the one held under its id, so a game reloaded
+	 * meanwhile by another thread is kept
+	 * @param gameId
+	 * @param game
+	 * @return true if game was removed
+	 */
+	boolean remove(String gameId, Game game);
+	
+	/**
+	 * @return number of games currently held
+	 */
+	int size();
+	
+	/**
+	 * Walks every game held, meant for monitoring rather than for moves
+	 * @param status
+	 * @return number of games held with given status
+	 */
+	int count(Game.Status status);
+	
+	/**
+	 * Walks every game held, meant for rebalancing rather than for moves
+	 * @return copy of games currently held
+	 */
+	List<Game> getAll();
+	
+	/**
+	 * @return snapshot of store counters
+	 */
+	Stats getStats();
+	
+	/**
+	 * @author fernando
+	 * Store counters, meant for sizing nodes
+	 */
+	class Stats {
+		
+		private final long hits;
+		
+		private final long misses;
+		
+		private final long loads;
+		
+		private final long evictions;
+
+		/**
+		 * @param hits
+		 * @param misses
+		 * @param loads
+		 * @param evictions
+		 */
+		Stats(long hits, long misses, long loads, long evictions) {
+			super();
+			this.hits = hits;
+			this.misses = misses;
+			this.loads = loads;
+			this.evictions = evictions;
+		}
+
+		/**
+		 * @return lookups answered from memory
+		 */
+		long getHits() {
+			return hits;
+		}
+
+		/**
+		 * @return lookups not answered from memory
+		 */
+		long getMisses() {
+			return misses;
+		}
+
+		/**
+		 * @return misses answered by reloading a spilled game
+		 */
+		long getLoads() {
+			return loads;
+		}
+
+		/**
+		 * @return games evicted by size or idle time
+		 */
+		long getEvictions() {
+			return evictions;
+		}
+
+		/* (non-Javadoc)
+		 * @see java.lang.Object#toString()
+		 */
+		@Override
+		public String toString() {
+			return "Stats [hits=" + hits + ", misses=" + misses + ", loads=" + loads + ", evictions=" + evictions + "]";
+		}
+		
+	}
+
+}
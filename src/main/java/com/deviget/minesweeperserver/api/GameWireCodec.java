@@ -0,0 +1,229 @@
+/**
+ *
+ */
+package com.deviget.minesweeperserver.api;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.List;
+
+import org.bson.types.ObjectId;
+
+import com.deviget.minesweeperserver.api.Game.Cell;
+import com.deviget.minesweeperserver.api.Game.Cell.FlaggedStatus;
+import com.deviget.minesweeperserver.api.Game.Delta;
+import com.deviget.minesweeperserver.api.Game.MovesResult;
+import com.deviget.minesweeperserver.api.Game.RevealResult;
+
+/**
+ * @author fernando
+ * Compact binary wire format of what the API returns, for clients on slow links.
+ * Carries exactly what JSON does, mines of cells not revealed are never sent.
+ * Every message starts with its type and format version bytes, numbers are unsigned
+ * varints (7 bits per byte, least significant group first) unless said otherwise:
+ *  game - id (12 bytes), rows, columns, mines, status (byte), version, startedAt,
+ *   timePlayed, then a byte telling whether there's a board and if so:
+ *   revealed bitmap, one bit per cell in index order least significant bit first,
+ *   adjacent mines of every revealed cell packed two per byte, in index order,
+ *   number of flagged cells followed by (index delta from previous flagged cell << 1 | question mark)
+ *  reveal or moves result - status (byte), timePlayedInSeconds, movesApplied for moves results,
+ *   number of cells followed by row, column and state (byte) of each one
+ *  delta - id (12 bytes), sinceVersion, version, status (byte), timePlayed, then cells as above
+ * Times are 0 when null or (seconds + 1) followed by nanoseconds, date times are
+ * counted from the epoch as if they were UTC. Cell state is {@link #HIDDEN}, {@link #RED_FLAG},
+ * {@link #QUESTION_MARK} or {@link #REVEALED} plus the number of adjacent mines.
+ */
+final class GameWireCodec {
+
+	static final int GAME = 1;
+
+	static final int REVEAL_RESULT = 2;
+
+	static final int MOVES_RESULT = 3;
+
+	static final int DELTA = 4;
+
+	static final int VERSION = 1;
+
+	static final int HIDDEN = 0;
+
+	static final int RED_FLAG = 1;
+
+	static final int QUESTION_MARK = 2;
+
+	static final int REVEALED = 3;
+
+	private GameWireCodec() {
+		super();
+	}
+
+	/**
+	 * @param clazz
+	 * @return true if instances of given class can be encoded
+	 */
+	static boolean supports(Class<?> clazz) {
+		return Game.class.isAssignableFrom(clazz) || RevealResult.class.isAssignableFrom(clazz)
+			|| Delta.class.isAssignableFrom(clazz);
+	}
+
+	/**
+	 * @param value - a game, reveal or moves result or delta
+	 * @param out - not closed
+	 * @throws IOException
+	 */
+	static void encode(Object value, OutputStream out) throws IOException {
+		if(value instanceof Game) {
+			encodeGame((Game) value, out);
+		} else if(value instanceof RevealResult) {
+			encodeResult((RevealResult) value, out);
+		} else if(value instanceof Delta) {
+			encodeDelta((Delta) value, out);
+		} else {
+			throw new IllegalArgumentException("Can't encode " + value.getClass());
+		}
+	}
+
+	private static void encodeGame(Game game, OutputStream out) throws IOException {
+		out.write(GAME);
+		out.write(VERSION);
+		out.write(new ObjectId(game.getId()).toByteArray());
+		writeVarint(game.getRows(), out);
+		writeVarint(game.getColumns(), out);
+		writeVarint(game.getMines(), out);
+		out.write(game.getStatus().ordinal());
+		writeVarint(game.getVersion(), out);
+		LocalDateTime startedAt = game.getStartedAt();
+		writeTime(startedAt != null ? startedAt.toEpochSecond(ZoneOffset.UTC) : -1L,
+			startedAt != null ? startedAt.getNano() : 0, out);
+		writeDuration(game.getTimePlayed(), out);
+		Board board = game.getBoard();
+		if(board == null) {
+			out.write(0);
+			return;
+		}
+		out.write(1);
+		int cellsNumber = board.size();
+		byte[] revealed = new byte[(cellsNumber + 7) >>> 3];
+		int revealedNumber = 0;
+		int flaggedNumber = 0;
+		for(int ix = 0; ix < cellsNumber; ix++) {
+			if(board.isRevealed(ix)) {
+				revealed[ix >>> 3] |= 1 << (ix & 7);
+				revealedNumber++;
+			} else if(board.getFlaggedStatus(ix) != FlaggedStatus.NON_FLAGGED) {
+				flaggedNumber++;
+			}
+		}
+		out.write(revealed);
+		byte[] adjMines = new byte[(revealedNumber + 1) >>> 1];
+		int nibbleIx = 0;
+		for(int ix = 0; ix < cellsNumber; ix++) {
+			if(board.isRevealed(ix)) {
+				adjMines[nibbleIx >>> 1] |= board.getAdjMinesNumber(ix) << ((nibbleIx & 1) << 2);
+				nibbleIx++;
+			}
+		}
+		out.write(adjMines);
+		writeVarint(flaggedNumber, out);
+		int previousIx = 0;
+		for(int ix = 0; ix < cellsNumber; ix++) {
+			FlaggedStatus flaggedStatus = board.getFlaggedStatus(ix);
+			if(!board.isRevealed(ix) && flaggedStatus != FlaggedStatus.NON_FLAGGED) {
+				writeVarint(((long)(ix - previousIx) << 1) | (flaggedStatus == FlaggedStatus.QUESTION_MARK ? 1 : 0), out);
+				previousIx = ix;
+			}
+		}
+	}
+
+	private static void encodeResult(RevealResult result, OutputStream out) throws IOException {
+		boolean moves = result instanceof MovesResult;
+		out.write(moves ? MOVES_RESULT : REVEAL_RESULT);
+		out.write(VERSION);
+		out.write(result.getStatus().ordinal());
+		writeVarint(result.getTimePlayedInSeconds(), out);
+		if(moves) {
+			writeVarint(((MovesResult) result).getMovesApplied(), out);
+		}
+		Board board = result.getBoard();
+		int[] cellIxs = result.getAdjCellsRevealedIxs();
+		writeVarint(cellIxs.length, out);
+		for(int cellIx : cellIxs) {
+			writeVarint(board.rowOf(cellIx), out);
+			writeVarint(board.columnOf(cellIx), out);
+			out.write(stateOf(board.isRevealed(cellIx), board.getFlaggedStatus(cellIx), board.getAdjMinesNumber(cellIx)));
+		}
+	}
+
+	private static void encodeDelta(Delta delta, OutputStream out) throws IOException {
+		out.write(DELTA);
+		out.write(VERSION);
+		out.write(new ObjectId(delta.getId()).toByteArray());
+		writeVarint(delta.getSinceVersion(), out);
+		writeVarint(delta.getVersion(), out);
+		out.write(delta.getStatus().ordinal());
+		writeDuration(delta.getTimePlayed(), out);
+		List<Cell> cells = delta.getCells();
+		writeVarint(cells.size(), out);
+		for(Cell cell : cells) {
+			writeVarint(cell.getCoordinates().getRow(), out);
+			writeVarint(cell.getCoordinates().getColumn(), out);
+			out.write(stateOf(cell.isRevealed(), cell.getFlaggedStatus(), cell.getAdjMinesNumber()));
+		}
+	}
+
+	/**
+	 * @param revealed
+	 * @param flaggedStatus
+	 * @param adjMines
+	 * @return cell state as seen by players
+	 */
+	private static int stateOf(boolean revealed, FlaggedStatus flaggedStatus, int adjMines) {
+		if(revealed) {
+			return REVEALED + adjMines;
+		}
+		switch(flaggedStatus) {
+			case RED_FLAG:
+				return RED_FLAG;
+			case QUESTION_MARK:
+				return QUESTION_MARK;
+			default:
+				return HIDDEN;
+		}
+	}
+
+	private static void writeDuration(Duration duration, OutputStream out) throws IOException {
+		writeTime(duration != null ? duration.getSeconds() : -1L, duration != null ? duration.getNano() : 0, out);
+	}
+
+	/**
+	 * @param seconds - negative for null
+	 * @param nanos
+	 * @param out
+	 * @throws IOException
+	 */
+	private static void writeTime(long seconds, int nanos, OutputStream out) throws IOException {
+		if(seconds < 0) {
+			out.write(0);
+			return;
+		}
+		writeVarint(seconds + 1, out);
+		writeVarint(nanos, out);
+	}
+
+	/**
+	 * @param value - not negative
+	 * @param out
+	 * @throws IOException
+	 */
+	static void writeVarint(long value, OutputStream out) throws IOException {
+		while((value & ~0x7FL) != 0) {
+			out.write((int)((value & 0x7F) | 0x80));
+			value >>>= 7;
+		}
+		out.write((int)value);
+	}
+
+}
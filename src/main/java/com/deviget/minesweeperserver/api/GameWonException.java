@@ -1,17 +0,0 @@
-/**
- * 
- */
-package com.deviget.minesweeperserver.api;
-
-/**
- * @author fernando
- *
- */
-class GameWonException extends RuntimeException {
-
-	/**
-	 * 
-	 */
-	private static final long serialVersionUID = 1L;
-
-}
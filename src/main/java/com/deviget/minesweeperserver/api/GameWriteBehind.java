@@ -0,0 +1,334 @@
+/**
+ *
+ */
+package com.deviget.minesweeperserver.api;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+import javax.annotation.PreDestroy;
+
+import org.bson.Document;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.BulkOperations.BulkMode;
+import org.springframework.data.mongodb.core.MongoOperations;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Component;
+
+/**
+ * @author fernando
+ * Write-behind persistence of games to MongoDB.
+ * Games changed by a move are queued as dirty, several moves on the same game
+ * before a flush are coalesced into a single write. Dirty games are flushed in
+ * batches of bulk upserts every flush interval, or as soon as a batch is full.
+ * When too many games are pending the thread enqueuing flushes a batch itself,
+ * slowing spills and expirations down to the pace MongoDB can absorb, while threads
+ * which must not take game locks, such as the move log's, have their snapshots refused
+ * and write them later. Once a batch is written
+ * {@link SnapshotListener}s are told which moves it covers.
+ */
+@Component
+class GameWriteBehind {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(GameWriteBehind.class);
+
+	private final MongoOperations mongoOperations;
+
+	private final int batchSize;
+
+	private final int maxPending;
+
+	/**
+	 * Dirty games keyed by id, re-enqueuing a pending game is a no-op
+	 */
+	private final ConcurrentHashMap<String, Game> dirty = new ConcurrentHashMap<>();
+
+	/**
+	 * Serializes flushes so a game is never written by two of them at once
+	 */
+	private final ReentrantLock flushLock = new ReentrantLock();
+
+	private final ScheduledExecutorService flusher;
+
+	/**
+	 * Avoids queuing a flush per move once a batch is full
+	 */
+	private final AtomicBoolean batchFlushRequested = new AtomicBoolean();
+
+	private final List<SnapshotListener> snapshotListeners = new CopyOnWriteArrayList<>();
+
+	private final LongAdder enqueued = new LongAdder();
+
+	private final LongAdder refused = new LongAdder();
+
+	private final LongAdder written = new LongAdder();
+
+	private final LongAdder flushes = new LongAdder();
+
+	private final LongAdder flushNanos = new LongAdder();
+
+	/**
+	 * @param mongoOperations
+	 * @param flushInterval - maximum time a move waits before being written
+	 * @param batchSize - maximum games written by a single bulk operation
+	 * @param maxPending - dirty games allowed before moves start flushing themselves
+	 */
+	@Autowired
+	GameWriteBehind(MongoOperations mongoOperations,
+			@Value("${minesweeper.write-behind.flush-interval:1s}") Duration flushInterval,
+			@Value("${minesweeper.write-behind.batch-size:500}") int batchSize,
+			@Value("${minesweeper.write-behind.max-pending:10000}") int maxPending) {
+		super();
+		if(batchSize < 1 || maxPending < batchSize) {
+			throw new IllegalArgumentException("Batch size must be positive and not greater than max pending");
+		}
+		this.mongoOperations = mongoOperations;
+		this.batchSize = batchSize;
+		this.maxPending = maxPending;
+		this.flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+			Thread thread = new Thread(runnable, "game-write-behind");
+			thread.setDaemon(true);
+			return thread;
+		});
+		long intervalMillis = flushInterval.toMillis();
+		this.flusher.scheduleWithFixedDelay(this::flushAll, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * @author fernando
+	 * Told about games once they are written
+	 */
+	interface SnapshotListener {
+
+		/**
+		 * Called on the thread which flushed, outside the flush lock
+		 * @param moveCounts - moves applied to each game written, keyed by game id
+		 */
+		void snapshotsWritten(Map<String, Long> moveCounts);
+
+	}
+
+	/**
+	 * @param listener - told about every batch written from then on
+	 */
+	void addSnapshotListener(SnapshotListener listener) {
+		snapshotListeners.add(listener);
+	}
+
+	/**
+	 * Queues game to be written, flushing a batch in caller's thread if too many are pending.
+	 * Must not be called holding a game's lock, flushing takes them.
+	 * @param game
+	 */
+	void enqueue(Game game) {
+		if(dirty.put(game.getId(), game) == null) {
+			enqueued.increment();
+		}
+		int pending = dirty.size();
+		if(pending >= maxPending || flusher.isShutdown()) {
+			//backpressure, caller pays for a flush
+			flushBatch();
+		} else {
+			requestBatchFlushIfFull(pending);
+		}
+	}
+	
+	/**
+	 * Queues game to be written unless too many are pending, never flushing in caller's
+	 * thread nor waiting. For callers which must not take game locks.
+	 * @param game
+	 * @return false if game was refused, a game already pending is always taken
+	 */
+	boolean offer(Game game) {
+		if(dirty.size() >= maxPending && !dirty.containsKey(game.getId())) {
+			refused.increment();
+			return false;
+		}
+		if(dirty.put(game.getId(), game) == null) {
+			enqueued.increment();
+		}
+		requestBatchFlushIfFull(dirty.size());
+		return true;
+	}
+	
+	private void requestBatchFlushIfFull(int pending) {
+		if(pending >= batchSize && !flusher.isShutdown() && batchFlushRequested.compareAndSet(false, true)) {
+			flusher.execute(() -> {
+				batchFlushRequested.set(false);
+				flushBatch();
+			});
+		}
+	}
+
+	/**
+	 * @return number of games waiting to be written
+	 */
+	int getPending() {
+		return dirty.size();
+	}
+
+	/**
+	 * @param gameId
+	 * @return game waiting to be written, null if there's none
+	 */
+	Game getPendingGame(String gameId) {
+		return dirty.get(gameId);
+	}
+
+	/**
+	 * @return number of games offered while too many were pending
+	 */
+	long getRefused() {
+		return refused.sum();
+	}
+
+	/**
+	 * @return number of game writes requested, not counting coalesced ones
+	 */
+	long getEnqueued() {
+		return enqueued.sum();
+	}
+
+	/**
+	 * @return number of game writes done
+	 */
+	long getWritten() {
+		return written.sum();
+	}
+
+	/**
+	 * @return number of bulk writes done
+	 */
+	long getFlushes() {
+		return flushes.sum();
+	}
+
+	/**
+	 * @return total time spent on bulk writes, in nanoseconds
+	 */
+	long getFlushNanos() {
+		return flushNanos.sum();
+	}
+
+	/**
+	 * Writes every pending game
+	 */
+	void flushAll() {
+		while(!dirty.isEmpty()) {
+			if(flushBatch() == 0) {
+				//nothing could be written, retry on next interval
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Writes up to a batch of pending games with a single bulk operation
+	 * @return number of games written
+	 */
+	int flushBatch() {
+		Map<String, Long> moveCounts;
+		flushLock.lock();
+		try {
+			moveCounts = writeBatch();
+		} finally {
+			flushLock.unlock();
+		}
+		if(!moveCounts.isEmpty()) {
+			for(SnapshotListener listener : snapshotListeners) {
+				try {
+					listener.snapshotsWritten(moveCounts);
+				} catch (RuntimeException e) {
+					LOGGER.warn("Snapshot listener failed", e);
+				}
+			}
+		}
+		return moveCounts.size();
+	}
+
+	/**
+	 * Must hold flush lock
+	 * @return moves applied to each game written keyed by game id, empty if none was
+	 */
+	private Map<String, Long> writeBatch() {
+		Map<String, Long> moveCounts = new LinkedHashMap<>();
+		List<Game> batch = new ArrayList<>(Math.min(batchSize, dirty.size()));
+		Iterator<Game> it = dirty.values().iterator();
+		while(it.hasNext() && batch.size() < batchSize) {
+			batch.add(it.next());
+			//removed before reading its state, later moves re-enqueue it
+			it.remove();
+		}
+		if(batch.isEmpty()) {
+			return moveCounts;
+		}
+		long start = System.nanoTime();
+		try {
+			BulkOperations bulkOps = mongoOperations.bulkOps(BulkMode.UNORDERED, Game.class);
+			for(Game game : batch) {
+				Document document = new Document();
+				synchronized(game) {
+					mongoOperations.getConverter().write(game, document);
+					moveCounts.put(game.getId(), game.getMoveCount());
+				}
+				Update update = new Update();
+				for(String key : document.keySet()) {
+					if(!"_id".equals(key)) {
+						update.set(key, document.get(key));
+					}
+				}
+				bulkOps.upsert(Query.query(Criteria.where("_id").is(document.get("_id"))), update);
+			}
+			bulkOps.execute();
+			flushNanos.add(System.nanoTime() - start);
+			flushes.increment();
+			written.add(batch.size());
+			LOGGER.debug("Flushed {} games", batch.size());
+			return moveCounts;
+		} catch (DataAccessException e) {
+			LOGGER.error("Couldn't flush " + batch.size() + " games, will retry " + e.getMessage());
+			for(Game game : batch) {
+				dirty.putIfAbsent(game.getId(), game);
+			}
+			moveCounts.clear();
+			return moveCounts;
+		}
+	}
+
+	/**
+	 * Flushes every pending game before shutting down
+	 */
+	@PreDestroy
+	void shutdown() {
+		flusher.shutdown();
+		try {
+			flusher.awaitTermination(10, TimeUnit.SECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		flushAll();
+		if(!dirty.isEmpty()) {
+			LOGGER.error("{} games couldn't be written on shutdown", dirty.size());
+		}
+	}
+
+}
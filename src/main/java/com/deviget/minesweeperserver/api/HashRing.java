@@ -0,0 +1,160 @@
+/**
+ *
+ */
+package com.deviget.minesweeperserver.api;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.TreeSet;
+
+import org.bson.types.ObjectId;
+
+/**
+ * @author fernando
+ * Immutable consistent hash ring of cluster nodes, see {@link GameCluster}.
+ * Every node is placed on the ring at {@link #VIRTUAL_NODES} points and owns the
+ * game ids hashing up to each of them, so a node joining or leaving only moves
+ * about 1/n of the games. Points are kept in sorted arrays and looked up by
+ * binary search, a lookup allocates nothing.
+ */
+final class HashRing {
+
+	static final int VIRTUAL_NODES = 128;
+
+	private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+
+	private static final long FNV_PRIME = 0x100000001b3L;
+
+	private final List<String> nodes;
+
+	private final long[] points;
+
+	private final String[] owners;
+
+	/**
+	 * @param nodes - ids of nodes, duplicates are ignored
+	 */
+	HashRing(Collection<String> nodes) {
+		super();
+		this.nodes = Collections.unmodifiableList(new ArrayList<>(new TreeSet<>(nodes)));
+		int pointsNumber = this.nodes.size() * VIRTUAL_NODES;
+		long[] unsorted = new long[pointsNumber];
+		String[] unsortedOwners = new String[pointsNumber];
+		int ix = 0;
+		for(String node : this.nodes) {
+			for(int virtualNode = 0; virtualNode < VIRTUAL_NODES; virtualNode++) {
+				unsorted[ix] = hash((node + "#" + virtualNode).getBytes(StandardCharsets.UTF_8));
+				unsortedOwners[ix] = node;
+				ix++;
+			}
+		}
+		Integer[] order = new Integer[pointsNumber];
+		for(ix = 0; ix < pointsNumber; ix++) {
+			order[ix] = ix;
+		}
+		//ties, very unlikely, are broken by node id so every node builds the same ring
+		Arrays.sort(order, (left, right) -> unsorted[left] != unsorted[right] ? Long.compare(unsorted[left], unsorted[right])
+			: unsortedOwners[left].compareTo(unsortedOwners[right]));
+		this.points = new long[pointsNumber];
+		this.owners = new String[pointsNumber];
+		for(ix = 0; ix < pointsNumber; ix++) {
+			this.points[ix] = unsorted[order[ix]];
+			this.owners[ix] = unsortedOwners[order[ix]];
+		}
+	}
+
+	/**
+	 * @return ids of nodes on the ring, sorted
+	 */
+	List<String> getNodes() {
+		return nodes;
+	}
+
+	/**
+	 * @return true if there are no nodes
+	 */
+	boolean isEmpty() {
+		return nodes.isEmpty();
+	}
+
+	/**
+	 * @param node
+	 * @return true if given node is on the ring
+	 */
+	boolean contains(String node) {
+		return Collections.binarySearch(nodes, node) >= 0;
+	}
+
+	/**
+	 * @param gameId - must be a valid {@link ObjectId}
+	 * @return id of node owning given game, null if ring is empty
+	 */
+	String ownerOf(String gameId) {
+		return ownerOf(new ObjectId(gameId));
+	}
+
+	/**
+	 * @param gameId
+	 * @return id of node owning given game, null if ring is empty
+	 */
+	String ownerOf(ObjectId gameId) {
+		if(points.length == 0) {
+			return null;
+		}
+		long hash = hash(gameId.toByteArray());
+		int ix = Arrays.binarySearch(points, hash);
+		if(ix < 0) {
+			ix = -ix - 1;
+		}
+		//past the last point wraps around to the first one
+		return owners[ix < points.length ? ix : 0];
+	}
+
+	/**
+	 * FNV-1a followed by a finalizer, since ids created close in time only differ in a few bytes
+	 * @param bytes
+	 * @return 64 bit hash
+	 */
+	static long hash(byte[] bytes) {
+		long hash = FNV_OFFSET_BASIS;
+		for(byte b : bytes) {
+			hash ^= (b & 0xFF);
+			hash *= FNV_PRIME;
+		}
+		hash ^= hash >>> 33;
+		hash *= 0xff51afd7ed558ccdL;
+		hash ^= hash >>> 33;
+		hash *= 0xc4ceb9fe1a85ec53L;
+		hash ^= hash >>> 33;
+		return hash;
+	}
+
+	/* (non-Javadoc)
+	 * @see java.lang.Object#equals(java.lang.Object)
+	 */
+	@Override
+	public boolean equals(Object obj) {
+		return obj instanceof HashRing && nodes.equals(((HashRing) obj).nodes);
+	}
+
+	/* (non-Javadoc)
+	 * @see java.lang.Object#hashCode()
+	 */
+	@Override
+	public int hashCode() {
+		return nodes.hashCode();
+	}
+
+	/* (non-Javadoc)
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString() {
+		return "HashRing " + nodes;
+	}
+
+}
@@ -0,0 +1,373 @@
+/**
+ *
+ */
+package com.deviget.minesweeperserver.api;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.stereotype.Component;
+
+/**
+ * @author fernando
+ * In-memory game store bounded by size and idle time.
+ * Games are spread over segments, each one a LinkedHashMap kept in access order
+ * and guarded by its own lock, so least recently used games are evicted first
+ * without a global lock. Evicted games still being played are spilled to MongoDB
+ * through {@link GameWriteBehind}, so evicting never waits on a write, and on a later
+ * miss they are taken back from its queue or recovered from their snapshot and move log.
+ * Every game put or reloaded is scheduled on the {@link ExpirationWheel} and
+ * gets every {@link GameListener} attached, such as {@link GameMoveLogService}.
+ */
+@Component
+class InMemoryGameStore implements GameStore {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(InMemoryGameStore.class);
+
+	private static final int SEGMENTS = 16;
+
+	private final Segment[] segments;
+
+	private final long idleTtlNanos;
+
+	private final GameWriteBehind gameWriteBehind;
+
+	private final GameMoveLogService gameMoveLog;
+	
+	private final GameListener listener;
+
+	private final LongSupplier ticker;
+
+	private final ExpirationWheel expirationWheel;
+
+	private final LongAdder hits = new LongAdder();
+
+	private final LongAdder misses = new LongAdder();
+
+	private final LongAdder loads = new LongAdder();
+
+	private final LongAdder evictions = new LongAdder();
+
+	/**
+	 * @param maxSize - maximum number of games held in memory
+	 * @param idleTtl - games not accessed for longer are evicted
+	 * @param gameWriteBehind - where evicted games are spilled through
+	 * @param gameMoveLog - where games are recovered from
+	 * @param listeners - attached to every game held
+	 * @param expirationWheel - where games held are scheduled for expiration
+	 */
+	@Autowired
+	InMemoryGameStore(@Value("${minesweeper.store.max-size:100000}") int maxSize,
+			@Value("${minesweeper.store.idle-ttl:30m}") Duration idleTtl, GameWriteBehind gameWriteBehind,
+			GameMoveLogService gameMoveLog, List<GameListener> listeners, ExpirationWheel expirationWheel) {
+		this(maxSize, idleTtl, gameWriteBehind, gameMoveLog, listeners, expirationWheel, System::nanoTime);
+	}
+
+	/**
+	 * @param maxSize
+	 * @param idleTtl
+	 * @param gameWriteBehind
+	 * @param gameMoveLog
+	 * @param listeners
+	 * @param expirationWheel
+	 * @param ticker - nanosecond time source
+	 */
+	InMemoryGameStore(int maxSize, Duration idleTtl, GameWriteBehind gameWriteBehind, GameMoveLogService gameMoveLog,
+			List<GameListener> listeners, ExpirationWheel expirationWheel, LongSupplier ticker) {
+		super();
+		if(maxSize < SEGMENTS) {
+			throw new IllegalArgumentException("Store size must be at least " + SEGMENTS);
+		}
+		this.segments = new Segment[SEGMENTS];
+		for(int ix = 0; ix < SEGMENTS; ix++) {
+			this.segments[ix] = new Segment(maxSize / SEGMENTS);
+		}
+		this.idleTtlNanos = idleTtl.toNanos();
+		this.gameWriteBehind = gameWriteBehind;
+		this.gameMoveLog = gameMoveLog;
+		this.listener = (listeners.size() == 1 ? listeners.get(0) : new CompositeGameListener(listeners));
+		this.expirationWheel = expirationWheel;
+		this.ticker = ticker;
+	}
+
+	/**
+	 * @author fernando
+	 * Stored game along with its last access time
+	 */
+	private static class Entry {
+
+		private final Game game;
+
+		private long lastAccess;
+
+		/**
+		 * @param game
+		 * @param lastAccess
+		 */
+		Entry(Game game, long lastAccess) {
+			super();
+			this.game = game;
+			this.lastAccess = lastAccess;
+		}
+
+	}
+
+	/**
+	 * @author fernando
+	 * Access ordered map guarded by its own monitor
+	 */
+	private class Segment {
+
+		private final int capacity;
+
+		private final LinkedHashMap<String, Entry> entries;
+
+		/**
+		 * @param capacity
+		 */
+		Segment(int capacity) {
+			super();
+			this.capacity = capacity;
+			this.entries = new LinkedHashMap<>(16, 0.75f, true);
+		}
+
+		/**
+		 * Drops entries over capacity or idle for too long, least recently used first
+		 * Must be called holding segment's monitor
+		 * @param now
+		 * @param evicted - accumulates evicted games
+		 */
+		void evict(long now, List<Game> evicted) {
+			Iterator<Map.Entry<String, Entry>> it = entries.entrySet().iterator();
+			while(it.hasNext()) {
+				Entry eldest = it.next().getValue();
+				if(entries.size() <= capacity && now - eldest.lastAccess < idleTtlNanos) {
+					break;
+				}
+				it.remove();
+				evicted.add(eldest.game);
+			}
+		}
+
+	}
+
+	private Segment segmentFor(String gameId) {
+		return segments[(gameId.hashCode() & Integer.MAX_VALUE) % SEGMENTS];
+	}
+
+	/* (non-Javadoc)
+	 * @see com.deviget.minesweeperserver.api.GameStore#get(java.lang.String)
+	 */
+	@Override
+	public Game get(String gameId) {
+		Segment segment = segmentFor(gameId);
+		long now = ticker.getAsLong();
+		List<Game> evicted = new ArrayList<>(0);
+		Game game = null;
+		synchronized(segment) {
+			Entry entry = segment.entries.get(gameId);
+			if(entry != null && now - entry.lastAccess >= idleTtlNanos) {
+				//idle for too long, evicted instead of refreshed
+				segment.entries.remove(gameId);
+				evicted.add(entry.game);
+			} else if(entry != null) {
+				entry.lastAccess = now;
+				game = entry.game;
+			}
+			segment.evict(now, evicted);
+		}
+		spill(evicted);
+		if(game != null) {
+			hits.increment();
+			return game;
+		}
+		misses.increment();
+		return load(gameId);
+	}
+
+	/* (non-Javadoc)
+	 * @see com.deviget.minesweeperserver.api.GameStore#getIfPresent(java.lang.String)
+	 */
+	@Override
+	public Game getIfPresent(String gameId) {
+		Segment segment = segmentFor(gameId);
+		Entry entry;
+		synchronized(segment) {
+			//idle time is not refreshed so it's not considered an access
+			entry = segment.entries.get(gameId);
+		}
+		return (entry != null ? entry.game : null);
+	}
+
+	/* (non-Javadoc)
+	 * @see com.deviget.minesweeperserver.api.GameStore#put(com.deviget.minesweeperserver.api.Game)
+	 */
+	@Override
+	public void put(Game game) {
+		Segment segment = segmentFor(game.getId());
+		long now = ticker.getAsLong();
+		List<Game> evicted = new ArrayList<>(0);
+		game.setListener(listener);
+		synchronized(segment) {
+			segment.entries.put(game.getId(), new Entry(game, now));
+			segment.evict(now, evicted);
+		}
+		expirationWheel.schedule(game.getId(), game.getExpiresAt());
+		spill(evicted);
+	}
+
+	/* (non-Javadoc)
+	 * @see com.deviget.minesweeperserver.api.GameStore#remove(java.lang.String)
+	 */
+	@Override
+	public Game remove(String gameId) {
+		Segment segment = segmentFor(gameId);
+		Entry entry;
+		synchronized(segment) {
+			entry = segment.entries.remove(gameId);
+		}
+		return (entry != null ? entry.game : null);
+	}
+
+	/* (non-Javadoc)
+	 * @see com.deviget.minesweeperserver.api.GameStore#remove(java.lang.String, com.deviget.minesweeperserver.api.Game)
+	 */
+	@Override
+	public boolean remove(String gameId, Game game) {
+		Segment segment = segmentFor(gameId);
+		synchronized(segment) {
+			Entry entry = segment.entries.get(gameId);
+			if(entry == null || entry.game != game) {
+				return false;
+			}
+			segment.entries.remove(gameId);
+			return true;
+		}
+	}
+
+	/* (non-Javadoc)
+	 * @see com.deviget.minesweeperserver.api.GameStore#size()
+	 */
+	@Override
+	public int size() {
+		int size = 0;
+		for(Segment segment : segments) {
+			synchronized(segment) {
+				size += segment.entries.size();
+			}
+		}
+		return size;
+	}
+
+	/* (non-Javadoc)
+	 * @see com.deviget.minesweeperserver.api.GameStore#count(com.deviget.minesweeperserver.api.Game.Status)
+	 */
+	@Override
+	public int count(Game.Status status) {
+		int count = 0;
+		for(Segment segment : segments) {
+			synchronized(segment) {
+				for(Entry entry : segment.entries.values()) {
+					if(entry.game.getStatus() == status) {
+						count++;
+					}
+				}
+			}
+		}
+		return count;
+	}
+
+	/* (non-Javadoc)
+	 * @see com.deviget.minesweeperserver.api.GameStore#getAll()
+	 */
+	@Override
+	public List<Game> getAll() {
+		List<Game> games = new ArrayList<>();
+		for(Segment segment : segments) {
+			synchronized(segment) {
+				for(Entry entry : segment.entries.values()) {
+					games.add(entry.game);
+				}
+			}
+		}
+		return games;
+	}
+
+	/* (non-Javadoc)
+	 * @see com.deviget.minesweeperserver.api.GameStore#getStats()
+	 */
+	@Override
+	public Stats getStats() {
+		return new Stats(hits.sum(), misses.sum(), loads.sum(), evictions.sum());
+	}
+
+	/**
+	 * Queues evicted games which are still being played to be written, outside of any segment lock
+	 * @param evicted
+	 */
+	private void spill(List<Game> evicted) {
+		for(Game game : evicted) {
+			evictions.increment();
+			if(game.getStatus() != Game.Status.CREATED && game.getStatus() != Game.Status.STARTED) {
+				continue;
+			}
+			//flushes on the caller's thread only if too many are pending, write-behind retries failed writes
+			gameWriteBehind.enqueue(game);
+			LOGGER.debug("Game {} spilled to write-behind", game.getId());
+		}
+	}
+
+	/**
+	 * Reloads a previously spilled game
+	 * @param gameId
+	 * @return reloaded game or null if there's none still being played
+	 */
+	private Game load(String gameId) {
+		//spilled but not written yet, its snapshot would be behind, unless handed over to another node
+		Game game = gameWriteBehind.getPendingGame(gameId);
+		if(game == null || game.isFenced()) {
+			try {
+				game = gameMoveLog.recover(gameId);
+			} catch (DataAccessException | IllegalStateException e) {
+				LOGGER.error("Game " + gameId + " couldn't be loaded " + e.getMessage());
+				return null;
+			}
+		}
+		if(game == null) {
+			return null;
+		}
+		if(game.getStatus() != Game.Status.CREATED && game.getStatus() != Game.Status.STARTED) {
+			return null;
+		}
+		loads.increment();
+		Segment segment = segmentFor(gameId);
+		long now = ticker.getAsLong();
+		List<Game> evicted = new ArrayList<>(0);
+		synchronized(segment) {
+			//another thread may have reloaded it meanwhile, keep that one
+			Entry entry = segment.entries.get(gameId);
+			if(entry != null) {
+				game = entry.game;
+			} else {
+				game.setListener(listener);
+				segment.entries.put(gameId, new Entry(game, now));
+			}
+			segment.evict(now, evicted);
+		}
+		expirationWheel.schedule(gameId, game.getExpiresAt());
+		spill(evicted);
+		return game;
+	}
+
+}
@@ -0,0 +1,77 @@
+/**
+ *
+ */
+package com.deviget.minesweeperserver.api;
+
+import java.util.Arrays;
+
+/**
+ * @author fernando
+ * Growable list of primitive ints, used to hold cell indexes
+ * without boxing them. Not thread safe.
+ */
+class IntList {
+
+	private static final int DEFAULT_CAPACITY = 16;
+
+	private int[] values;
+
+	private int size;
+
+	IntList() {
+		this(DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * @param initialCapacity
+	 */
+	IntList(int initialCapacity) {
+		this.values = new int[Math.max(initialCapacity, 1)];
+	}
+
+	void add(int value) {
+		if(size == values.length) {
+			values = Arrays.copyOf(values, size << 1);
+		}
+		values[size++] = value;
+	}
+
+	/**
+	 * @return last added value, removing it from the list
+	 */
+	int pop() {
+		return values[--size];
+	}
+
+	int get(int position) {
+		if(position >= size) {
+			throw new IndexOutOfBoundsException("Position " + position + " not lower than size " + size);
+		}
+		return values[position];
+	}
+
+	int size() {
+		return size;
+	}
+
+	boolean isEmpty() {
+		return size == 0;
+	}
+
+	void clear() {
+		size = 0;
+	}
+
+	int[] toArray() {
+		return Arrays.copyOf(values, size);
+	}
+
+	/**
+	 * @param fromPosition
+	 * @return values from given position on
+	 */
+	int[] toArray(int fromPosition) {
+		return Arrays.copyOfRange(values, fromPosition, size);
+	}
+
+}
@@ -6,11 +6,13 @@ package com.deviget.minesweeperserver.api;
 import java.util.ArrayList;
 import java.util.List;
 
+import org.bson.Document;
+import org.bson.types.Binary;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.core.convert.converter.Converter;
-
-import com.deviget.minesweeperserver.api.Game.Cell.Coordinates;
+import org.springframework.data.convert.ReadingConverter;
+import org.springframework.data.convert.WritingConverter;
 
 /**
  * @author fernando
@@ -18,36 +20,63 @@ import com.deviget.minesweeperserver.api.Game.Cell.Coordinates;
  */
 @Configuration
 public class MongoDBConfig {
+	
+	private static final String ROWS_FIELD = "rows";
+	
+	private static final String COLUMNS_FIELD = "columns";
+	
+	private static final String FORMAT_FIELD = "format";
+	
+	private static final String DATA_FIELD = "data";
 
 	@Bean
 	public MongoCustomConversions getCustomConversions() {
 		@SuppressWarnings("rawtypes")
 		List<Converter> customConv = new ArrayList<>();
-		customConv.add(new GameCoordinatesConverter());
-		customConv.add(new GameCoordinatesReverseConverter());
+		customConv.add(new GameBoardConverter());
+		customConv.add(new GameBoardReverseConverter());
 		return new MongoCustomConversions(customConv);
 	}
 	
-	class GameCoordinatesConverter implements Converter<Game.Cell.Coordinates, String> {
+	/**
+	 * Stores board as a single binary field, see {@link BoardBinaryCodec}
+	 */
+	@WritingConverter
+	class GameBoardConverter implements Converter<Board, Document> {
 
 		@Override
-		public String convert(Coordinates source) {
-			return source.getRow() + "_" + source.getColumn();
+		public Document convert(Board source) {
+			Document document = new Document();
+			document.put(ROWS_FIELD, source.getRows());
+			document.put(COLUMNS_FIELD, source.getColumns());
+			document.put(FORMAT_FIELD, BoardBinaryCodec.PLANES_FORMAT);
+			document.put(DATA_FIELD, new Binary(BoardBinaryCodec.encode(source)));
+			return document;
 		}
 
 	}
 	
-	class GameCoordinatesReverseConverter implements Converter<String, Game.Cell.Coordinates> {
+	/**
+	 * Reads binary board, or migrates legacy layout with a sub-document per cell
+	 */
+	@ReadingConverter
+	class GameBoardReverseConverter implements Converter<Document, Board> {
 
 		@Override
-		public Coordinates convert(String source) {
-			String[] coordsStr = source.split("_");
-			short row = Short.parseShort(coordsStr[0]);
-			short column = Short.parseShort(coordsStr[1]);
-			return new Coordinates(row, column);
+		public Board convert(Document source) {
+			Object data = source.get(DATA_FIELD);
+			if(data == null) {
+				return BoardBinaryCodec.decodeLegacy(source);
+			}
+			Object format = source.get(FORMAT_FIELD);
+			if(!(format instanceof Number) || ((Number) format).intValue() != BoardBinaryCodec.PLANES_FORMAT) {
+				throw new IllegalArgumentException("Unknown board format " + format);
+			}
+			short rows = ((Number) source.get(ROWS_FIELD)).shortValue();
+			short columns = ((Number) source.get(COLUMNS_FIELD)).shortValue();
+			byte[] bytes = (data instanceof Binary ? ((Binary) data).getData() : (byte[]) data);
+			return BoardBinaryCodec.decode(rows, columns, bytes);
 		}
 
-
-
 	}
 }
@@ -0,0 +1,69 @@
+/**
+ * 
+ */
+package com.deviget.minesweeperserver.api;
+
+import java.util.Locale;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * @author fernando
+ * Move requested in a sequence, such as {"op": "reveal", "row": 1, "column": 2}
+ */
+class MoveRequest {
+	
+	private final GameMove.Op op;
+	
+	private final Game.Cell.Coordinates coordinates;
+
+	/**
+	 * @param op
+	 * @param row
+	 * @param column
+	 */
+	MoveRequest(GameMove.Op op, short row, short column) {
+		super();
+		this.op = op;
+		this.coordinates = new Game.Cell.Coordinates(row, column);
+	}
+	
+	/**
+	 * @param op - case insensitive
+	 * @param row
+	 * @param column
+	 * @return
+	 */
+	@JsonCreator
+	static MoveRequest of(@JsonProperty("op") String op, @JsonProperty("row") short row,
+			@JsonProperty("column") short column) {
+		if(op == null) {
+			throw new IllegalArgumentException("Move op is required");
+		}
+		return new MoveRequest(GameMove.Op.valueOf(op.toUpperCase(Locale.ROOT)), row, column);
+	}
+
+	/**
+	 * @return the op
+	 */
+	GameMove.Op getOp() {
+		return op;
+	}
+
+	/**
+	 * @return the coordinates
+	 */
+	Game.Cell.Coordinates getCoordinates() {
+		return coordinates;
+	}
+
+	/* (non-Javadoc)
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString() {
+		return "MoveRequest [op=" + op + ", coordinates=" + coordinates + "]";
+	}
+
+}
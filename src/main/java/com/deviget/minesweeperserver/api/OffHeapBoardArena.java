@@ -0,0 +1,311 @@
+/**
+ *
+ */
+package com.deviget.minesweeperserver.api;
+
+import java.lang.ref.Cleaner;
+import java.nio.ByteBuffer;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+/**
+ * @author fernando
+ * Opt-in off-heap storage of {@link Board} cells (minesweeper.board.off-heap.enabled), so
+ * hundreds of thousands of live games leave only thin handles on the heap and old
+ * generation collections don't have to trace their cells.
+ * Cells are carved from direct slabs (minesweeper.board.off-heap.slab-size) in power of two
+ * size classes, boards larger than a slab get a direct buffer of their own. Slices are
+ * zeroed and recycled into their size class once their board is unreachable, rather than
+ * when its game ends, since finished games are still read by the archive, write-behind
+ * and serializers, so they come back only as collections find dead boards. Boards smaller
+ * than minesweeper.board.off-heap.min-size stay on the heap, their cells already being a
+ * single array costing about as much as an off-heap handle. Past
+ * minesweeper.board.off-heap.max-size boards are kept on the heap too.
+ */
+@Component
+class OffHeapBoardArena {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(OffHeapBoardArena.class);
+
+	private static final int MIN_SLICE_SHIFT = 6;
+
+	private static final int MIN_SLICE_SIZE = 1 << MIN_SLICE_SHIFT;
+
+	private static final Cleaner CLEANER = Cleaner.create();
+
+	/**
+	 * Arena new boards are allocated from, null while boards are kept on the heap
+	 */
+	private static volatile OffHeapBoardArena active;
+
+	private final boolean enabled;
+
+	private final long minSize;
+
+	private final int slabSize;
+
+	private final long maxSize;
+
+	/**
+	 * Free slices by size class, from {@link #MIN_SLICE_SIZE} up to slab size
+	 */
+	private final Queue<ByteBuffer>[] freeSlices;
+
+	private final AtomicLong reserved = new AtomicLong();
+
+	private final LongAdder inUse = new LongAdder();
+
+	private final LongAdder allocated = new LongAdder();
+
+	private final LongAdder recycled = new LongAdder();
+
+	private final LongAdder fallbacks = new LongAdder();
+
+	/**
+	 * @param enabled
+	 * @param minSize - smaller boards are kept on the heap
+	 * @param slabSize - direct memory allocated at once for a size class, a power of two
+	 * @param maxSize - direct memory reserved at most
+	 */
+	@SuppressWarnings("unchecked")
+	OffHeapBoardArena(@Value("${minesweeper.board.off-heap.enabled:false}") boolean enabled,
+			@Value("${minesweeper.board.off-heap.min-size:4KB}") DataSize minSize,
+			@Value("${minesweeper.board.off-heap.slab-size:4MB}") DataSize slabSize,
+			@Value("${minesweeper.board.off-heap.max-size:1GB}") DataSize maxSize) {
+		super();
+		long slabBytes = slabSize.toBytes();
+		if(slabBytes < MIN_SLICE_SIZE || slabBytes > (1 << 30) || Long.bitCount(slabBytes) != 1) {
+			throw new IllegalArgumentException("Slab size must be a power of two between 64B and 1GB");
+		}
+		this.enabled = enabled;
+		this.minSize = minSize.toBytes();
+		this.slabSize = (int) slabBytes;
+		this.maxSize = maxSize.toBytes();
+		this.freeSlices = new Queue[Integer.numberOfTrailingZeros(this.slabSize) - MIN_SLICE_SHIFT + 1];
+		for(int ix = 0; ix < freeSlices.length; ix++) {
+			freeSlices[ix] = new ConcurrentLinkedQueue<>();
+		}
+	}
+
+	/**
+	 * Makes new boards allocate from this arena, if enabled
+	 */
+	@PostConstruct
+	void activate() {
+		if(enabled) {
+			active = this;
+			LOGGER.info("Boards are kept off-heap, up to {} bytes", maxSize);
+		}
+	}
+
+	/**
+	 * New boards are kept on the heap from then on, boards already allocated keep their slices
+	 */
+	@PreDestroy
+	void deactivate() {
+		if(active == this) {
+			active = null;
+		}
+	}
+
+	/**
+	 * @return arena new boards are allocated from, null if they are kept on the heap
+	 */
+	static OffHeapBoardArena getActive() {
+		return active;
+	}
+
+	/**
+	 * @param owner - slice is recycled once owner is unreachable, so it must not be reachable from the slice
+	 * @param size - bytes needed
+	 * @return zeroed slice of at least size bytes, limited to size, or null if board is
+	 * too small or arena is full
+	 */
+	ByteBuffer allocate(Object owner, int size) {
+		if(size < minSize) {
+			return null;
+		}
+		ByteBuffer slice;
+		int sliceClass;
+		if(size > slabSize) {
+			sliceClass = -1;
+			slice = allocateDirect(size);
+		} else {
+			sliceClass = sliceClassOf(size);
+			slice = freeSlices[sliceClass].poll();
+			if(slice == null) {
+				slice = allocateSlab(sliceClass);
+			}
+		}
+		if(slice == null) {
+			fallbacks.increment();
+			return null;
+		}
+		inUse.add(slice.capacity());
+		allocated.increment();
+		CLEANER.register(owner, new Recycler(this, sliceClass, slice));
+		ByteBuffer view = slice.duplicate();
+		view.limit(size);
+		return view;
+	}
+
+	/**
+	 * @param size
+	 * @return index of smallest size class holding size bytes
+	 */
+	static int sliceClassOf(int size) {
+		if(size <= MIN_SLICE_SIZE) {
+			return 0;
+		}
+		return 32 - Integer.numberOfLeadingZeros(size - 1) - MIN_SLICE_SHIFT;
+	}
+
+	/**
+	 * Carves a new slab into slices of given size class, keeping all but one free
+	 * @param sliceClass
+	 * @return a slice, null if max size would be exceeded
+	 */
+	private ByteBuffer allocateSlab(int sliceClass) {
+		Queue<ByteBuffer> free = freeSlices[sliceClass];
+		synchronized(free) {
+			//another thread may have carved one meanwhile
+			ByteBuffer slice = free.poll();
+			if(slice != null) {
+				return slice;
+			}
+			ByteBuffer slab = allocateDirect(slabSize);
+			if(slab == null) {
+				return null;
+			}
+			int sliceSize = MIN_SLICE_SIZE << sliceClass;
+			for(int offset = sliceSize; offset < slabSize; offset += sliceSize) {
+				slab.limit(offset + sliceSize).position(offset);
+				free.add(slab.slice());
+			}
+			slab.limit(sliceSize).position(0);
+			return slab.slice();
+		}
+	}
+
+	/**
+	 * @param size
+	 * @return direct buffer, null if max size would be exceeded or direct memory is exhausted
+	 */
+	private ByteBuffer allocateDirect(int size) {
+		long current;
+		do {
+			current = reserved.get();
+			if(current + size > maxSize) {
+				return null;
+			}
+		} while(!reserved.compareAndSet(current, current + size));
+		try {
+			return ByteBuffer.allocateDirect(size);
+		} catch (OutOfMemoryError e) {
+			reserved.addAndGet(-size);
+			LOGGER.warn("Direct memory exhausted, board is kept on the heap (check -XX:MaxDirectMemorySize) {}",
+				e.getMessage());
+			return null;
+		}
+	}
+
+	/**
+	 * @param sliceClass - -1 for dedicated buffers
+	 * @param slice
+	 */
+	private void recycle(int sliceClass, ByteBuffer slice) {
+		inUse.add(-slice.capacity());
+		recycled.increment();
+		if(sliceClass < 0) {
+			//freed along with the buffer itself
+			reserved.addAndGet(-slice.capacity());
+			return;
+		}
+		for(int ix = 0; ix < slice.capacity(); ix += Long.BYTES) {
+			slice.putLong(ix, 0L);
+		}
+		freeSlices[sliceClass].add(slice);
+	}
+
+	/**
+	 * @return whether boards are kept off-heap
+	 */
+	boolean isEnabled() {
+		return enabled;
+	}
+
+	/**
+	 * @return direct memory bytes held by slabs and dedicated buffers
+	 */
+	long getReserved() {
+		return reserved.get();
+	}
+
+	/**
+	 * @return direct memory bytes held by live boards
+	 */
+	long getInUse() {
+		return inUse.sum();
+	}
+
+	/**
+	 * @return number of boards allocated off-heap
+	 */
+	long getAllocated() {
+		return allocated.sum();
+	}
+
+	/**
+	 * @return number of slices recycled
+	 */
+	long getRecycled() {
+		return recycled.sum();
+	}
+
+	/**
+	 * @return number of boards kept on the heap for arena being full
+	 */
+	long getFallbacks() {
+		return fallbacks.sum();
+	}
+
+	/**
+	 * @author fernando
+	 * Gives a slice back once its board is unreachable, must not reference the board
+	 */
+	private static final class Recycler implements Runnable {
+
+		private final OffHeapBoardArena arena;
+
+		private final int sliceClass;
+
+		private final ByteBuffer slice;
+
+		Recycler(OffHeapBoardArena arena, int sliceClass, ByteBuffer slice) {
+			this.arena = arena;
+			this.sliceClass = sliceClass;
+			this.slice = slice;
+		}
+
+		/* (non-Javadoc)
+		 * @see java.lang.Runnable#run()
+		 */
+		@Override
+		public void run() {
+			arena.recycle(sliceClass, slice);
+		}
+
+	}
+
+}
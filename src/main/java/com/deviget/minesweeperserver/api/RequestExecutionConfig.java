@@ -0,0 +1,77 @@
+/**
+ *
+ */
+package com.deviget.minesweeperserver.api;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import javax.annotation.PreDestroy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.web.embedded.tomcat.TomcatServletWebServerFactory;
+import org.springframework.boot.web.server.WebServerFactoryCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * @author fernando
+ * Opt-in handling of requests on virtual threads (minesweeper.virtual-threads.enabled),
+ * so requests blocked on MongoDB don't hold a platform thread each and thousands of
+ * concurrent games don't need thousands of them. Virtual threads are looked up by
+ * reflection since they need Java 21, on older runtimes requests are handled by
+ * Tomcat's thread pool as usual.
+ */
+@Configuration
+public class RequestExecutionConfig {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(RequestExecutionConfig.class);
+
+	private ExecutorService executor;
+
+	@Bean
+	@ConditionalOnProperty(name = "minesweeper.virtual-threads.enabled", havingValue = "true")
+	public WebServerFactoryCustomizer<TomcatServletWebServerFactory> virtualThreadsCustomizer() {
+		this.executor = newVirtualThreadPerTaskExecutor();
+		if(this.executor == null) {
+			LOGGER.warn("Virtual threads need Java 21 or later, requests are handled by Tomcat's thread pool");
+			return factory -> { };
+		}
+		LOGGER.info("Requests are handled on virtual threads");
+		return customizerFor(this.executor);
+	}
+
+	/**
+	 * @param executor
+	 * @return customizer making every connector handle requests on given executor
+	 */
+	static WebServerFactoryCustomizer<TomcatServletWebServerFactory> customizerFor(ExecutorService executor) {
+		return factory -> factory.addConnectorCustomizers(connector -> connector.getProtocolHandler().setExecutor(executor));
+	}
+
+	/**
+	 * @return executor starting a virtual thread per task, or null if runtime has no virtual threads
+	 */
+	static ExecutorService newVirtualThreadPerTaskExecutor() {
+		try {
+			Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+			return (ExecutorService) factory.invoke(null);
+		} catch (ReflectiveOperationException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * Tomcat doesn't shut down executors it was given
+	 */
+	@PreDestroy
+	void shutdown() {
+		if(this.executor != null) {
+			this.executor.shutdown();
+		}
+	}
+
+}
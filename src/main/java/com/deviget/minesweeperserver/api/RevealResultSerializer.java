@@ -0,0 +1,58 @@
+/**
+ *
+ */
+package com.deviget.minesweeperserver.api;
+
+import java.io.IOException;
+
+import com.deviget.minesweeperserver.api.Game.MovesResult;
+import com.deviget.minesweeperserver.api.Game.RevealResult;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+
+/**
+ * @author fernando
+ * Streams reveal and moves results as JSON straight from the game's {@link Board},
+ * see {@link GameSerializer}. In the compact rows format each cell revealed is written
+ * as a [row, column, symbol] array.
+ */
+class RevealResultSerializer extends StdSerializer<RevealResult> {
+
+	private static final long serialVersionUID = 1L;
+
+	RevealResultSerializer() {
+		super(RevealResult.class);
+	}
+
+	/* (non-Javadoc)
+	 * @see com.fasterxml.jackson.databind.ser.std.StdSerializer#serialize(java.lang.Object, com.fasterxml.jackson.core.JsonGenerator, com.fasterxml.jackson.databind.SerializerProvider)
+	 */
+	@Override
+	public void serialize(RevealResult result, JsonGenerator gen, SerializerProvider provider) throws IOException {
+		gen.writeStartObject();
+		provider.defaultSerializeField("status", result.getStatus(), gen);
+		gen.writeNumberField("timePlayedInSeconds", result.getTimePlayedInSeconds());
+		if(result instanceof MovesResult) {
+			gen.writeNumberField("movesApplied", ((MovesResult) result).getMovesApplied());
+		}
+		Board board = result.getBoard();
+		boolean rows = GameSerializer.isRows(provider);
+		gen.writeArrayFieldStart("adjCellsRevealed");
+		//a cell is never reported twice by a result, so there's nothing to deduplicate
+		for(int cellIx : result.getAdjCellsRevealedIxs()) {
+			if(rows) {
+				gen.writeStartArray();
+				gen.writeNumber(board.rowOf(cellIx));
+				gen.writeNumber(board.columnOf(cellIx));
+				gen.writeString(String.valueOf(GameSerializer.symbolOf(board, cellIx, result.getStatus())));
+				gen.writeEndArray();
+			} else {
+				GameSerializer.writeCell(board, cellIx, gen);
+			}
+		}
+		gen.writeEndArray();
+		gen.writeEndObject();
+	}
+
+}
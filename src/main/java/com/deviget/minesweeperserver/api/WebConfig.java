@@ -0,0 +1,29 @@
+/**
+ *
+ */
+package com.deviget.minesweeperserver.api;
+
+import java.util.List;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+/**
+ * @author fernando
+ * Registers the binary wire format after every other converter. Converter beans, such as
+ * {@link GameRowsHttpMessageConverter}, are put first instead, which would make binary
+ * the default for clients accepting anything.
+ */
+@Configuration
+public class WebConfig implements WebMvcConfigurer {
+
+	/* (non-Javadoc)
+	 * @see org.springframework.web.servlet.config.annotation.WebMvcConfigurer#extendMessageConverters(java.util.List)
+	 */
+	@Override
+	public void extendMessageConverters(List<HttpMessageConverter<?>> converters) {
+		converters.add(new GameBinaryHttpMessageConverter());
+	}
+
+}
@@ -0,0 +1,322 @@
+package com.deviget.minesweeperserver.api;
+
+import static org.hamcrest.Matchers.isOneOf;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import java.io.ByteArrayInputStream;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.zip.GZIPInputStream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.data.mongodb.core.MongoOperations;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.ByteArrayHttpMessageConverter;
+import org.springframework.http.converter.StringHttpMessageConverter;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.ResultActions;
+import org.springframework.util.StreamUtils;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import com.deviget.minesweeperserver.api.Game.Cell;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+public class APIControllerTests {
+
+	private GameStore gameStore;
+
+	private GameEventHub gameEventHub;
+
+	private GameShards gameShards;
+
+	private MeterRegistry registry;
+
+	private ObjectMapper objectMapper;
+
+	private MockMvc mockMvc;
+
+	@Before
+	public void setUp() {
+		GameMoveLogService gameMoveLog = mock(GameMoveLogService.class);
+		gameEventHub = new GameEventHub(Jackson2ObjectMapperBuilder.json().build(), 1, 16, Duration.ofMinutes(1));
+		gameStore = new InMemoryGameStore(1600, Duration.ofHours(1), mock(GameWriteBehind.class), gameMoveLog,
+			Arrays.asList(gameMoveLog, gameEventHub), new ExpirationWheel(), System::nanoTime);
+		gameShards = new GameShards(2, 16);
+		registry = new SimpleMeterRegistry();
+		objectMapper = Jackson2ObjectMapperBuilder.json().build();
+		//additional converters go first, as Spring Boot registers them
+		mockMvc = MockMvcBuilders.standaloneSetup(new APIController(gameStore, gameMoveLog, gameEventHub, gameShards,
+				new GameMetrics(registry), new GameArchive(160, gameMoveLog, objectMapper), new GameCluster(false, "node",
+				"localhost", Duration.ofSeconds(1), Duration.ofSeconds(5), Duration.ofSeconds(3), mock(MongoOperations.class),
+				gameStore, mock(GameWriteBehind.class), System::currentTimeMillis)))
+			.setMessageConverters(new GameRowsHttpMessageConverter(objectMapper), new ByteArrayHttpMessageConverter(),
+				new StringHttpMessageConverter(), new MappingJackson2HttpMessageConverter(objectMapper))
+			.build();
+	}
+
+	@After
+	public void tearDown() {
+		gameEventHub.shutdown();
+		gameShards.shutdown();
+	}
+
+	/**
+	 * @param builder - request answered asynchronously, such as moves applied on a shard
+	 * @return actions on the dispatched response
+	 * @throws Exception
+	 */
+	private ResultActions performAsync(MockHttpServletRequestBuilder builder) throws Exception {
+		MvcResult result = mockMvc.perform(builder).andExpect(request().asyncStarted()).andReturn();
+		return mockMvc.perform(asyncDispatch(result));
+	}
+
+	@Test
+	public void whenMovesAreAppliedThenTheyAreTimed() throws Exception {
+		Game game = Game.createGame((short)8, (short)8, 10);
+		gameStore.put(game);
+		Cell safe = game.getCells().stream().filter(cell -> !cell.isHasMine()).findFirst().get();
+		Cell mine = game.getCells().stream().filter(cell -> cell.isHasMine()).findFirst().get();
+
+		performAsync(put("/games/" + game.getId() + "/cells/flag")
+				.param("row", String.valueOf(mine.getCoordinates().getRow()))
+				.param("column", String.valueOf(mine.getCoordinates().getColumn())))
+			.andExpect(status().isOk());
+		performAsync(put("/games/" + game.getId() + "/cells/reveal")
+				.param("row", String.valueOf(safe.getCoordinates().getRow()))
+				.param("column", String.valueOf(safe.getCoordinates().getColumn())))
+			.andExpect(status().isOk());
+
+		assertEquals(1L, registry.get("minesweeper.game.operation").tag("operation", "flag").timer().count());
+		assertEquals(1L, registry.get("minesweeper.game.operation").tag("operation", "reveal").timer().count());
+		assertTrue(registry.get("minesweeper.game.cascade").tag("operation", "reveal").summary().totalAmount() >= 1d);
+	}
+
+	@Test
+	public void whenGameDidNotChangeThenNotModifiedIsReturned() throws Exception {
+		Game game = Game.createGame((short)8, (short)8, 10);
+		gameStore.put(game);
+		String eTag = "W/\"" + game.getId() + "-0-json\"";
+
+		mockMvc.perform(get("/games/" + game.getId()))
+			.andExpect(status().isOk())
+			.andExpect(header().string(HttpHeaders.ETAG, eTag))
+			.andExpect(header().string(HttpHeaders.VARY, "Accept, Accept-Encoding"))
+			.andExpect(jsonPath("$.cells.length()").value(64));
+		mockMvc.perform(get("/games/" + game.getId()).header(HttpHeaders.IF_NONE_MATCH, eTag))
+			.andExpect(status().isNotModified());
+		//each representation is tagged on its own
+		mockMvc.perform(get("/games/" + game.getId()).accept(GameRowsHttpMessageConverter.ROWS_JSON))
+			.andExpect(status().isOk())
+			.andExpect(header().string(HttpHeaders.ETAG, "W/\"" + game.getId() + "-0-rows\""));
+		mockMvc.perform(get("/games/" + game.getId()).accept(GameRowsHttpMessageConverter.ROWS_JSON)
+				.header(HttpHeaders.IF_NONE_MATCH, eTag))
+			.andExpect(status().isOk());
+		mockMvc.perform(get("/games/" + game.getId()).param("sinceVersion", "0"))
+			.andExpect(status().isNotModified());
+	}
+
+	@Test
+	public void whenGameIsFinishedThenItIsServedCompressedAndImmutable() throws Exception {
+		Game game = Game.createGame((short)8, (short)8, 10);
+		gameStore.put(game);
+		Cell mine = game.getCells().stream().filter(Cell::isHasMine).findFirst().get();
+		performAsync(put("/games/" + game.getId() + "/cells/reveal")
+				.param("row", String.valueOf(mine.getCoordinates().getRow()))
+				.param("column", String.valueOf(mine.getCoordinates().getColumn())))
+			.andExpect(jsonPath("$.status").value("LOST"));
+		String eTag = "\"" + game.getId() + "-" + game.getVersion() + "-json\"";
+		String gzippedETag = "\"" + game.getId() + "-" + game.getVersion() + "-json-gzip\"";
+
+		byte[] gzipped = mockMvc.perform(get("/games/" + game.getId()).header(HttpHeaders.ACCEPT_ENCODING, "gzip, br"))
+			.andExpect(status().isOk())
+			.andExpect(header().string(HttpHeaders.ETAG, gzippedETag))
+			.andExpect(header().string(HttpHeaders.VARY, "Accept, Accept-Encoding"))
+			.andExpect(header().string(HttpHeaders.CACHE_CONTROL, "public, max-age=31536000, immutable"))
+			.andExpect(header().string(HttpHeaders.CONTENT_ENCODING, "gzip"))
+			.andReturn().getResponse().getContentAsByteArray();
+		byte[] body = StreamUtils.copyToByteArray(new GZIPInputStream(new ByteArrayInputStream(gzipped)));
+		assertEquals(objectMapper.readTree(objectMapper.writeValueAsBytes(game)), objectMapper.readTree(body));
+		assertTrue(gzipped.length < body.length);
+
+		mockMvc.perform(get("/games/" + game.getId()).accept(GameRowsHttpMessageConverter.ROWS_JSON))
+			.andExpect(status().isOk())
+			.andExpect(header().doesNotExist(HttpHeaders.CONTENT_ENCODING))
+			.andExpect(header().string(HttpHeaders.ETAG, "\"" + game.getId() + "-" + game.getVersion() + "-rows\""))
+			.andExpect(jsonPath("$.status").value("LOST"))
+			.andExpect(jsonPath("$.board.length()").value(8));
+		mockMvc.perform(get("/games/" + game.getId()).header(HttpHeaders.IF_NONE_MATCH, eTag))
+			.andExpect(status().isNotModified())
+			.andExpect(header().string(HttpHeaders.ETAG, eTag))
+			.andExpect(header().string(HttpHeaders.CACHE_CONTROL, "public, max-age=31536000, immutable"));
+		//gzipped bytes don't validate identity ones
+		mockMvc.perform(get("/games/" + game.getId()).header(HttpHeaders.IF_NONE_MATCH, gzippedETag))
+			.andExpect(status().isOk())
+			.andExpect(header().string(HttpHeaders.ETAG, eTag));
+		mockMvc.perform(get("/games/" + game.getId()).header(HttpHeaders.IF_NONE_MATCH, gzippedETag)
+				.header(HttpHeaders.ACCEPT_ENCODING, "gzip"))
+			.andExpect(status().isNotModified());
+		performAsync(put("/games/" + game.getId() + "/cells/flag").param("row", "1").param("column", "1"))
+			.andExpect(status().isBadRequest());
+	}
+
+	@Test
+	public void whenGameIsHandedOverThenMovesAreRefusedUntilRetried() throws Exception {
+		Game game = Game.createGame((short)8, (short)8, 10);
+		gameStore.put(game);
+		//a move already routed here when the ring changed
+		game.fence();
+		performAsync(put("/games/" + game.getId() + "/cells/flag").param("row", "1").param("column", "1"))
+			.andExpect(status().isServiceUnavailable());
+		assertEquals(0L, game.getVersion());
+	}
+
+	@Test
+	public void whenRowsAreAcceptedThenBoardIsReturnedAsRows() throws Exception {
+		Game game = Game.createGame((short)8, (short)10, 10);
+		gameStore.put(game);
+		game.flagCell(new Cell.Coordinates((short)2, (short)3));
+
+		mockMvc.perform(get("/games/" + game.getId()).accept(GameRowsHttpMessageConverter.ROWS_JSON))
+			.andExpect(status().isOk())
+			.andExpect(header().string(HttpHeaders.CONTENT_TYPE, GameRowsHttpMessageConverter.ROWS_JSON.toString()))
+			.andExpect(jsonPath("$.cells").doesNotExist())
+			.andExpect(jsonPath("$.board.length()").value(8))
+			.andExpect(jsonPath("$.board[1]").value("  R       "));
+		mockMvc.perform(get("/games/" + game.getId()).accept(MediaType.APPLICATION_JSON))
+			.andExpect(status().isOk())
+			.andExpect(jsonPath("$.board").doesNotExist())
+			.andExpect(jsonPath("$.cells.length()").value(80));
+		mockMvc.perform(get("/games/" + game.getId()))
+			.andExpect(status().isOk())
+			.andExpect(jsonPath("$.cells.length()").value(80));
+	}
+
+	@Test
+	public void whenSinceVersionIsGivenThenOnlyChangedCellsAreReturned() throws Exception {
+		Game game = Game.createGame((short)8, (short)8, 10);
+		gameStore.put(game);
+		game.flagCell(new Cell.Coordinates((short)2, (short)3));
+
+		mockMvc.perform(get("/games/" + game.getId()).param("sinceVersion", "0"))
+			.andExpect(status().isOk())
+			.andExpect(header().string(HttpHeaders.ETAG, "W/\"" + game.getId() + "-1-json\""))
+			.andExpect(jsonPath("$.version").value(1))
+			.andExpect(jsonPath("$.cells.length()").value(1))
+			.andExpect(jsonPath("$.cells[0].coordinates.row").value(2))
+			.andExpect(jsonPath("$.cells[0].flaggedStatus").value("RED_FLAG"));
+	}
+
+	@Test
+	public void whenClientIsTooFarBehindThenWholeGameIsReturned() throws Exception {
+		Game game = Game.createGame((short)8, (short)8, 10);
+		gameStore.put(game);
+		game.flagCell(new Cell.Coordinates((short)2, (short)3));
+
+		mockMvc.perform(get("/games/" + game.getId()).param("sinceVersion", "5"))
+			.andExpect(status().isOk())
+			.andExpect(jsonPath("$.rows").value(8))
+			.andExpect(jsonPath("$.cells.length()").value(64));
+	}
+
+	@Test
+	public void whenSubscribedThenChangesArePushedUntilGameEnds() throws Exception {
+		Game game = Game.createGame((short)8, (short)8, 10);
+		gameStore.put(game);
+
+		MvcResult result = mockMvc.perform(get("/games/" + game.getId() + "/events"))
+			.andExpect(request().asyncStarted())
+			.andReturn();
+		game.flagCell(new Cell.Coordinates((short)2, (short)3));
+		Cell mine = game.getCells().stream().filter(cell -> cell.isHasMine()).findFirst().get();
+		game.revealCell(mine.getCoordinates());
+
+		long deadline = System.currentTimeMillis() + 5000;
+		while(gameEventHub.getSubscribers() > 0 && System.currentTimeMillis() < deadline) {
+			Thread.sleep(10);
+		}
+		String events = result.getResponse().getContentAsString();
+		assertTrue(events, events.contains("event:flag\nid:1\n"));
+		assertTrue(events, events.contains("event:reveal\nid:2\n"));
+		assertTrue(events, events.contains("\"status\":\"LOST\""));
+		assertTrue(events, events.indexOf("event:flag") < events.indexOf("event:reveal"));
+	}
+
+	@Test
+	public void whenMovesArePostedThenMergedResultIsReturned() throws Exception {
+		Game game = Game.createGame((short)8, (short)8, 10);
+		gameStore.put(game);
+
+		performAsync(post("/games/" + game.getId() + "/moves").contentType(MediaType.APPLICATION_JSON)
+				.content("[{\"op\":\"flag\",\"row\":1,\"column\":1},{\"op\":\"FLAG\",\"row\":2,\"column\":2}]"))
+			.andExpect(status().isOk())
+			.andExpect(jsonPath("$.status").value("STARTED"))
+			.andExpect(jsonPath("$.movesApplied").value(2));
+		assertEquals(1L, registry.get("minesweeper.game.operation").tag("operation", "moves").timer().count());
+		assertEquals(0d, registry.get("minesweeper.game.cascade").tag("operation", "moves").summary().totalAmount(), 0d);
+		performAsync(post("/games/" + game.getId() + "/moves").contentType(MediaType.APPLICATION_JSON)
+				.content("[{\"op\":\"flag\",\"row\":10,\"column\":1}]"))
+			.andExpect(status().isBadRequest());
+	}
+
+	@Test
+	public void whenNoMoveIsAppliedOnNewGameThenItIsStillPlayed() throws Exception {
+		Game game = Game.createGame((short)8, (short)8, 10);
+		gameStore.put(game);
+
+		//nothing is revealed yet, so there's nothing to chord
+		performAsync(post("/games/" + game.getId() + "/moves").contentType(MediaType.APPLICATION_JSON)
+				.content("[{\"op\":\"chord\",\"row\":1,\"column\":1},{\"op\":\"flag\",\"row\":2,\"column\":2}]"))
+			.andExpect(status().isOk())
+			.andExpect(jsonPath("$.status").value("CREATED"))
+			.andExpect(jsonPath("$.movesApplied").value(0));
+		assertEquals(game, gameStore.getIfPresent(game.getId()));
+		performAsync(put("/games/" + game.getId() + "/cells/flag").param("row", "2").param("column", "2"))
+			.andExpect(status().isOk());
+	}
+
+	@Test
+	public void whenFlagsMatchThenChordRevealsNeighbours() throws Exception {
+		Game game = Game.createGame((short)8, (short)8, 10);
+		gameStore.put(game);
+		Cell numbered = game.getCells().stream().filter(cell -> !cell.isHasMine() && cell.getAdjMinesNumber() > 0)
+			.findFirst().get();
+		short row = numbered.getCoordinates().getRow();
+		short column = numbered.getCoordinates().getColumn();
+		game.revealCell(numbered.getCoordinates());
+
+		performAsync(put("/games/" + game.getId() + "/cells/chord").param("row", Short.toString(row))
+				.param("column", Short.toString(column)))
+			.andExpect(status().isBadRequest());
+		for(Cell cell : game.getCells()) {
+			if(cell.isHasMine() && Math.abs(cell.getCoordinates().getRow() - row) <= 1
+					&& Math.abs(cell.getCoordinates().getColumn() - column) <= 1) {
+				game.flagCell(cell.getCoordinates());
+			}
+		}
+		performAsync(put("/games/" + game.getId() + "/cells/chord").param("row", Short.toString(row))
+				.param("column", Short.toString(column)))
+			.andExpect(status().isOk())
+			.andExpect(jsonPath("$.status").value(isOneOf("STARTED", "WON")));
+	}
+
+}
@@ -0,0 +1,99 @@
+package com.deviget.minesweeperserver.api;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+
+import org.bson.Document;
+import org.bson.RawBsonDocument;
+import org.bson.codecs.DocumentCodec;
+import org.bson.types.Binary;
+import org.junit.Test;
+
+import com.deviget.minesweeperserver.api.Game.Cell;
+
+public class BoardBinaryCodecTests {
+	
+	/**
+	 * @param cells
+	 * @return cells in legacy layout, a sub-document per cell keyed by "row_column"
+	 */
+	static Document toLegacyDocument(List<Cell> cells) {
+		Document legacy = new Document();
+		for(Cell cell : cells) {
+			Document coordinates = new Document("row", cell.getCoordinates().getRow())
+				.append("column", cell.getCoordinates().getColumn());
+			legacy.put(cell.getCoordinates().getRow() + "_" + cell.getCoordinates().getColumn(),
+				new Document("coordinates", coordinates)
+					.append("isRevealed", cell.isRevealed())
+					.append("flaggedStatus", cell.getFlaggedStatus().name())
+					.append("hasMine", cell.isHasMine())
+					.append("adjMinesNumber", cell.getAdjMinesNumber()));
+		}
+		return legacy;
+	}
+	
+	private static int bsonSize(Document document) {
+		return new RawBsonDocument(document, new DocumentCodec()).getByteBuffer().remaining();
+	}
+	
+	private static Game playedGame(short rows, short columns, int mines) throws WrongParametersException {
+		Game game = Game.createGame(rows, columns, mines);
+		game.getCells().stream().filter(cell -> !cell.isHasMine()).limit(rows).forEach(cell -> {
+			try {
+				if(game.getStatus() == Game.Status.CREATED || game.getStatus() == Game.Status.STARTED) {
+					game.revealCell(cell.getCoordinates());
+				}
+			} catch (WrongParametersException e) {
+				throw new IllegalStateException(e);
+			}
+		});
+		return game;
+	}
+	
+	@Test
+	public void whenBoardIsEncodedThenDecodedBoardIsEqual() throws WrongParametersException {
+		Game game = playedGame((short)17, (short)31, 80);
+		Board board = BoardBinaryCodec.decodeLegacy(toLegacyDocument(game.getCells()));
+		byte[] data = BoardBinaryCodec.encode(board);
+		assertEquals(BoardBinaryCodec.encodedSize(board.size()), data.length);
+		assertEquals(board, BoardBinaryCodec.decode(board.getRows(), board.getColumns(), data));
+	}
+	
+	@Test
+	public void whenBoardIsEncodedThenItIsSmallerAndFasterThanLegacyLayout() throws WrongParametersException {
+		short rows = 100;
+		short columns = 100;
+		Game game = playedGame(rows, columns, 2000);
+		Document legacy = toLegacyDocument(game.getCells());
+		Board board = BoardBinaryCodec.decodeLegacy(legacy);
+		Document binary = new Document("rows", rows).append("columns", columns)
+			.append("format", BoardBinaryCodec.PLANES_FORMAT)
+			.append("data", new Binary(BoardBinaryCodec.encode(board)));
+		
+		int legacySize = bsonSize(legacy);
+		int binarySize = bsonSize(binary);
+		System.out.println("100x100 board BSON size, legacy: " + legacySize + " bytes, binary: " + binarySize + " bytes");
+		assertTrue(binarySize * 50 < legacySize);
+		
+		int iterations = 50;
+		long legacyNanos = 0;
+		long binaryNanos = 0;
+		for(int ix = 0; ix < iterations; ix++) {
+			long start = System.nanoTime();
+			RawBsonDocument raw = new RawBsonDocument(toLegacyDocument(game.getCells()), new DocumentCodec());
+			BoardBinaryCodec.decodeLegacy(raw.decode(new DocumentCodec()));
+			legacyNanos += System.nanoTime() - start;
+			start = System.nanoTime();
+			raw = new RawBsonDocument(new Document("data", new Binary(BoardBinaryCodec.encode(board))), new DocumentCodec());
+			Binary data = (Binary) raw.decode(new DocumentCodec()).get("data");
+			BoardBinaryCodec.decode(rows, columns, data.getData());
+			binaryNanos += System.nanoTime() - start;
+		}
+		System.out.println("100x100 board write+read average, legacy: " + legacyNanos / iterations / 1000
+			+ " us, binary: " + binaryNanos / iterations / 1000 + " us");
+		assertTrue(binaryNanos < legacyNanos);
+	}
+
+}
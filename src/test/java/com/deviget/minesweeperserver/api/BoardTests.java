@@ -0,0 +1,58 @@
+package com.deviget.minesweeperserver.api;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import com.deviget.minesweeperserver.api.Game.Cell;
+import com.deviget.minesweeperserver.api.Game.Cell.FlaggedStatus;
+import com.deviget.minesweeperserver.api.Game.RelativePosition;
+
+public class BoardTests {
+
+	@Test
+	public void whenCellStateIsPackedThenEachFieldIsKeptIndependently() {
+		Board board = new Board((short)3, (short)4);
+		int cellIx = board.indexOf(2, 3);
+		board.setAdjMinesNumber(cellIx, 8);
+		board.setFlaggedStatus(cellIx, FlaggedStatus.QUESTION_MARK);
+		board.setMine(cellIx);
+		assertEquals(8, board.getAdjMinesNumber(cellIx));
+		assertEquals(FlaggedStatus.QUESTION_MARK, board.getFlaggedStatus(cellIx));
+		assertTrue(board.hasMine(cellIx));
+		assertFalse(board.isRevealed(cellIx));
+		board.setRevealed(cellIx);
+		board.setFlaggedStatus(cellIx, FlaggedStatus.NON_FLAGGED);
+		assertTrue(board.isRevealed(cellIx));
+		assertEquals(FlaggedStatus.NON_FLAGGED, board.getFlaggedStatus(cellIx));
+		assertEquals(8, board.getAdjMinesNumber(cellIx));
+	}
+
+	@Test
+	public void whenIndexIsComputedThenCoordinatesAreRecovered() {
+		Board board = new Board((short)3, (short)4);
+		assertEquals(-1, board.indexOf(0, 1));
+		assertEquals(-1, board.indexOf(4, 1));
+		assertEquals(-1, board.indexOf(1, 5));
+		int cellIx = board.indexOf(3, 2);
+		assertEquals(9, cellIx);
+		Cell cell = board.toCell(cellIx);
+		assertEquals(3, cell.getCoordinates().getRow());
+		assertEquals(2, cell.getCoordinates().getColumn());
+	}
+
+	@Test
+	public void whenNeighbourFallsOutsideBoardThenNoIndexIsReturned() {
+		Board board = new Board((short)3, (short)4);
+		int cornerIx = board.indexOf(1, 1);
+		assertEquals(-1, board.neighbour(cornerIx, RelativePosition.TOP_LEFT));
+		assertEquals(-1, board.neighbour(cornerIx, RelativePosition.LEFT_MIDDLE));
+		assertEquals(board.indexOf(2, 2), board.neighbour(cornerIx, RelativePosition.BOTTOM_RIGHT));
+		int rightEdgeIx = board.indexOf(2, 4);
+		assertEquals(-1, board.neighbour(rightEdgeIx, RelativePosition.RIGHT_MIDDLE));
+		assertEquals(board.indexOf(1, 3), board.neighbour(rightEdgeIx, RelativePosition.TOP_LEFT));
+	}
+
+}
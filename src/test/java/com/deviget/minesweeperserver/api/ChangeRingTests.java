@@ -0,0 +1,69 @@
+package com.deviget.minesweeperserver.api;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.BitSet;
+
+import org.junit.Test;
+
+public class ChangeRingTests {
+
+	@Test
+	public void whenVersionsAreHeldThenChangedCellsAreMerged() {
+		ChangeRing ring = new ChangeRing(4, 100);
+		ring.record(1, new int[] {1, 2});
+		ring.record(2, new int[] {2, 3});
+		ring.record(3, new int[] {7});
+
+		assertEquals("{1, 2, 3, 7}", ring.changedSince(0, 3).toString());
+		assertEquals("{2, 3, 7}", ring.changedSince(1, 3).toString());
+		assertTrue(ring.changedSince(3, 3).isEmpty());
+		assertNull(ring.changedSince(4, 3));
+	}
+
+	@Test
+	public void whenVersionIsDroppedThenFullSnapshotIsNeeded() {
+		ChangeRing ring = new ChangeRing(2, 100);
+		ring.record(1, new int[] {1});
+		ring.record(2, new int[] {2});
+		ring.record(3, new int[] {3});
+
+		assertNull(ring.changedSince(0, 3));
+		assertEquals("{2, 3}", ring.changedSince(1, 3).toString());
+	}
+
+	@Test
+	public void whenTooManyCellsAreHeldThenOldestVersionsAreDropped() {
+		ChangeRing ring = new ChangeRing(64, 4);
+		ring.record(1, new int[] {1, 2, 3});
+		ring.record(2, new int[] {4, 5});
+		ring.record(3, new int[] {6, 7});
+
+		assertNull(ring.changedSince(0, 3));
+		assertEquals("{4, 5, 6, 7}", ring.changedSince(1, 3).toString());
+	}
+	
+	@Test
+	public void whenVersionChangesTooManyCellsThenItNeedsFullSnapshot() {
+		ChangeRing ring = new ChangeRing(64, 4);
+		ring.record(1, new int[] {1, 2, 3, 4, 5});
+		ring.record(2, new int[] {6});
+
+		BitSet changed = ring.changedSince(0, 2);
+		assertNull(changed);
+		assertEquals("{6}", ring.changedSince(1, 2).toString());
+	}
+
+	@Test
+	public void whenEveryCellChangedThenOlderVersionsNeedFullSnapshot() {
+		ChangeRing ring = new ChangeRing(4, 100);
+		ring.record(1, null);
+		ring.record(2, new int[] {5});
+
+		assertNull(ring.changedSince(0, 2));
+		assertEquals("{5}", ring.changedSince(1, 2).toString());
+	}
+
+}
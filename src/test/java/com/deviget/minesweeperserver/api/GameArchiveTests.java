@@ -0,0 +1,108 @@
+package com.deviget.minesweeperserver.api;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.ByteArrayOutputStream;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import com.deviget.minesweeperserver.api.GameArchive.Representation;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+
+public class GameArchiveTests {
+
+	private GameMoveLogService gameMoveLog;
+
+	private ObjectMapper objectMapper;
+
+	private GameArchive gameArchive;
+
+	@Before
+	public void setUp() {
+		gameMoveLog = mock(GameMoveLogService.class);
+		objectMapper = Jackson2ObjectMapperBuilder.json().build();
+		objectMapper.disable(SerializationFeature.FAIL_ON_EMPTY_BEANS);
+		gameArchive = new GameArchive(160, gameMoveLog, objectMapper);
+	}
+
+	@Test
+	public void whenBodiesAreAskedForThenEachIsBuiltOnceAndMatchesWhatConvertersWrite() throws Exception {
+		Game game = lostGame(30, 30, 100);
+		gameArchive.put(game);
+		GameArchive.ArchivedGame archived = gameArchive.getIfPresent(game.getId());
+
+		byte[] json = archived.getBody(Representation.JSON);
+		assertArrayEquals(objectMapper.writeValueAsBytes(game), json);
+		assertTrue(archived.getGzippedBody(Representation.JSON).length * 5 < json.length);
+		assertArrayEquals(objectMapper.writer().withAttribute(GameSerializer.ROWS, Boolean.TRUE)
+			.writeValueAsBytes(game), archived.getBody(Representation.ROWS));
+		ByteArrayOutputStream binary = new ByteArrayOutputStream();
+		GameWireCodec.encode(game, binary);
+		assertArrayEquals(binary.toByteArray(), archived.getBody(Representation.BINARY));
+		assertEquals(3L, gameArchive.getBodiesBuilt());
+
+		assertSame(archived.getGzippedBody(Representation.JSON), archived.getGzippedBody(Representation.JSON));
+		assertEquals(3L, gameArchive.getBodiesBuilt());
+	}
+
+	@Test
+	public void whenAcceptIsGivenThenPreferredRepresentationIsChosen() {
+		assertEquals(Representation.JSON, Representation.of(null));
+		assertEquals(Representation.JSON, Representation.of("*/*"));
+		assertEquals(Representation.JSON, Representation.of("application/json"));
+		assertEquals(Representation.ROWS, Representation.of("application/vnd.minesweeper.rows+json, */*;q=0.5"));
+		assertEquals(Representation.BINARY, Representation.of("application/json;q=0.5, application/vnd.minesweeper.binary"));
+		assertEquals(Representation.JSON, Representation.of("application/vnd.minesweeper.binary;q=0, application/*"));
+		assertNull(Representation.of("text/html"));
+	}
+
+	@Test
+	public void whenGameIsNotHeldThenFinishedOneIsRecoveredOnce() throws Exception {
+		Game game = lostGame(8, 8, 10);
+		when(gameMoveLog.recover(game.getId())).thenReturn(game);
+		assertSame(game, gameArchive.get(game.getId()).getGame());
+		assertSame(game, gameArchive.get(game.getId()).getGame());
+		verify(gameMoveLog, times(1)).recover(game.getId());
+		assertEquals(1L, gameArchive.getHits());
+		assertEquals(1L, gameArchive.getMisses());
+
+		Game started = Game.createGame((short)8, (short)8, 10);
+		when(gameMoveLog.recover(started.getId())).thenReturn(started);
+		assertNull(gameArchive.get(started.getId()));
+		when(gameMoveLog.recover("unreachable")).thenThrow(new DataAccessResourceFailureException("down"));
+		assertNull(gameArchive.get("unreachable"));
+		assertEquals(1, gameArchive.size());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void whenGameIsStillBeingPlayedThenItIsNotArchived() throws Exception {
+		gameArchive.put(Game.createGame((short)8, (short)8, 10));
+	}
+
+	@Test
+	public void whenArchiveIsFullThenLeastRecentlyFetchedGamesAreDropped() throws Exception {
+		for(int ix = 0; ix < 400; ix++) {
+			gameArchive.put(lostGame(3, 3, 1));
+		}
+		assertTrue(gameArchive.size() <= 160);
+	}
+
+	private static Game lostGame(int rows, int columns, int mines) throws WrongParametersException {
+		Game game = Game.createGame((short)rows, (short)columns, mines);
+		game.revealCell(game.getCells().stream().filter(cell -> cell.isHasMine()).findFirst().get().getCoordinates());
+		return game;
+	}
+
+}
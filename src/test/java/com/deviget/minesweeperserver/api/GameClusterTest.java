@@ -0,0 +1,157 @@
+/**
+ *
+ */
+package com.deviget.minesweeperserver.api;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.BooleanSupplier;
+
+import org.junit.After;
+import org.junit.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.client.RestTemplate;
+
+import com.deviget.minesweeperserver.MinesweeperServerApplication;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * @author fernando
+ * Runs several clustered nodes on loopback sharing an embedded MongoDB, started by the first one.
+ * Ring membership and handover bookkeeping are covered by {@link GameClusterTests}, here games
+ * are followed across nodes through MongoDB
+ */
+public class GameClusterTest {
+
+	private static final String EMBEDDED_MONGO_AUTO_CONFIGURATION =
+		"org.springframework.boot.autoconfigure.mongo.embedded.EmbeddedMongoAutoConfiguration";
+
+	private static final long TIMEOUT_MILLIS = 20000L;
+
+	private final List<ConfigurableApplicationContext> nodes = new ArrayList<>();
+
+	private final RestTemplate restTemplate = new RestTemplate();
+
+	private final ObjectMapper objectMapper = new ObjectMapper();
+
+	private String mongoPort;
+
+	@After
+	public void tearDown() {
+		//first node runs MongoDB, so it's closed last
+		for(int ix = nodes.size() - 1; ix >= 0; ix--) {
+			nodes.get(ix).close();
+		}
+	}
+
+	@Test
+	public void testGamesAreServedByTheirOwnerWhileNodesJoinAndLeave() throws Exception {
+		ConfigurableApplicationContext nodeA = startNode("node-a");
+		ConfigurableApplicationContext nodeB = startNode("node-b");
+		ConfigurableApplicationContext nodeC = startNode("node-c");
+		awaitRing(3);
+
+		List<String> gameIds = new ArrayList<>();
+		for(int ix = 0; ix < 30; ix++) {
+			ConfigurableApplicationContext creator = nodes.get(ix % 3);
+			ResponseEntity<String> created = restTemplate.postForEntity(urlOf(creator)
+				+ "/games?rows=8&columns=8&mines=10&lazy=true", null, String.class);
+			assertEquals(HttpStatus.CREATED, created.getStatusCode());
+			gameIds.add(objectMapper.readTree(created.getBody()).get("id").asText());
+		}
+
+		for(int ix = 0; ix < gameIds.size(); ix++) {
+			String gameId = gameIds.get(ix);
+			//sent to the next node, forwarded back to the creator
+			ResponseEntity<String> flagged = restTemplate.exchange(urlOf(nodes.get((ix + 1) % 3)) + "/games/" + gameId
+				+ "/cells/flag?row=1&column=1", HttpMethod.PUT, null, String.class);
+			assertEquals(HttpStatus.OK, flagged.getStatusCode());
+			assertFlagged(nodes.get((ix + 2) % 3), gameId);
+		}
+		assertTrue(nodeA.getBean(GameRoutingFilter.class).getForwarded() > 0L);
+
+		//games of a node leaving are written to MongoDB and loaded by the ones left
+		nodeC.close();
+		nodes.remove(nodeC);
+		awaitRing(2);
+		for(String gameId : gameIds) {
+			assertFlagged(nodeA, gameId);
+			assertFlagged(nodeB, gameId);
+		}
+
+		//and a node joining loads the ones it takes from MongoDB
+		ConfigurableApplicationContext nodeD = startNode("node-d");
+		awaitRing(3);
+		for(String gameId : gameIds) {
+			assertFlagged(nodeD, gameId);
+		}
+	}
+
+	private ConfigurableApplicationContext startNode(String nodeId) {
+		SpringApplicationBuilder builder = new SpringApplicationBuilder(MinesweeperServerApplication.class).properties(
+			"server.port=0",
+			"minesweeper.cluster.enabled=true",
+			"minesweeper.cluster.node-id=" + nodeId,
+			"minesweeper.cluster.advertised-host=127.0.0.1",
+			"minesweeper.cluster.heartbeat-interval=200ms",
+			"minesweeper.cluster.node-timeout=2s",
+			"minesweeper.cluster.join-delay=600ms",
+			//several nodes share this JVM
+			"spring.quartz.scheduler-name=" + nodeId,
+			"spring.jmx.enabled=false",
+			"management.metrics.use-global-registry=false");
+		if(mongoPort != null) {
+			builder.properties("spring.autoconfigure.exclude=" + EMBEDDED_MONGO_AUTO_CONFIGURATION,
+				"spring.data.mongodb.host=localhost", "spring.data.mongodb.port=" + mongoPort);
+		}
+		ConfigurableApplicationContext node = builder.run();
+		if(mongoPort == null) {
+			mongoPort = node.getEnvironment().getProperty("local.mongo.port");
+		}
+		nodes.add(node);
+		return node;
+	}
+
+	/**
+	 * Waits until every node sees the given number of members and holds only games it owns
+	 * @param members
+	 * @throws InterruptedException
+	 */
+	private void awaitRing(int members) throws InterruptedException {
+		await(() -> nodes.stream().allMatch(node -> {
+			GameCluster cluster = node.getBean(GameCluster.class);
+			return cluster.getMembers().size() == members && node.getBean(GameStore.class).getAll().stream()
+				.allMatch(game -> cluster.isLocal(game.getId()));
+		}));
+	}
+
+	private static void await(BooleanSupplier condition) throws InterruptedException {
+		long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+		while(!condition.getAsBoolean()) {
+			assertTrue("Cluster didn't settle", System.currentTimeMillis() < deadline);
+			Thread.sleep(100L);
+		}
+	}
+
+	private void assertFlagged(ConfigurableApplicationContext node, String gameId) throws Exception {
+		ResponseEntity<String> game = restTemplate.getForEntity(urlOf(node) + "/games/" + gameId, String.class);
+		assertEquals(HttpStatus.OK, game.getStatusCode());
+		JsonNode firstCell = objectMapper.readTree(game.getBody()).get("cells").get(0);
+		assertEquals(1, firstCell.get("coordinates").get("row").asInt());
+		assertEquals(1, firstCell.get("coordinates").get("column").asInt());
+		assertEquals("RED_FLAG", firstCell.get("flaggedStatus").asText());
+	}
+
+	private static String urlOf(ConfigurableApplicationContext node) {
+		return "http://127.0.0.1:" + node.getEnvironment().getProperty("local.server.port");
+	}
+
+}
@@ -0,0 +1,173 @@
+package com.deviget.minesweeperserver.api;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.bson.types.ObjectId;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.data.mongodb.core.MongoOperations;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+public class GameClusterTests {
+
+	private MongoOperations mongoOperations;
+
+	private GameWriteBehind gameWriteBehind;
+
+	private InMemoryGameStore gameStore;
+
+	private AtomicLong clock;
+
+	private List<ClusterNode> alive;
+
+	private GameCluster gameCluster;
+
+	@Before
+	public void setUp() {
+		mongoOperations = mock(MongoOperations.class);
+		gameWriteBehind = mock(GameWriteBehind.class);
+		GameMoveLogService gameMoveLog = mock(GameMoveLogService.class);
+		gameStore = new InMemoryGameStore(1600, Duration.ofHours(1), mock(GameWriteBehind.class), gameMoveLog,
+			Collections.singletonList(gameMoveLog), new ExpirationWheel(), System::nanoTime);
+		clock = new AtomicLong(1000000L);
+		alive = new ArrayList<>();
+		when(mongoOperations.find(any(Query.class), eq(ClusterNode.class))).thenAnswer(invocation -> new ArrayList<>(alive));
+		gameCluster = new GameCluster(true, "node-a", "127.0.0.1", Duration.ofHours(1), Duration.ofHours(2),
+			Duration.ofSeconds(3), mongoOperations, gameStore, gameWriteBehind, clock::get);
+	}
+
+	@After
+	public void tearDown() {
+		gameCluster.leave();
+	}
+
+	@Test
+	public void whenNodesBeatForTheJoinDelayThenTheyJoinTheRing() {
+		alive.add(new ClusterNode("node-a", "http://127.0.0.1:1", clock.get(), clock.get()));
+		alive.add(new ClusterNode("node-b", "http://127.0.0.1:2", clock.get(), clock.get()));
+		gameCluster.heartbeat();
+		verify(mongoOperations).upsert(any(Query.class), any(Update.class), eq(ClusterNode.class));
+		assertTrue(gameCluster.getMembers().isEmpty());
+		assertTrue(gameCluster.isLocal(idOwnedBy("node-b", "node-a", "node-b")));
+
+		clock.addAndGet(3000L);
+		gameCluster.heartbeat();
+		assertEquals(Arrays.asList("node-a", "node-b"), gameCluster.getMembers());
+		String remoteId = idOwnedBy("node-b", "node-a", "node-b");
+		assertFalse(gameCluster.isLocal(remoteId));
+		assertEquals("http://127.0.0.1:2", gameCluster.ownerUrlOf(remoteId));
+		String localId = idOwnedBy("node-a", "node-a", "node-b");
+		assertTrue(gameCluster.isLocal(localId));
+		assertEquals(null, gameCluster.ownerUrlOf(localId));
+		for(int ix = 0; ix < 100; ix++) {
+			assertTrue(gameCluster.isLocal(gameCluster.newGameId().toHexString()));
+		}
+		assertTrue(gameCluster.isLocal("not an id"));
+	}
+
+	@Test
+	public void whenNodeJoinsThenGamesItOwnsAreHandedOver() throws WrongParametersException {
+		alive.add(new ClusterNode("node-a", "http://127.0.0.1:1", 0L, clock.get()));
+		gameCluster.heartbeat();
+		List<Game> games = new ArrayList<>();
+		for(int ix = 0; ix < 200; ix++) {
+			Game game = Game.createGame((short)3, (short)3, 1, true, gameCluster.newGameId());
+			games.add(game);
+			gameStore.put(game);
+		}
+		assertEquals(200, gameStore.size());
+
+		alive.add(new ClusterNode("node-b", "http://127.0.0.1:2", 0L, clock.get()));
+		gameCluster.heartbeat();
+		long handedOver = gameCluster.getHandedOver();
+		assertTrue("Handed over " + handedOver, handedOver > 40 && handedOver < 160);
+		assertEquals(200 - handedOver, gameStore.size());
+		verify(gameWriteBehind, times((int)handedOver)).enqueue(any(Game.class));
+		verify(gameWriteBehind).flushAll();
+		for(Game game : gameStore.getAll()) {
+			assertTrue(gameCluster.isLocal(game.getId()));
+		}
+		for(Game game : games) {
+			assertEquals(!gameCluster.isLocal(game.getId()), game.isFenced());
+			if(game.isFenced()) {
+				try {
+					game.flagCell(new Game.Cell.Coordinates((short)1, (short)1));
+					fail("Moves on a game handed over must be refused");
+				} catch (GameHandedOverException e) {
+					//new owner applies them
+				}
+			}
+		}
+	}
+
+	@Test
+	public void whenNodeLeavesThenEveryGameIsHandedOver() throws WrongParametersException {
+		alive.add(new ClusterNode("node-a", "http://127.0.0.1:1", 0L, clock.get()));
+		alive.add(new ClusterNode("node-b", "http://127.0.0.1:2", 0L, clock.get()));
+		gameCluster.start("http://127.0.0.1:1");
+		gameCluster.heartbeat();
+		for(int ix = 0; ix < 20; ix++) {
+			gameStore.put(Game.createGame((short)3, (short)3, 1, true, gameCluster.newGameId()));
+		}
+		gameCluster.leave();
+		verify(mongoOperations).remove(any(Query.class), eq(ClusterNode.class));
+		assertEquals(Collections.singletonList("node-b"), gameCluster.getMembers());
+		assertEquals(0, gameStore.size());
+		assertEquals(20L, gameCluster.getHandedOver());
+		verify(gameWriteBehind, times(20)).enqueue(any(Game.class));
+		verify(gameWriteBehind).flushAll();
+	}
+
+	@Test
+	public void whenNodeCannotBeatForTheNodeTimeoutThenItIsFenced() {
+		alive.add(new ClusterNode("node-a", "http://127.0.0.1:1", 0L, clock.get()));
+		gameCluster.start("http://127.0.0.1:1");
+		//first beat is right away, next one an hour later
+		verify(mongoOperations, timeout(5000L)).find(any(Query.class), eq(ClusterNode.class));
+		assertFalse(gameCluster.isFenced());
+		when(mongoOperations.find(any(Query.class), eq(ClusterNode.class)))
+			.thenThrow(new DataAccessResourceFailureException("down"));
+		clock.addAndGet(Duration.ofHours(1).toMillis());
+		gameCluster.heartbeat();
+		assertFalse(gameCluster.isFenced());
+		clock.addAndGet(Duration.ofHours(1).toMillis() + 1L);
+		gameCluster.heartbeat();
+		assertTrue(gameCluster.isFenced());
+	}
+
+	/**
+	 * @param owner
+	 * @param nodes
+	 * @return id of a game given node owns
+	 */
+	private static String idOwnedBy(String owner, String... nodes) {
+		HashRing ring = new HashRing(Arrays.asList(nodes));
+		while(true) {
+			ObjectId gameId = ObjectId.get();
+			if(owner.equals(ring.ownerOf(gameId))) {
+				return gameId.toHexString();
+			}
+		}
+	}
+
+}
@@ -0,0 +1,175 @@
+package com.deviget.minesweeperserver.api;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.deviget.minesweeperserver.api.Game.Cell;
+import com.deviget.minesweeperserver.api.Game.RevealResult;
+
+/**
+ * Stress suite, many threads race moves on the same games and every invariant
+ * must hold once they are done
+ */
+public class GameConcurrencyTests {
+
+	private static final int THREADS = 8;
+
+	private static final int GAMES = 30;
+
+	private static final int MOVES_PER_THREAD = 300;
+
+	private ExecutorService executor;
+
+	@Before
+	public void setUp() {
+		executor = Executors.newFixedThreadPool(THREADS + 1);
+	}
+
+	@After
+	public void tearDown() {
+		executor.shutdownNow();
+	}
+
+	/**
+	 * Counts of what a race on a single game produced
+	 */
+	private static class Outcome {
+
+		private final AtomicInteger moves = new AtomicInteger();
+
+		private final AtomicInteger finishes = new AtomicInteger();
+
+	}
+
+	/**
+	 * @param game
+	 * @param outcome
+	 * @param start - released once every thread is ready
+	 * @return plays random moves until game is finished or moves run out
+	 */
+	private static Callable<Void> player(Game game, Outcome outcome, CountDownLatch start) {
+		return () -> {
+			ThreadLocalRandom rnd = ThreadLocalRandom.current();
+			start.await();
+			for(int ix = 0; ix < MOVES_PER_THREAD; ix++) {
+				Cell.Coordinates coord = new Cell.Coordinates((short)(1 + rnd.nextInt(game.getRows())),
+					(short)(1 + rnd.nextInt(game.getColumns())));
+				try {
+					int op = rnd.nextInt(8);
+					if(op == 0) {
+						game.flagCell(coord);
+						outcome.moves.incrementAndGet();
+						continue;
+					}
+					RevealResult result = (op == 1 ? game.chordCell(coord) : game.revealCell(coord));
+					outcome.moves.incrementAndGet();
+					if(result.getStatus() != Game.Status.STARTED) {
+						outcome.finishes.incrementAndGet();
+					}
+				} catch (WrongParametersException e) {
+					//flagging a revealed cell or chording a wrong one
+				} catch (IllegalArgumentException e) {
+					//game finished by another thread
+					return null;
+				}
+			}
+			return null;
+		};
+	}
+
+	@Test
+	public void whenMovesRaceOnAGameThenItIsFinishedOnceAndStateIsConsistent() throws Exception {
+		for(int gameIx = 0; gameIx < GAMES; gameIx++) {
+			Game game = Game.createGame((short)16, (short)16, 30, gameIx % 2 == 0);
+			Outcome outcome = new Outcome();
+			CountDownLatch start = new CountDownLatch(1);
+			List<Future<?>> futures = new ArrayList<>();
+			for(int ix = 0; ix < THREADS; ix++) {
+				futures.add(executor.submit(player(game, outcome, start)));
+			}
+			//expiration races moves as well
+			futures.add(executor.submit(() -> {
+				start.await();
+				Thread.sleep(ThreadLocalRandom.current().nextInt(3));
+				if(game.expire(LocalDateTime.now().plus(Game.MAX_DURATION).plusSeconds(1))) {
+					outcome.finishes.incrementAndGet();
+				}
+				return null;
+			}));
+			start.countDown();
+			for(Future<?> future : futures) {
+				future.get(30, TimeUnit.SECONDS);
+			}
+
+			assertFalse(game.getStatus() == Game.Status.CREATED || game.getStatus() == Game.Status.STARTED);
+			assertEquals(1, outcome.finishes.get());
+			assertEquals(outcome.moves.get(), game.getMoveCount());
+			//every move and the expiration, if it won, bumped version once
+			assertEquals(game.getMoveCount() + (game.getStatus() == Game.Status.EXPIRED ? 1 : 0), game.getVersion());
+			long revealed = game.getCells().stream().filter(Cell::isRevealed).count();
+			assertEquals(game.getRows() * game.getColumns() - game.getMines() - game.getSafeCellsLeft(), revealed);
+			if(game.getStatus() == Game.Status.WON) {
+				assertEquals(0, game.getSafeCellsLeft());
+			}
+		}
+	}
+
+	@Test
+	public void whenFinishedGamesAreRemovedConcurrentlyThenOnlyThatGameIsRemoved() throws Exception {
+		GameMoveLogService gameMoveLog = mock(GameMoveLogService.class);
+		InMemoryGameStore store = new InMemoryGameStore(1600, Duration.ofHours(1), mock(GameWriteBehind.class), gameMoveLog,
+			Collections.singletonList(gameMoveLog), new ExpirationWheel(), System::nanoTime);
+		List<Game> games = new ArrayList<>();
+		for(int ix = 0; ix < GAMES; ix++) {
+			Game game = Game.createGame((short)8, (short)8, 10);
+			games.add(game);
+			store.put(game);
+		}
+		CountDownLatch start = new CountDownLatch(1);
+		AtomicInteger removals = new AtomicInteger();
+		List<Future<?>> futures = new ArrayList<>();
+		for(int ix = 0; ix < THREADS; ix++) {
+			futures.add(executor.submit(() -> {
+				start.await();
+				for(Game game : games) {
+					if(store.remove(game.getId(), game)) {
+						removals.incrementAndGet();
+					}
+				}
+				return null;
+			}));
+		}
+		start.countDown();
+		for(Future<?> future : futures) {
+			future.get(30, TimeUnit.SECONDS);
+		}
+
+		assertEquals(GAMES, removals.get());
+		for(Game game : games) {
+			assertNull(store.getIfPresent(game.getId()));
+		}
+		assertTrue(store.size() == 0);
+	}
+
+}
@@ -0,0 +1,130 @@
+package com.deviget.minesweeperserver.api;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertTrue;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+
+import org.junit.After;
+import org.junit.Test;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import com.deviget.minesweeperserver.api.Game.Cell;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+public class GameEventHubTests {
+
+	private GameEventHub hub;
+
+	@After
+	public void tearDown() {
+		hub.shutdown();
+	}
+
+	private static void awaitCondition(java.util.function.BooleanSupplier condition) throws InterruptedException {
+		long deadline = System.currentTimeMillis() + 5000;
+		while(!condition.getAsBoolean() && System.currentTimeMillis() < deadline) {
+			Thread.sleep(10);
+		}
+	}
+
+	@Test
+	public void whenGameHasNoSubscribersThenNoEventIsSent() throws WrongParametersException {
+		hub = new GameEventHub(Jackson2ObjectMapperBuilder.json().build(), 1, 4, Duration.ofMinutes(1));
+		Game game = Game.createGame((short)8, (short)8, 10);
+		game.setListener(hub);
+		game.flagCell(new Cell.Coordinates((short)1, (short)1));
+
+		assertEquals(0, hub.getSent());
+	}
+
+	@Test
+	public void whenSubscriberIsSlowThenItIsDropped() throws Exception {
+		CountDownLatch release = new CountDownLatch(1);
+		ObjectMapper blockingMapper = new ObjectMapper() {
+			private static final long serialVersionUID = 1L;
+			@Override
+			public String writeValueAsString(Object value) throws JsonProcessingException {
+				try {
+					//stands for a client not reading its stream
+					release.await();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+				return "{}";
+			}
+		};
+		hub = new GameEventHub(blockingMapper, 1, 2, Duration.ofMinutes(1));
+		Game game = Game.createGame((short)8, (short)8, 10);
+		game.setListener(hub);
+		hub.subscribe(game);
+		assertEquals(1, hub.getSubscribers());
+		for(int ix = 0; ix < 4; ix++) {
+			//flagging never blocks on the slow subscriber
+			game.flagCell(new Cell.Coordinates((short)1, (short)1));
+		}
+
+		assertEquals(1, hub.getDropped());
+		assertEquals(0, hub.getSubscribers());
+		release.countDown();
+	}
+
+	@Test
+	public void whenSnapshotIsPublishedThenACopyIsSerializedByDispatcher() throws Exception {
+		List<Game> serialized = new CopyOnWriteArrayList<>();
+		List<String> threads = new CopyOnWriteArrayList<>();
+		ObjectMapper recordingMapper = new ObjectMapper() {
+			private static final long serialVersionUID = 1L;
+			@Override
+			public String writeValueAsString(Object value) throws JsonProcessingException {
+				if(value instanceof Game) {
+					serialized.add((Game) value);
+					threads.add(Thread.currentThread().getName());
+				}
+				return "{}";
+			}
+		};
+		hub = new GameEventHub(recordingMapper, 1, 16, Duration.ofMinutes(1));
+		//board isn't allocated until first move, so it changes every cell
+		Game game = Game.createGame((short)8, (short)8, 10, true);
+		game.setListener(hub);
+		hub.subscribe(game);
+		game.flagCell(new Cell.Coordinates((short)1, (short)1));
+		game.flagCell(new Cell.Coordinates((short)2, (short)2));
+
+		awaitCondition(() -> hub.getSent() == 4);
+		assertEquals(1, serialized.size());
+		assertNotSame(game, serialized.get(0));
+		assertTrue(threads.get(0).startsWith("game-events-"));
+		//as it was published, later flag isn't there
+		assertEquals(1L, serialized.get(0).getVersion());
+		assertEquals(Cell.FlaggedStatus.RED_FLAG, serialized.get(0).getBoard().getFlaggedStatus(0));
+		assertEquals(Cell.FlaggedStatus.NON_FLAGGED, serialized.get(0).getBoard().getFlaggedStatus(9));
+		assertEquals(Cell.FlaggedStatus.RED_FLAG, game.getBoard().getFlaggedStatus(9));
+		//initial status, snapshot, status change and flag
+		assertEquals(4, hub.getSent());
+		assertEquals(1, hub.getSubscribers());
+	}
+
+	@Test
+	public void whenGameEndsThenSubscriptionIsClosed() throws Exception {
+		hub = new GameEventHub(Jackson2ObjectMapperBuilder.json().build(), 2, 16, Duration.ofMinutes(1));
+		Game game = Game.createGame((short)8, (short)8, 10);
+		game.setListener(hub);
+		hub.subscribe(game);
+		hub.subscribe(game);
+		Cell mine = game.getCells().stream().filter(cell -> cell.isHasMine()).findFirst().get();
+		game.revealCell(mine.getCoordinates());
+
+		awaitCondition(() -> hub.getSubscribers() == 0);
+		assertEquals(0, hub.getSubscribers());
+		//initial status, reveal and status change for each subscriber
+		assertEquals(6, hub.getSent());
+	}
+
+}
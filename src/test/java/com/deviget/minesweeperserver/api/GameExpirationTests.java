@@ -0,0 +1,98 @@
+package com.deviget.minesweeperserver.api;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+public class GameExpirationTests {
+	
+	private GameWriteBehind gameWriteBehind;
+	
+	private GameMoveLogService gameMoveLog;
+	
+	private ExpirationWheel expirationWheel;
+	
+	private InMemoryGameStore gameStore;
+	
+	private GameArchive gameArchive;
+	
+	private GameExpirationService expirationService;
+	
+	@Before
+	public void setUp() {
+		gameWriteBehind = mock(GameWriteBehind.class);
+		gameMoveLog = mock(GameMoveLogService.class);
+		expirationWheel = new ExpirationWheel();
+		gameStore = new InMemoryGameStore(1600, Duration.ofHours(1), gameWriteBehind, gameMoveLog, Collections.singletonList(gameMoveLog), expirationWheel, System::nanoTime);
+		gameArchive = new GameArchive(160, gameMoveLog, new ObjectMapper());
+		expirationService = new GameExpirationService(expirationWheel, gameStore, gameWriteBehind, gameArchive);
+	}
+	
+	@Test
+	public void whenDeadlineIsReachedThenOnlyDueEntriesAreDrained() {
+		List<String> due = new ArrayList<>();
+		expirationWheel.advance(1000L, due::add);
+		expirationWheel.schedule("first", 1010L);
+		expirationWheel.schedule("second", 1020L);
+		//same slot as first, one round later
+		expirationWheel.schedule("later", 1010L + 1024L);
+		expirationWheel.advance(1009L, due::add);
+		assertTrue(due.isEmpty());
+		expirationWheel.advance(1015L, due::add);
+		assertEquals(1, due.size());
+		assertEquals("first", due.get(0));
+		expirationWheel.advance(1020L + 1024L, due::add);
+		assertEquals(3, due.size());
+		assertEquals(0, expirationWheel.size());
+	}
+	
+	@Test
+	public void whenDeadlineAlreadyElapsedThenEntryIsDueOnNextAdvance() {
+		List<String> due = new ArrayList<>();
+		expirationWheel.advance(1000L, due::add);
+		expirationWheel.schedule("overdue", 900L);
+		expirationWheel.advance(1001L, due::add);
+		assertEquals(1, due.size());
+	}
+	
+	@Test
+	public void whenMaxDurationElapsesThenGameIsExpiredPersistedArchivedAndEvicted() throws WrongParametersException {
+		Game game = Game.createGame((short)3, (short)3, 1);
+		gameStore.put(game);
+		expirationService.sweep(LocalDateTime.now());
+		assertSame(game, gameStore.getIfPresent(game.getId()));
+		
+		expirationService.sweep(LocalDateTime.now().plus(Game.MAX_DURATION).plusSeconds(1));
+		assertEquals(Game.Status.EXPIRED, game.getStatus());
+		assertNull(gameStore.getIfPresent(game.getId()));
+		assertEquals(1L, expirationService.getExpired());
+		verify(gameWriteBehind).enqueue(game);
+		assertSame(game, gameArchive.getIfPresent(game.getId()).getGame());
+	}
+	
+	@Test
+	public void whenGameIsFinishedThenItIsNotExpired() throws WrongParametersException {
+		Game game = Game.createGame((short)3, (short)3, 4);
+		game.revealCell(game.getCells().stream().filter(cell -> cell.isHasMine()).findFirst().get().getCoordinates());
+		gameStore.put(game);
+		expirationService.sweep(LocalDateTime.now().plus(Game.MAX_DURATION).plusSeconds(1));
+		assertEquals(Game.Status.LOST, game.getStatus());
+		verify(gameWriteBehind, never()).enqueue(game);
+	}
+
+}
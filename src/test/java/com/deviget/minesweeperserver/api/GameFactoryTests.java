@@ -1,6 +1,7 @@
 package com.deviget.minesweeperserver.api;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 
 import java.util.List;
 
@@ -52,4 +53,53 @@ public class GameFactoryTests {
 		System.out.println(game);
 	}
 
+	@Test
+	public void whenGameIsCreatedThenExactNumberOfMinesIsPlacedAndCounted() throws WrongParametersException {
+		short rows = 16;
+		short columns = 30;
+		int mines = 99;
+		for(int ix = 0; ix < 50; ix++) {
+			Game game = Game.createGame(rows, columns, mines);
+			List<Cell> gameCells = game.getCells();
+			assertEquals((long)mines, gameCells.stream().filter(c -> c.isHasMine()).count());
+			for(Cell cell : gameCells) {
+				long adjMines = gameCells.stream().filter(c -> c.isHasMine()
+					&& Math.abs(c.getCoordinates().getRow() - cell.getCoordinates().getRow()) <= 1
+					&& Math.abs(c.getCoordinates().getColumn() - cell.getCoordinates().getColumn()) <= 1
+					&& !c.equals(cell)).count();
+				assertEquals(adjMines, cell.getAdjMinesNumber());
+			}
+		}
+	}
+	
+	@Test
+	public void whenManyGamesAreCreatedThenMinesAreSpreadUniformly() throws WrongParametersException {
+		short rows = 10;
+		short columns = 10;
+		int mines = 10;
+		int games = 2000;
+		int[] minesPerRow = new int[rows];
+		for(int ix = 0; ix < games; ix++) {
+			Game game = Game.createGame(rows, columns, mines);
+			game.getCells().stream().filter(c -> c.isHasMine())
+				.forEach(c -> minesPerRow[c.getCoordinates().getRow() - 1]++);
+		}
+		//each row is expected to hold a tenth of all mines placed
+		int expected = games * mines / rows;
+		for(int rowMines : minesPerRow) {
+			assertTrue("Row got " + rowMines + " mines, expected about " + expected,
+				Math.abs(rowMines - expected) < expected / 5);
+		}
+	}
+
+	@Test
+	public void whenLazyGameIsCreatedThenNoCellsAreGenerated() throws WrongParametersException {
+		short rows = 500;
+		short columns = 500;
+		int mines = 1000;
+		Game game = Game.createGame(rows, columns, mines, true);
+		assertTrue(game.getCells().isEmpty());
+		assertEquals(rows * columns - mines, game.getSafeCellsLeft());
+	}
+
 }
@@ -0,0 +1,114 @@
+package com.deviget.minesweeperserver.api;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Optional;
+
+import org.bson.Document;
+import org.bson.types.Binary;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.data.mongodb.core.convert.MappingMongoConverter;
+import org.springframework.data.mongodb.core.convert.NoOpDbRefResolver;
+import org.springframework.data.mongodb.core.mapping.MongoMappingContext;
+
+import com.deviget.minesweeperserver.api.Game.Cell;
+
+public class GameMappingTests {
+	
+	private static final String[] LEGACY_FIELDS = {"_id", "_class", "rows", "columns", "mines", "status", "createdBy",
+		"createdAt", "startedAt", "timePlayed"};
+	
+	private MappingMongoConverter converter;
+	
+	@Before
+	public void setUp() {
+		MongoCustomConversions conversions = new MongoDBConfig().getCustomConversions();
+		MongoMappingContext mappingContext = new MongoMappingContext();
+		mappingContext.setSimpleTypeHolder(conversions.getSimpleTypeHolder());
+		mappingContext.afterPropertiesSet();
+		converter = new MappingMongoConverter(NoOpDbRefResolver.INSTANCE, mappingContext);
+		converter.setCustomConversions(conversions);
+		converter.afterPropertiesSet();
+	}
+	
+	@Test
+	public void whenGameIsMappedThenSafeCellsLeftSurvivesReload() throws WrongParametersException {
+		short rows = 8;
+		short columns = 8;
+		int mines = 9;
+		Game game = Game.createGame(rows, columns, mines);
+		Optional<Cell> cellOpt = game.getCells().stream().filter(
+			cell -> !cell.isHasMine() && cell.getAdjMinesNumber() > 0).findFirst();
+		game.revealCell(cellOpt.get().getCoordinates());
+		
+		Document document = new Document();
+		converter.write(game, document);
+		Game reloaded = converter.read(Game.class, document);
+		
+		assertEquals(game.getSafeCellsLeft(), reloaded.getSafeCellsLeft());
+		assertEquals(game.getStatus(), reloaded.getStatus());
+		assertEquals(game.getCells().toString(), reloaded.getCells().toString());
+	}
+	
+	@Test
+	public void whenSafeCellsLeftIsMissingThenItIsRecomputedFromBoard() throws WrongParametersException {
+		short rows = 8;
+		short columns = 8;
+		int mines = 9;
+		Game game = Game.createGame(rows, columns, mines);
+		
+		Document document = new Document();
+		converter.write(game, document);
+		document.remove("safeCellsLeft");
+		Game reloaded = converter.read(Game.class, document);
+		
+		assertEquals(game.getSafeCellsLeft(), reloaded.getSafeCellsLeft());
+	}
+
+	@Test
+	public void whenGameIsMappedThenBoardIsStoredAsSingleBinaryField() throws WrongParametersException {
+		Game game = Game.createGame((short)100, (short)100, 1000);
+		
+		Document document = new Document();
+		converter.write(game, document);
+		
+		Document cells = (Document) document.get("cells");
+		assertEquals(4, cells.size());
+		assertTrue(cells.get("data") instanceof Binary);
+	}
+	
+	@Test
+	public void whenLegacyGameIsReadThenCellsAreMigrated() throws WrongParametersException {
+		Game game = Game.createGame((short)8, (short)8, 9);
+		Optional<Cell> cellOpt = game.getCells().stream().filter(cell -> !cell.isHasMine()).findFirst();
+		game.revealCell(cellOpt.get().getCoordinates());
+		Optional<Cell> hiddenOpt = game.getCells().stream().filter(cell -> !cell.isRevealed()).findFirst();
+		game.flagCell(hiddenOpt.get().getCoordinates());
+		
+		Document written = new Document();
+		converter.write(game, written);
+		//only fields games had before the board was packed, cells with a sub-document per cell
+		Document document = new Document();
+		for(String field : LEGACY_FIELDS) {
+			if(written.containsKey(field)) {
+				document.put(field, written.get(field));
+			}
+		}
+		document.put("cells", BoardBinaryCodecTests.toLegacyDocument(game.getCells()));
+		assertEquals(new HashSet<>(Arrays.asList("_id", "_class", "rows", "columns", "mines", "cells", "status",
+			"createdBy", "createdAt", "startedAt", "timePlayed")), document.keySet());
+		Game reloaded = converter.read(Game.class, document);
+		
+		assertEquals(game.getCells().toString(), reloaded.getCells().toString());
+		assertEquals(game.getSafeCellsLeft(), reloaded.getSafeCellsLeft());
+		assertEquals(game.getStatus(), reloaded.getStatus());
+		assertTrue(reloaded.isMinesPlaced());
+		assertEquals(0L, reloaded.getSeed());
+		assertEquals(0L, reloaded.getVersion());
+	}
+
+}
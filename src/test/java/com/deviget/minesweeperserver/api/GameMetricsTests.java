@@ -0,0 +1,115 @@
+package com.deviget.minesweeperserver.api;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.lang.management.ManagementFactory;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.deviget.minesweeperserver.api.Game.Cell;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.micrometer.prometheus.PrometheusConfig;
+import io.micrometer.prometheus.PrometheusMeterRegistry;
+
+public class GameMetricsTests {
+
+	private GameStore gameStore;
+
+	private GameShards gameShards;
+
+	private GameWriteBehind gameWriteBehind;
+
+	private MeterRegistry registry;
+
+	@Before
+	public void setUp() {
+		GameMoveLogService gameMoveLog = mock(GameMoveLogService.class);
+		gameWriteBehind = mock(GameWriteBehind.class);
+		gameStore = new InMemoryGameStore(1600, Duration.ofHours(1), gameWriteBehind, gameMoveLog,
+			Collections.singletonList(gameMoveLog), new ExpirationWheel(), System::nanoTime);
+		gameShards = new GameShards(2, 16);
+		registry = new SimpleMeterRegistry();
+		new GameMetrics(registry, gameStore, gameWriteBehind, gameMoveLog, mock(GameEventHub.class), gameShards,
+			mock(GameExpirationService.class), mock(GameArchive.class), mock(GameCluster.class),
+			mock(GameRoutingFilter.class), mock(OffHeapBoardArena.class));
+	}
+
+	@After
+	public void tearDown() {
+		gameShards.shutdown();
+	}
+
+	@Test
+	public void whenGamesAreHeldThenActiveGamesAreCountedByStatus() throws Exception {
+		Game created = Game.createGame((short)8, (short)8, 10);
+		Game started = Game.createGame((short)8, (short)8, 10);
+		started.flagCell(new Cell.Coordinates((short)1, (short)1));
+		gameStore.put(created);
+		gameStore.put(started);
+
+		assertEquals(2d, registry.get("minesweeper.store.size").gauge().value(), 0d);
+		assertEquals(1d, registry.get("minesweeper.games.active").tag("status", "CREATED").gauge().value(), 0d);
+		assertEquals(1d, registry.get("minesweeper.games.active").tag("status", "STARTED").gauge().value(), 0d);
+		assertEquals(0d, registry.get("minesweeper.games.active").tag("status", "WON").gauge().value(), 0d);
+		assertEquals(2, registry.get("minesweeper.shards.queue-depth").gauges().size());
+	}
+
+	@Test
+	public void whenGamesAreFlushedThenFlushLatencyIsReadFromWriteBehind() {
+		when(gameWriteBehind.getFlushes()).thenReturn(4L);
+		when(gameWriteBehind.getFlushNanos()).thenReturn(TimeUnit.MILLISECONDS.toNanos(20L));
+
+		assertEquals(4d, registry.get("minesweeper.write-behind.flush").functionTimer().count(), 0d);
+		assertEquals(5d, registry.get("minesweeper.write-behind.flush").functionTimer().mean(TimeUnit.MILLISECONDS), 0d);
+	}
+
+	@Test
+	public void whenMovesAreAppliedInBatchThenTheyAreTimedWithTheirCascade() {
+		GameMetrics gameMetrics = new GameMetrics(registry);
+		gameMetrics.recordMoves(TimeUnit.MICROSECONDS.toNanos(30L), 12);
+		gameMetrics.recordMoves(TimeUnit.MICROSECONDS.toNanos(10L), 0);
+
+		assertEquals(2L, registry.get("minesweeper.game.operation").tag("operation", "moves").timer().count());
+		assertEquals(40d, registry.get("minesweeper.game.operation").tag("operation", "moves").timer()
+			.totalTime(TimeUnit.MICROSECONDS), 0d);
+		assertEquals(12d, registry.get("minesweeper.game.cascade").tag("operation", "moves").summary().totalAmount(), 0d);
+		assertEquals(0L, registry.get("minesweeper.game.operation").tag("operation", "reveal").timer().count());
+	}
+
+	@Test
+	public void whenMovesAreRecordedThenNothingIsAllocated() {
+		GameMetrics gameMetrics = new GameMetrics(new PrometheusMeterRegistry(PrometheusConfig.DEFAULT));
+		com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+		long threadId = Thread.currentThread().getId();
+		for(int ix = 0; ix < 100000; ix++) {
+			record(gameMetrics, ix);
+		}
+
+		long before = threads.getThreadAllocatedBytes(threadId);
+		for(int ix = 0; ix < 100000; ix++) {
+			record(gameMetrics, ix);
+		}
+		long allocated = threads.getThreadAllocatedBytes(threadId) - before;
+
+		assertTrue("Recording allocated " + allocated + " bytes", allocated < 1024L);
+	}
+
+	private static void record(GameMetrics gameMetrics, int ix) {
+		gameMetrics.recordCreate(ix);
+		gameMetrics.recordReveal(ix, ix % 64);
+		gameMetrics.recordChord(ix, ix % 8);
+		gameMetrics.recordFlag(ix);
+		gameMetrics.recordMoves(ix, ix % 128);
+	}
+
+}
@@ -0,0 +1,224 @@
+package com.deviget.minesweeperserver.api;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Random;
+
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.BulkOperations.BulkMode;
+import org.springframework.data.mongodb.core.MongoOperations;
+import org.springframework.data.mongodb.core.convert.MappingMongoConverter;
+import org.springframework.data.mongodb.core.convert.NoOpDbRefResolver;
+import org.springframework.data.mongodb.core.mapping.MongoMappingContext;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import com.deviget.minesweeperserver.api.Game.Cell;
+
+public class GameMoveLogTests {
+
+	private MappingMongoConverter converter;
+
+	private MongoOperations mongoOperations;
+
+	private BulkOperations bulkOperations;
+
+	private BulkOperations trimOperations;
+
+	private GameRepository gameRepository;
+
+	private GameWriteBehind gameWriteBehind;
+
+	private GameMoveLogService moveLog;
+
+	@Before
+	public void setUp() {
+		MongoCustomConversions conversions = new MongoDBConfig().getCustomConversions();
+		MongoMappingContext mappingContext = new MongoMappingContext();
+		mappingContext.setSimpleTypeHolder(conversions.getSimpleTypeHolder());
+		mappingContext.afterPropertiesSet();
+		converter = new MappingMongoConverter(NoOpDbRefResolver.INSTANCE, mappingContext);
+		converter.setCustomConversions(conversions);
+		converter.afterPropertiesSet();
+		mongoOperations = mock(MongoOperations.class);
+		bulkOperations = mock(BulkOperations.class);
+		when(mongoOperations.getConverter()).thenReturn(converter);
+		when(mongoOperations.bulkOps(eq(BulkMode.ORDERED), eq(GameMoveLog.class))).thenReturn(bulkOperations);
+		trimOperations = mock(BulkOperations.class);
+		when(mongoOperations.bulkOps(eq(BulkMode.UNORDERED), eq(GameMoveLog.class))).thenReturn(trimOperations);
+		gameRepository = mock(GameRepository.class);
+		gameWriteBehind = mock(GameWriteBehind.class);
+		moveLog = new GameMoveLogService(mongoOperations, gameRepository, gameWriteBehind, 2, 100, 1000);
+	}
+
+	@After
+	public void tearDown() {
+		moveLog.shutdown();
+	}
+
+	/**
+	 * Plays random moves until game is finished or moves run out
+	 * @param game
+	 * @param moves - maximum moves tried
+	 * @param rnd
+	 */
+	private static void play(Game game, int moves, Random rnd) {
+		for(int ix = 0; ix < moves && (game.getStatus() == Game.Status.CREATED || game.getStatus() == Game.Status.STARTED); ix++) {
+			Cell.Coordinates coord = new Cell.Coordinates((short)(1 + rnd.nextInt(game.getRows())),
+				(short)(1 + rnd.nextInt(game.getColumns())));
+			try {
+				int op = rnd.nextInt(6);
+				if(op == 0) {
+					game.flagCell(coord);
+				} else if(op == 1) {
+					game.chordCell(coord);
+				} else {
+					game.revealCell(coord);
+				}
+			} catch (WrongParametersException e) {
+				//flagging a revealed cell or chording a wrong one, not logged
+			}
+		}
+	}
+
+	private static void assertSameState(Game expected, Game actual) {
+		assertEquals(expected.getId(), actual.getId());
+		assertEquals(expected.getStatus(), actual.getStatus());
+		assertEquals(expected.getMoveCount(), actual.getMoveCount());
+		assertEquals(expected.getSafeCellsLeft(), actual.getSafeCellsLeft());
+		assertEquals(expected.getStartedAt(), actual.getStartedAt());
+		assertEquals(expected.getTimePlayed(), actual.getTimePlayed());
+		assertEquals(expected.getCells().toString(), actual.getCells().toString());
+	}
+
+	@Test
+	public void whenLogIsReplayedThenGameIsRebuiltExactly() throws WrongParametersException {
+		Random rnd = new Random(7);
+		for(boolean lazy : new boolean[] {false, true}) {
+			for(int ix = 0; ix < 50; ix++) {
+				Game game = Game.createGame((short)9, (short)9, 10, lazy);
+				GameMoveLog log = GameMoveLog.headerOf(game);
+				game.setListener((changed, move) -> log.getMoves().add(move));
+				play(game, 40, rnd);
+
+				Game rebuilt = log.createGame();
+				for(GameMove move : log.getMoves()) {
+					rebuilt.replay(move);
+				}
+				assertSameState(game, rebuilt);
+			}
+		}
+	}
+
+	@Test
+	public void whenRecoveredThenOnlyMovesAfterSnapshotAreReplayed() throws WrongParametersException {
+		Game game = Game.createGame((short)16, (short)16, 20, true);
+		GameMoveLog log = GameMoveLog.headerOf(game);
+		game.setListener((changed, move) -> log.getMoves().add(move));
+		Random rnd = new Random(11);
+		play(game, 5, rnd);
+		Document snapshot = new Document();
+		converter.write(game, snapshot);
+		long snapshotMoves = game.getMoveCount();
+		play(game, 30, rnd);
+
+		when(gameRepository.findById(game.getId())).thenReturn(Optional.of(converter.read(Game.class, snapshot)));
+		when(mongoOperations.findById(new ObjectId(game.getId()), GameMoveLog.class)).thenReturn(log);
+		Game recovered = moveLog.recover(game.getId());
+
+		assertSameState(game, recovered);
+		assertEquals(game.getMoveCount() - snapshotMoves, moveLog.getReplayed());
+	}
+
+	@Test
+	public void whenGameHasNoSnapshotThenItIsRecoveredFromLogHeader() throws WrongParametersException {
+		Game game = Game.createGame((short)9, (short)9, 10);
+		GameMoveLog log = GameMoveLog.headerOf(game);
+		game.setListener((changed, move) -> log.getMoves().add(move));
+		play(game, 10, new Random(3));
+
+		when(gameRepository.findById(game.getId())).thenReturn(Optional.empty());
+		when(mongoOperations.findById(new ObjectId(game.getId()), GameMoveLog.class)).thenReturn(log);
+
+		assertSameState(game, moveLog.recover(game.getId()));
+	}
+
+	@Test
+	public void whenMovesAreAppliedThenTheyAreAppendedAndSnapshotted() throws WrongParametersException {
+		Game game = Game.createGame((short)9, (short)9, 10, true);
+		moveLog.logCreation(game);
+		game.setListener(moveLog);
+		game.flagCell(new Cell.Coordinates((short)1, (short)1));
+		game.flagCell(new Cell.Coordinates((short)1, (short)1));
+
+		verify(gameWriteBehind, timeout(2000)).offer(game);
+		verify(bulkOperations, timeout(2000).atLeast(2)).upsert(any(Query.class), any(Update.class));
+		assertEquals(2, moveLog.getAppended());
+	}
+
+	@Test
+	public void whenSnapshotIsWrittenThenMovesItCoversAreTrimmed() throws WrongParametersException {
+		verify(gameWriteBehind).addSnapshotListener(any());
+		ObjectId gameId = ObjectId.get();
+		Map<String, Long> moveCounts = new LinkedHashMap<>();
+		moveCounts.put(gameId.toHexString(), 100L);
+		//no moves to trim
+		moveCounts.put(ObjectId.get().toHexString(), 0L);
+		moveLog.trim(moveCounts);
+
+		ArgumentCaptor<Query> query = ArgumentCaptor.forClass(Query.class);
+		ArgumentCaptor<Update> update = ArgumentCaptor.forClass(Update.class);
+		verify(trimOperations).updateOne(query.capture(), update.capture());
+		verify(trimOperations).execute();
+		assertEquals(new Document("_id", gameId), query.getValue().getQueryObject());
+		assertEquals(new Document("$pull", new Document("moves", new Document("seq", new Document("$lte", 100L)))),
+			update.getValue().getUpdateObject());
+		assertEquals(1L, moveLog.getTrimmed());
+
+		//covered moves appended after trimming are skipped on recovery
+		Game game = Game.createGame((short)9, (short)9, 10);
+		GameMoveLog log = GameMoveLog.headerOf(game);
+		game.setListener((changed, move) -> log.getMoves().add(move));
+		play(game, 10, new Random(5));
+		Document snapshot = new Document();
+		converter.write(game, snapshot);
+		log.getMoves().subList(0, log.getMoves().size() - 1).clear();
+		when(gameRepository.findById(game.getId())).thenReturn(Optional.of(converter.read(Game.class, snapshot)));
+		when(mongoOperations.findById(new ObjectId(game.getId()), GameMoveLog.class)).thenReturn(log);
+		assertSameState(game, moveLog.recover(game.getId()));
+		assertEquals(0L, moveLog.getReplayed());
+	}
+
+	@Test
+	public void whenMoveIsMappedThenItSurvivesReload() {
+		GameMoveLog log = new GameMoveLog(ObjectId.get(), (short)9, (short)9, 10, true, 42L, null, new ArrayList<>());
+		List<GameMove> moves = log.getMoves();
+		moves.add(new GameMove(1L, GameMove.Op.REVEAL, (short)2, (short)3, null));
+		moves.add(new GameMove(2L, GameMove.Op.FLAG, (short)4, (short)5, null));
+
+		Document document = new Document();
+		converter.write(log, document);
+		GameMoveLog reloaded = converter.read(GameMoveLog.class, document);
+
+		assertEquals(log.getId(), reloaded.getId());
+		assertEquals(moves.toString(), reloaded.getMoves().toString());
+	}
+
+}
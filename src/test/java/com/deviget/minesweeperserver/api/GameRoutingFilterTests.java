@@ -0,0 +1,141 @@
+package com.deviget.minesweeperserver.api;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+
+import org.bson.types.ObjectId;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.util.StreamUtils;
+
+import com.sun.net.httpserver.HttpServer;
+
+public class GameRoutingFilterTests {
+
+	private HttpServer owner;
+
+	private String ownerUrl;
+
+	private GameCluster gameCluster;
+
+	private String gameId;
+
+	@Before
+	public void setUp() throws Exception {
+		//echoes what it was sent
+		owner = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+		owner.createContext("/", exchange -> {
+			String body = StreamUtils.copyToString(exchange.getRequestBody(), StandardCharsets.UTF_8);
+			byte[] echo = (exchange.getRequestMethod() + " " + exchange.getRequestURI() + " "
+				+ exchange.getRequestHeaders().getFirst(GameRoutingFilter.FORWARDED_BY) + " " + body)
+				.getBytes(StandardCharsets.UTF_8);
+			exchange.getResponseHeaders().add(HttpHeaders.ETAG, "\"echo\"");
+			exchange.sendResponseHeaders(201, echo.length);
+			try(OutputStream out = exchange.getResponseBody()) {
+				out.write(echo);
+			}
+		});
+		owner.start();
+		ownerUrl = "http://127.0.0.1:" + owner.getAddress().getPort();
+		gameId = ObjectId.get().toHexString();
+		gameCluster = mock(GameCluster.class);
+		when(gameCluster.isEnabled()).thenReturn(true);
+		when(gameCluster.getNodeId()).thenReturn("node-a");
+		when(gameCluster.ownerUrlOf(anyString())).thenReturn(null);
+		when(gameCluster.ownerUrlOf(gameId)).thenReturn(ownerUrl);
+	}
+
+	@After
+	public void tearDown() {
+		owner.stop(0);
+	}
+
+	@Test
+	public void whenGameIsOwnedByAnotherNodeThenRequestIsForwarded() throws Exception {
+		MockHttpServletRequest request = new MockHttpServletRequest("POST", "/games/" + gameId + "/moves");
+		request.setQueryString("dryRun=false");
+		request.setContent("[{\"op\": \"flag\"}]".getBytes(StandardCharsets.UTF_8));
+		request.addHeader(HttpHeaders.CONTENT_TYPE, "application/json");
+		MockHttpServletResponse response = new MockHttpServletResponse();
+		MockFilterChain chain = new MockFilterChain();
+		new GameRoutingFilter(gameCluster, "forward", Duration.ofSeconds(5)).doFilter(request, response, chain);
+
+		assertNull(chain.getRequest());
+		assertEquals(201, response.getStatus());
+		assertEquals("\"echo\"", response.getHeader(HttpHeaders.ETAG));
+		assertEquals("POST /games/" + gameId + "/moves?dryRun=false node-a [{\"op\": \"flag\"}]",
+			response.getContentAsString());
+	}
+
+	@Test
+	public void whenRedirectingThenClientIsSentToOwner() throws Exception {
+		MockHttpServletRequest request = new MockHttpServletRequest("PUT", "/games/" + gameId + "/cells/reveal");
+		request.setQueryString("row=1&column=2");
+		MockHttpServletResponse response = new MockHttpServletResponse();
+		MockFilterChain chain = new MockFilterChain();
+		new GameRoutingFilter(gameCluster, "redirect", Duration.ofSeconds(5)).doFilter(request, response, chain);
+
+		assertNull(chain.getRequest());
+		assertEquals(307, response.getStatus());
+		assertEquals(ownerUrl + "/games/" + gameId + "/cells/reveal?row=1&column=2", response.getHeader(HttpHeaders.LOCATION));
+
+		//event streams can't be buffered, so they are redirected anyway
+		response = new MockHttpServletResponse();
+		new GameRoutingFilter(gameCluster, "forward", Duration.ofSeconds(5))
+			.doFilter(new MockHttpServletRequest("GET", "/games/" + gameId + "/events"), response, new MockFilterChain());
+		assertEquals(307, response.getStatus());
+	}
+
+	@Test
+	public void whenGameIsLocalOrRequestWasForwardedThenItIsServedHere() throws Exception {
+		GameRoutingFilter filter = new GameRoutingFilter(gameCluster, "forward", Duration.ofSeconds(5));
+		for(String uri : new String[] {"/games", "/games/" + ObjectId.get() + "/cells/flag", "/games/not-an-id",
+				"/actuator/health"}) {
+			MockFilterChain chain = new MockFilterChain();
+			filter.doFilter(new MockHttpServletRequest("GET", uri), new MockHttpServletResponse(), chain);
+			assertNotNull(uri, chain.getRequest());
+		}
+		MockHttpServletRequest forwarded = new MockHttpServletRequest("GET", "/games/" + gameId);
+		forwarded.addHeader(GameRoutingFilter.FORWARDED_BY, "node-b");
+		MockFilterChain chain = new MockFilterChain();
+		filter.doFilter(forwarded, new MockHttpServletResponse(), chain);
+		assertNotNull(chain.getRequest());
+	}
+
+	@Test
+	public void whenOwnerIsUnreachableOrNodeIsFencedThenServiceIsUnavailable() throws Exception {
+		int closedPort;
+		try(ServerSocket socket = new ServerSocket(0)) {
+			closedPort = socket.getLocalPort();
+		}
+		when(gameCluster.ownerUrlOf(gameId)).thenReturn("http://127.0.0.1:" + closedPort);
+		GameRoutingFilter filter = new GameRoutingFilter(gameCluster, "forward", Duration.ofSeconds(5));
+		MockHttpServletResponse response = new MockHttpServletResponse();
+		filter.doFilter(new MockHttpServletRequest("GET", "/games/" + gameId), response, new MockFilterChain());
+		assertEquals(503, response.getStatus());
+
+		when(gameCluster.isFenced()).thenReturn(true);
+		String localId = ObjectId.get().toHexString();
+		response = new MockHttpServletResponse();
+		MockFilterChain chain = new MockFilterChain();
+		filter.doFilter(new MockHttpServletRequest("GET", "/games/" + localId), response, chain);
+		assertEquals(503, response.getStatus());
+		assertNull(chain.getRequest());
+	}
+
+}
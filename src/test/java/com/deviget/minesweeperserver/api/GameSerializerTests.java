@@ -0,0 +1,143 @@
+package com.deviget.minesweeperserver.api;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Arrays;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import com.deviget.minesweeperserver.api.Game.Cell;
+import com.deviget.minesweeperserver.api.Game.MovesResult;
+import com.deviget.minesweeperserver.api.Game.RevealResult;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.MapperFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+
+public class GameSerializerTests {
+
+	private ObjectMapper objectMapper;
+
+	/**
+	 * Bean serialization, as games were written before streaming serializers
+	 */
+	private ObjectMapper beanMapper;
+
+	@Before
+	public void setUp() {
+		objectMapper = Jackson2ObjectMapperBuilder.json().build();
+		objectMapper.disable(SerializationFeature.FAIL_ON_EMPTY_BEANS);
+		beanMapper = objectMapper.copy();
+		beanMapper.disable(MapperFeature.USE_ANNOTATIONS);
+	}
+
+	@Test
+	public void whenGameIsWrittenThenOutputIsTheSameBeanSerializationGave() throws Exception {
+		Game game = Game.createGame((short)8, (short)10, 12);
+		assertSameAsBean(game);
+		assertSameAsBean(Game.createGame((short)8, (short)10, 12, true));
+
+		game.flagCell(new Cell.Coordinates((short)1, (short)1));
+		game.flagCell(new Cell.Coordinates((short)1, (short)2));
+		game.flagCell(new Cell.Coordinates((short)1, (short)2));
+		RevealResult revealed = game.revealCell(safeCell(game));
+		assertSameAsBean(game);
+		assertSameAsBean(revealed);
+
+		Cell mine = game.getCells().stream().filter(cell -> cell.isHasMine() && !cell.isRevealed()
+			&& cell.getFlaggedStatus() == Cell.FlaggedStatus.NON_FLAGGED).findFirst().get();
+		MovesResult moves = game.applyMoves(Arrays.asList(
+			MoveRequest.of("flag", (short)8, (short)10), MoveRequest.of("reveal", mine.getCoordinates().getRow(),
+				mine.getCoordinates().getColumn())));
+		assertSameAsBean(moves);
+		assertSameAsBean(game);
+
+		//cell views, such as those of deltas, are written in streamed order
+		Cell cell = game.getCells().get(0);
+		assertEquals(objectMapper.writeValueAsString(cell),
+			objectMapper.readTree(objectMapper.writeValueAsString(game)).get("cells").get(0).toString());
+	}
+
+	@Test
+	public void whenRowsAreAskedForThenEveryCellIsWrittenAsASymbol() throws Exception {
+		Game game = Game.createGame((short)8, (short)10, 12);
+		game.flagCell(new Cell.Coordinates((short)1, (short)1));
+		game.flagCell(new Cell.Coordinates((short)1, (short)2));
+		game.flagCell(new Cell.Coordinates((short)1, (short)2));
+		RevealResult revealed = game.revealCell(safeCell(game));
+
+		JsonNode json = objectMapper.readTree(objectMapper.writer().withAttribute(GameSerializer.ROWS, true)
+			.writeValueAsBytes(game));
+		assertEquals(game.getId(), json.get("id").asText());
+		assertEquals(8, json.get("board").size());
+		for(Cell cell : game.getCells()) {
+			String row = json.get("board").get(cell.getCoordinates().getRow() - 1).asText();
+			assertEquals(10, row.length());
+			assertEquals(symbolOf(cell, game.getStatus()), row.charAt(cell.getCoordinates().getColumn() - 1));
+		}
+
+		json = objectMapper.readTree(objectMapper.writer().withAttribute(GameSerializer.ROWS, true)
+			.writeValueAsBytes(revealed));
+		assertEquals(revealed.getAdjCellsRevealedCount(), json.get("adjCellsRevealed").size());
+		for(JsonNode cellJson : json.get("adjCellsRevealed")) {
+			Cell cell = game.getCellByCoordinates(new Cell.Coordinates((short)cellJson.get(0).asInt(),
+				(short)cellJson.get(1).asInt()));
+			assertEquals(String.valueOf(symbolOf(cell, game.getStatus())), cellJson.get(2).asText());
+		}
+	}
+
+	@Test
+	public void whenGameIsLostThenRowsShowItsMines() throws Exception {
+		Game game = Game.createGame((short)8, (short)10, 12);
+		game.revealCell(safeCell(game));
+		Cell mine = game.getCells().stream().filter(cell -> cell.isHasMine()).findFirst().get();
+		RevealResult lost = game.revealCell(mine.getCoordinates());
+		assertEquals(Game.Status.LOST, lost.getStatus());
+
+		JsonNode json = objectMapper.readTree(objectMapper.writer().withAttribute(GameSerializer.ROWS, true)
+			.writeValueAsBytes(game));
+		int minesShown = 0;
+		for(Cell cell : game.getCells()) {
+			char symbol = json.get("board").get(cell.getCoordinates().getRow() - 1).asText()
+				.charAt(cell.getCoordinates().getColumn() - 1);
+			assertEquals(symbolOf(cell, Game.Status.LOST), symbol);
+			minesShown += (symbol == '*' ? 1 : 0);
+		}
+		assertEquals(12, minesShown);
+
+		json = objectMapper.readTree(objectMapper.writer().withAttribute(GameSerializer.ROWS, true)
+			.writeValueAsBytes(lost));
+		assertEquals(12, json.get("adjCellsRevealed").size());
+		for(JsonNode cellJson : json.get("adjCellsRevealed")) {
+			assertEquals("*", cellJson.get(2).asText());
+		}
+	}
+
+	/**
+	 * Compared as trees, bean property order depends on reflection
+	 * @param value
+	 * @throws Exception
+	 */
+	private void assertSameAsBean(Object value) throws Exception {
+		assertEquals(beanMapper.readTree(beanMapper.writeValueAsString(value)),
+			objectMapper.readTree(objectMapper.writeValueAsString(value)));
+	}
+
+	private static Cell.Coordinates safeCell(Game game) {
+		return game.getCells().stream().filter(cell -> !cell.isHasMine() && cell.getAdjMinesNumber() == 0)
+			.findFirst().get().getCoordinates();
+	}
+
+	private static char symbolOf(Cell cell, Game.Status status) {
+		if(status == Game.Status.LOST && cell.isHasMine()) {
+			return '*';
+		}
+		if(!cell.isRevealed()) {
+			return cell.getFlaggedStatus().getSymbol();
+		}
+		return (char)('0' + cell.getAdjMinesNumber());
+	}
+
+}
@@ -0,0 +1,139 @@
+package com.deviget.minesweeperserver.api;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import com.deviget.minesweeperserver.api.Game.Cell;
+
+public class GameShardsTests {
+
+	private static final int CLIENTS = 8;
+
+	private static final int GAMES = 64;
+
+	private static final int MOVES_PER_CLIENT = 20000;
+
+	@Test
+	public void whenThereAreNoShardsThenCommandsRunOnCallingThread() throws Exception {
+		GameShards shards = new GameShards(0, 1);
+		assertSame(Thread.currentThread(), shards.submit("game", Thread::currentThread).get());
+		assertEquals(0, shards.getQueueDepths().length);
+	}
+
+	@Test
+	public void whenCommandsAreSubmittedForAGameThenTheyRunInOrderOnItsShard() throws Exception {
+		GameShards shards = new GameShards(4, 1024);
+		try {
+			List<Integer> applied = new ArrayList<>();
+			List<CompletableFuture<Thread>> results = new ArrayList<>();
+			for(int ix = 0; ix < 500; ix++) {
+				int seq = ix;
+				results.add(shards.submit("game", () -> {
+					applied.add(seq);
+					return Thread.currentThread();
+				}));
+			}
+			Thread shardThread = results.get(0).get(5, TimeUnit.SECONDS);
+			for(CompletableFuture<Thread> result : results) {
+				assertSame(shardThread, result.get(5, TimeUnit.SECONDS));
+			}
+			for(int ix = 0; ix < 500; ix++) {
+				assertEquals(ix, applied.get(ix).intValue());
+			}
+		} finally {
+			shards.shutdown();
+		}
+	}
+
+	@Test
+	public void whenShardIsFullThenCommandsAreRejected() throws Exception {
+		GameShards shards = new GameShards(1, 1);
+		CountDownLatch release = new CountDownLatch(1);
+		try {
+			CountDownLatch running = new CountDownLatch(1);
+			shards.submit("game", () -> {
+				running.countDown();
+				return release.await(5, TimeUnit.SECONDS);
+			});
+			running.await(5, TimeUnit.SECONDS);
+			shards.submit("game", () -> true);
+			CompletableFuture<Boolean> rejected = shards.submit("game", () -> true);
+
+			assertArrayEquals(new int[] {1}, shards.getQueueDepths());
+			assertTrue(rejected.isCompletedExceptionally());
+			try {
+				rejected.get();
+			} catch (ExecutionException e) {
+				assertTrue(e.getCause() instanceof RejectedExecutionException);
+			}
+			assertEquals(1L, shards.getRejected());
+		} finally {
+			release.countDown();
+			shards.shutdown();
+		}
+	}
+
+	/**
+	 * Clients flag cells of games shared among them, either contending on game monitors
+	 * or submitting to shards, and throughput of both models is printed
+	 */
+	@Test
+	public void whenClientsShareGamesThenShardedAndSynchronizedModelsApplyEveryMove() throws Exception {
+		for(int shardsCount : new int[] {0, Runtime.getRuntime().availableProcessors()}) {
+			GameShards shards = new GameShards(shardsCount, MOVES_PER_CLIENT * CLIENTS);
+			List<Game> games = new ArrayList<>();
+			for(int ix = 0; ix < GAMES; ix++) {
+				games.add(Game.createGame((short)16, (short)16, 1, true));
+			}
+			ExecutorService clients = Executors.newFixedThreadPool(CLIENTS);
+			try {
+				long start = System.nanoTime();
+				List<Future<CompletableFuture<?>>> lastMoves = new ArrayList<>();
+				for(int client = 0; client < CLIENTS; client++) {
+					int offset = client;
+					lastMoves.add(clients.submit(() -> {
+						CompletableFuture<?> last = null;
+						for(int ix = 0; ix < MOVES_PER_CLIENT; ix++) {
+							Game game = games.get((offset + ix) % GAMES);
+							Cell.Coordinates coord = new Cell.Coordinates((short)(1 + ix % 16), (short)(1 + offset));
+							last = shards.submit(game.getId(), () -> {
+								game.flagCell(coord);
+								return null;
+							});
+						}
+						return last;
+					}));
+				}
+				for(Future<CompletableFuture<?>> lastMove : lastMoves) {
+					lastMove.get(60, TimeUnit.SECONDS).get(60, TimeUnit.SECONDS);
+				}
+				//last moves of every client are done, so shards are drained
+				shards.shutdown();
+				long elapsed = System.nanoTime() - start;
+				long moves = games.stream().mapToLong(Game::getMoveCount).sum();
+				assertEquals((long)CLIENTS * MOVES_PER_CLIENT, moves);
+				System.out.println((shardsCount == 0 ? "synchronized" : shardsCount + " shards") + ": "
+					+ (moves * TimeUnit.SECONDS.toNanos(1) / elapsed) + " moves/s");
+			} finally {
+				clients.shutdownNow();
+				shards.shutdown();
+			}
+		}
+	}
+
+}
@@ -1,8 +1,13 @@
 package com.deviget.minesweeperserver.api;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
 
+import java.util.Arrays;
+import java.util.List;
 import java.util.Optional;
+import java.util.stream.Collectors;
 
 import org.junit.Rule;
 import org.junit.Test;
@@ -134,4 +139,261 @@ public class GameTests {
 		assertEquals(FlaggedStatus.QUESTION_MARK, game.getCellByCoordinates(nonRevCell.getCoordinates()).getFlaggedStatus());
 	}
 
+	@Test()
+	public void whenCellwithNoAdjMinesRevealedThenResultHoldsEveryRevealedCell() throws WrongParametersException {
+		short rows = 16;
+		short columns = 30;
+		int mines = 20;
+		Game game = null;
+		Cell cellNoAdjMines = null;
+		do {
+			game = Game.createGame(rows, columns, mines);
+			Optional<Cell> cellOpt = game.getCells().stream().filter(
+				cell -> !cell.isHasMine() && cell.getAdjMinesNumber() == 0).findFirst();
+			if(cellOpt.isPresent()) {
+				cellNoAdjMines = cellOpt.get();
+			}
+		} while (cellNoAdjMines == null);
+		RevealResult result = game.revealCell(cellNoAdjMines.getCoordinates());
+		long revealedCells = game.getCells().stream().filter(cell -> cell.isRevealed()).count();
+		assertEquals(revealedCells, result.getAdjCellsRevealed().size());
+		assertTrue(result.getAdjCellsRevealed().stream().allMatch(cell -> cell.isRevealed()));
+	}
+	
+	@Test()
+	public void whenHugeEmptyBoardRevealedThenGameIsWonInOneMove() throws WrongParametersException {
+		short rows = 1000;
+		short columns = 1000;
+		int mines = 0;
+		Game game = Game.createGame(rows, columns, mines);
+		RevealResult result = game.revealCell(new Cell.Coordinates((short)500, (short)500));
+		assertEquals(Game.Status.WON, result.getStatus());
+		assertEquals(rows * columns, result.getAdjCellsRevealedCount());
+	}
+
+	@Test()
+	public void whenCellsAreRevealedThenSafeCellsLeftMatchesBoard() throws WrongParametersException {
+		short rows = 8;
+		short columns = 8;
+		int mines = 10;
+		Game game = Game.createGame(rows, columns, mines);
+		Optional<Cell> cellOpt = game.getCells().stream().filter(cell -> !cell.isHasMine()).findFirst();
+		game.revealCell(cellOpt.get().getCoordinates());
+		long nonRevealedSafeCells = game.getCells().stream().filter(
+			cell -> !cell.isHasMine() && !cell.isRevealed()).count();
+		assertEquals(nonRevealedSafeCells, game.getSafeCellsLeft());
+	}
+
+	@Test()
+	public void whenLazyGameFirstCellIsRevealedThenGameIsNotLost() throws WrongParametersException {
+		short rows = 3;
+		short columns = 3;
+		int mines = 4;
+		for(int ix = 0; ix < 100; ix++) {
+			Game game = Game.createGame(rows, columns, mines, true);
+			RevealResult result = game.revealCell(new Cell.Coordinates((short)2, (short)2));
+			assertEquals(Game.Status.STARTED, result.getStatus());
+			assertEquals((long)mines, game.getCells().stream().filter(cell -> cell.isHasMine()).count());
+		}
+	}
+	
+	@Test()
+	public void whenLazyGameIsFlaggedBeforeRevealThenFlagIsKeptOnceMinesArePlaced() throws WrongParametersException {
+		short rows = 8;
+		short columns = 8;
+		int mines = 10;
+		Game game = Game.createGame(rows, columns, mines, true);
+		Cell.Coordinates flaggedCoord = new Cell.Coordinates((short)1, (short)1);
+		game.flagCell(flaggedCoord);
+		assertEquals(FlaggedStatus.RED_FLAG, game.getCellByCoordinates(flaggedCoord).getFlaggedStatus());
+		game.revealCell(new Cell.Coordinates((short)8, (short)8));
+		Cell flaggedCell = game.getCellByCoordinates(flaggedCoord);
+		//a cascade reaching flagged cell reveals it and resets its flag
+		assertTrue(flaggedCell.isRevealed() || flaggedCell.getFlaggedStatus() == FlaggedStatus.RED_FLAG);
+		assertEquals((long)mines, game.getCells().stream().filter(cell -> cell.isHasMine()).count());
+	}
+
+	@Test()
+	public void whenGameChangesThenDeltaHoldsOnlyChangedCells() throws WrongParametersException {
+		short rows = 8;
+		short columns = 8;
+		int mines = 10;
+		Game game = Game.createGame(rows, columns, mines);
+		assertEquals(0, game.getVersion());
+		Cell.Coordinates flaggedCoord = new Cell.Coordinates((short)1, (short)1);
+		game.flagCell(flaggedCoord);
+		assertEquals(1, game.getVersion());
+		
+		Game.Delta delta = game.getDelta(0);
+		assertEquals(1, delta.getVersion());
+		assertEquals(1, delta.getCells().size());
+		assertEquals(flaggedCoord, delta.getCells().get(0).getCoordinates());
+		assertEquals(FlaggedStatus.RED_FLAG, delta.getCells().get(0).getFlaggedStatus());
+		assertTrue(game.getDelta(1).getCells().isEmpty());
+		assertNull(game.getDelta(2));
+	}
+	
+	@Test()
+	public void whenLazyBoardIsGeneratedThenOlderVersionsNeedFullSnapshot() throws WrongParametersException {
+		Game game = Game.createGame((short)8, (short)8, 10, true);
+		assertTrue(game.getDelta(0).getCells().isEmpty());
+		game.revealCell(new Cell.Coordinates((short)4, (short)4));
+		assertNull(game.getDelta(0));
+		assertTrue(game.getDelta(1).getCells().isEmpty());
+	}
+
+	@Test()
+	public void whenMovesAreAppliedThenTheyStopOnceGameIsLost() throws WrongParametersException {
+		Game game = Game.createGame((short)8, (short)8, 10);
+		Cell safe = game.getCells().stream().filter(cell -> !cell.isHasMine()).findFirst().get();
+		Cell mine = game.getCells().stream().filter(cell -> cell.isHasMine()).findFirst().get();
+		List<MoveRequest> moves = Arrays.asList(
+			new MoveRequest(GameMove.Op.FLAG, mine.getCoordinates().getRow(), mine.getCoordinates().getColumn()),
+			new MoveRequest(GameMove.Op.REVEAL, safe.getCoordinates().getRow(), safe.getCoordinates().getColumn()),
+			new MoveRequest(GameMove.Op.REVEAL, mine.getCoordinates().getRow(), mine.getCoordinates().getColumn()),
+			new MoveRequest(GameMove.Op.REVEAL, safe.getCoordinates().getRow(), safe.getCoordinates().getColumn()));
+		
+		Game.MovesResult result = game.applyMoves(moves);
+		
+		assertEquals(Game.Status.LOST, result.getStatus());
+		assertEquals(3, result.getMovesApplied());
+		assertEquals(3, game.getVersion());
+		assertTrue(result.getAdjCellsRevealed().contains(safe));
+		assertTrue(result.getAdjCellsRevealed().contains(mine));
+	}
+	
+	@Test()
+	public void whenAnyMoveHasWrongCoordinatesThenNoneIsApplied() throws WrongParametersException {
+		Game game = Game.createGame((short)8, (short)8, 10);
+		List<MoveRequest> moves = Arrays.asList(
+			new MoveRequest(GameMove.Op.FLAG, (short)1, (short)1),
+			new MoveRequest(GameMove.Op.FLAG, (short)9, (short)1));
+		
+		exception.expect(WrongParametersException.class);
+		try {
+			game.applyMoves(moves);
+		} finally {
+			assertEquals(0, game.getVersion());
+		}
+	}
+	
+	@Test()
+	public void whenMoveCantBeAppliedThenSequenceStopsKeepingPreviousOnes() throws WrongParametersException {
+		Game game = Game.createGame((short)8, (short)8, 10);
+		Cell safe = game.getCells().stream().filter(cell -> !cell.isHasMine() && cell.getAdjMinesNumber() > 0)
+			.findFirst().get();
+		short row = safe.getCoordinates().getRow();
+		short column = safe.getCoordinates().getColumn();
+		List<MoveRequest> moves = Arrays.asList(
+			new MoveRequest(GameMove.Op.REVEAL, row, column),
+			new MoveRequest(GameMove.Op.FLAG, row, column),
+			new MoveRequest(GameMove.Op.FLAG, (short)1, (short)1));
+		
+		Game.MovesResult result = game.applyMoves(moves);
+		
+		assertEquals(Game.Status.STARTED, result.getStatus());
+		assertEquals(1, result.getMovesApplied());
+		assertEquals(1, result.getAdjCellsRevealed().size());
+	}
+	
+	/**
+	 * @param game
+	 * @param cell
+	 * @return cells surrounding given one
+	 */
+	private static List<Cell> neighbours(Game game, Cell cell) {
+		short row = cell.getCoordinates().getRow();
+		short column = cell.getCoordinates().getColumn();
+		return game.getCells().stream().filter(other -> !other.equals(cell)
+			&& Math.abs(other.getCoordinates().getRow() - row) <= 1
+			&& Math.abs(other.getCoordinates().getColumn() - column) <= 1).collect(Collectors.toList());
+	}
+	
+	/**
+	 * @param game
+	 * @return a safe cell with adjacent mines and some safe unrevealed neighbour, revealed
+	 * @throws WrongParametersException
+	 */
+	private static Cell revealChordableCell(Game game) throws WrongParametersException {
+		Cell numbered = game.getCells().stream().filter(cell -> !cell.isHasMine() && cell.getAdjMinesNumber() > 0
+			&& neighbours(game, cell).stream().anyMatch(adj -> !adj.isHasMine())).findFirst().get();
+		game.revealCell(numbered.getCoordinates());
+		return numbered;
+	}
+	
+	@Test()
+	public void whenFlagsMatchAdjMinesThenChordRevealsEveryOtherNeighbour() throws WrongParametersException {
+		Game game = Game.createGame((short)8, (short)8, 10);
+		Cell numbered = revealChordableCell(game);
+		for(Cell adj : neighbours(game, numbered)) {
+			if(adj.isHasMine()) {
+				game.flagCell(adj.getCoordinates());
+			}
+		}
+		
+		RevealResult result = game.chordCell(numbered.getCoordinates());
+		
+		assertTrue(result.getStatus() == Game.Status.STARTED || result.getStatus() == Game.Status.WON);
+		for(Cell adj : neighbours(game, numbered)) {
+			assertEquals(adj.toString(), !adj.isHasMine(), adj.isRevealed());
+			if(!adj.isHasMine()) {
+				assertTrue(result.getAdjCellsRevealed().contains(adj));
+			}
+		}
+		assertEquals(game.getCells().stream().filter(cell -> cell.isRevealed()).count(), 
+			game.getRows() * game.getColumns() - game.getMines() - game.getSafeCellsLeft());
+	}
+	
+	@Test()
+	public void whenFlagsDontMatchAdjMinesThenChordIsRejected() throws WrongParametersException {
+		Game game = Game.createGame((short)8, (short)8, 10);
+		Cell numbered = revealChordableCell(game);
+		long version = game.getVersion();
+		
+		exception.expect(WrongParametersException.class);
+		try {
+			game.chordCell(numbered.getCoordinates());
+		} finally {
+			assertEquals(version, game.getVersion());
+			assertEquals(Game.Status.STARTED, game.getStatus());
+		}
+	}
+	
+	@Test()
+	public void whenChordedCellIsntRevealedThenChordIsRejected() throws WrongParametersException {
+		Game game = Game.createGame((short)8, (short)8, 10);
+		
+		exception.expect(WrongParametersException.class);
+		game.chordCell(new Cell.Coordinates((short)1, (short)1));
+	}
+	
+	@Test()
+	public void whenFlagIsMisplacedThenChordLosesGame() throws WrongParametersException {
+		Game game = Game.createGame((short)8, (short)8, 10);
+		Cell numbered = revealChordableCell(game);
+		List<Cell> safeNeighbours = neighbours(game, numbered).stream().filter(adj -> !adj.isHasMine())
+			.collect(Collectors.toList());
+		if(safeNeighbours.size() < numbered.getAdjMinesNumber()) {
+			//not enough safe cells to misplace every flag, flag mines but the first one
+			game.flagCell(safeNeighbours.get(0).getCoordinates());
+			neighbours(game, numbered).stream().filter(adj -> adj.isHasMine()).skip(1)
+				.forEach(adj -> flag(game, adj));
+		} else {
+			safeNeighbours.stream().limit(numbered.getAdjMinesNumber()).forEach(adj -> flag(game, adj));
+		}
+		
+		RevealResult result = game.chordCell(numbered.getCoordinates());
+		
+		assertEquals(Game.Status.LOST, result.getStatus());
+		assertEquals(game.getMines(), result.getAdjCellsRevealed().size());
+	}
+	
+	private static void flag(Game game, Cell cell) {
+		try {
+			game.flagCell(cell.getCoordinates());
+		} catch (WrongParametersException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
 }
@@ -0,0 +1,116 @@
+package com.deviget.minesweeperserver.api;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+
+import org.bson.types.ObjectId;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import com.deviget.minesweeperserver.api.Game.Cell;
+import com.deviget.minesweeperserver.api.Game.RevealResult;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+
+public class GameWireCodecTests {
+
+	private ObjectMapper objectMapper;
+
+	private GameWireDecoder decoder;
+
+	@Before
+	public void setUp() {
+		objectMapper = Jackson2ObjectMapperBuilder.json().build();
+		objectMapper.disable(SerializationFeature.FAIL_ON_EMPTY_BEANS);
+		decoder = new GameWireDecoder(objectMapper);
+	}
+
+	@Test
+	public void whenValuesAreEncodedThenTheyDecodeToWhatJsonGives() throws Exception {
+		//fixed mines, so the first reveal changes fewer cells than a delta tracks
+		Game game = Game.restoreGame(ObjectId.get(), LocalDateTime.now(), (short)9, (short)12, 15, false, 7L);
+		assertRoundTrip(game);
+		assertRoundTrip(Game.createGame((short)9, (short)12, 15, true));
+
+		game.flagCell(new Cell.Coordinates((short)1, (short)1));
+		game.flagCell(new Cell.Coordinates((short)9, (short)12));
+		game.flagCell(new Cell.Coordinates((short)9, (short)12));
+		Cell safe = game.getCells().stream().filter(cell -> !cell.isHasMine() && cell.getAdjMinesNumber() == 0
+			&& cell.getFlaggedStatus() == Cell.FlaggedStatus.NON_FLAGGED).findFirst().get();
+		RevealResult revealed = game.revealCell(safe.getCoordinates());
+		assertRoundTrip(revealed);
+		assertRoundTrip(game);
+		Game.Delta delta = game.getDelta(0L);
+		assertNotNull(delta);
+		assertRoundTrip(delta);
+
+		Cell mine = game.getCells().stream().filter(cell -> cell.isHasMine()
+			&& cell.getFlaggedStatus() == Cell.FlaggedStatus.NON_FLAGGED).findFirst().get();
+		assertRoundTrip(game.applyMoves(Arrays.asList(MoveRequest.of("flag", (short)5, (short)5),
+			MoveRequest.of("reveal", mine.getCoordinates().getRow(), mine.getCoordinates().getColumn()))));
+		assertRoundTrip(game);
+	}
+
+	/**
+	 * Prints payload size and encoding time of a game in progress in every format
+	 */
+	@Test
+	public void whenBoardsGrowThenBinaryStaysSmallerThanJson() throws Exception {
+		ObjectWriter jsonWriter = objectMapper.writer();
+		ObjectWriter rowsWriter = objectMapper.writer().withAttribute(GameSerializer.ROWS, Boolean.TRUE);
+		System.out.println("board        json bytes  rows bytes  binary bytes  json us  rows us  binary us");
+		for(int[] board : new int[][] {{9, 9, 10}, {30, 16, 99}, {100, 100, 1600}, {250, 250, 10000}, {500, 500, 40000}}) {
+			Game game = Game.createGame((short)board[0], (short)board[1], board[2], true);
+			game.revealCell(new Cell.Coordinates((short)(board[0] / 2 + 1), (short)(board[1] / 2 + 1)));
+			for(int ix = 1; ix <= Math.min(board[0], board[1]); ix += 3) {
+				if(!game.getCellByCoordinates(new Cell.Coordinates((short)ix, (short)ix)).isRevealed()) {
+					game.flagCell(new Cell.Coordinates((short)ix, (short)ix));
+				}
+			}
+			int iterations = Math.max(3, 1000000 / (board[0] * board[1]));
+
+			long start = System.nanoTime();
+			byte[] json = null;
+			for(int ix = 0; ix < iterations; ix++) {
+				json = jsonWriter.writeValueAsBytes(game);
+			}
+			long jsonNanos = (System.nanoTime() - start) / iterations;
+			start = System.nanoTime();
+			byte[] rows = null;
+			for(int ix = 0; ix < iterations; ix++) {
+				rows = rowsWriter.writeValueAsBytes(game);
+			}
+			long rowsNanos = (System.nanoTime() - start) / iterations;
+			start = System.nanoTime();
+			byte[] binary = null;
+			for(int ix = 0; ix < iterations; ix++) {
+				binary = encode(game);
+			}
+			long binaryNanos = (System.nanoTime() - start) / iterations;
+
+			assertEquals(objectMapper.readTree(json), decoder.decode(binary));
+			assertTrue(binary.length < rows.length && rows.length < json.length);
+			System.out.println(String.format("%-12s %10d  %10d  %12d  %7d  %7d  %9d", board[0] + "x" + board[1],
+				json.length, rows.length, binary.length, jsonNanos / 1000, rowsNanos / 1000, binaryNanos / 1000));
+		}
+	}
+
+	private void assertRoundTrip(Object value) throws IOException {
+		assertEquals(objectMapper.readTree(objectMapper.writeValueAsBytes(value)), decoder.decode(encode(value)));
+	}
+
+	private static byte[] encode(Object value) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		GameWireCodec.encode(value, out);
+		return out.toByteArray();
+	}
+
+}
@@ -0,0 +1,198 @@
+package com.deviget.minesweeperserver.api;
+
+import java.io.ByteArrayInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+
+import org.bson.types.ObjectId;
+
+import com.deviget.minesweeperserver.api.Game.Cell.FlaggedStatus;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.NullNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+/**
+ * Decodes the binary wire format, see {@link GameWireCodec}, into the tree JSON
+ * would give for the same value, so both formats can be compared
+ */
+class GameWireDecoder {
+
+	private final ObjectMapper objectMapper;
+
+	/**
+	 * @param objectMapper - writes times as JSON does
+	 */
+	GameWireDecoder(ObjectMapper objectMapper) {
+		super();
+		this.objectMapper = objectMapper;
+	}
+
+	JsonNode decode(byte[] data) throws IOException {
+		InputStream in = new ByteArrayInputStream(data);
+		int type = readByte(in);
+		if(readByte(in) != GameWireCodec.VERSION) {
+			throw new IOException("Unknown format version");
+		}
+		ObjectNode node = objectMapper.createObjectNode();
+		switch(type) {
+			case GameWireCodec.GAME:
+				decodeGame(in, node);
+				break;
+			case GameWireCodec.REVEAL_RESULT:
+			case GameWireCodec.MOVES_RESULT:
+				node.put("status", Game.Status.values()[readByte(in)].name());
+				node.put("timePlayedInSeconds", (int)readVarint(in));
+				if(type == GameWireCodec.MOVES_RESULT) {
+					node.put("movesApplied", (int)readVarint(in));
+				}
+				decodeCells(in, node.putArray("adjCellsRevealed"));
+				break;
+			case GameWireCodec.DELTA:
+				node.put("id", readId(in));
+				node.put("sinceVersion", (int)readVarint(in));
+				node.put("version", (int)readVarint(in));
+				node.put("status", Game.Status.values()[readByte(in)].name());
+				node.set("timePlayed", readDuration(in));
+				decodeCells(in, node.putArray("cells"));
+				break;
+			default:
+				throw new IOException("Unknown message type " + type);
+		}
+		if(in.read() >= 0) {
+			throw new IOException("Trailing bytes");
+		}
+		return node;
+	}
+
+	private void decodeGame(InputStream in, ObjectNode node) throws IOException {
+		node.put("id", readId(in));
+		int rows = (int)readVarint(in);
+		int columns = (int)readVarint(in);
+		node.put("rows", rows);
+		node.put("columns", columns);
+		node.put("mines", (int)readVarint(in));
+		node.put("status", Game.Status.values()[readByte(in)].name());
+		node.put("version", (int)readVarint(in));
+		long startedAtSeconds = readVarint(in);
+		node.set("startedAt", startedAtSeconds == 0 ? NullNode.getInstance() : toTree(
+			LocalDateTime.ofEpochSecond(startedAtSeconds - 1, (int)readVarint(in), ZoneOffset.UTC)));
+		node.set("timePlayed", readDuration(in));
+		ArrayNode cells = node.putArray("cells");
+		if(readByte(in) == 0) {
+			return;
+		}
+		int cellsNumber = rows * columns;
+		byte[] revealed = readBytes(in, (cellsNumber + 7) >>> 3);
+		int revealedNumber = 0;
+		for(int ix = 0; ix < cellsNumber; ix++) {
+			if(isSet(revealed, ix)) {
+				revealedNumber++;
+			}
+		}
+		byte[] adjMines = readBytes(in, (revealedNumber + 1) >>> 1);
+		FlaggedStatus[] flaggedStatuses = new FlaggedStatus[cellsNumber];
+		long flaggedNumber = readVarint(in);
+		int flaggedIx = 0;
+		for(long ix = 0; ix < flaggedNumber; ix++) {
+			long flagged = readVarint(in);
+			flaggedIx += (int)(flagged >>> 1);
+			flaggedStatuses[flaggedIx] = ((flagged & 1) != 0 ? FlaggedStatus.QUESTION_MARK : FlaggedStatus.RED_FLAG);
+		}
+		int nibbleIx = 0;
+		for(int ix = 0; ix < cellsNumber; ix++) {
+			int state;
+			if(isSet(revealed, ix)) {
+				state = GameWireCodec.REVEALED + ((adjMines[nibbleIx >>> 1] >>> ((nibbleIx & 1) << 2)) & 0x0F);
+				nibbleIx++;
+			} else if(flaggedStatuses[ix] == FlaggedStatus.RED_FLAG) {
+				state = GameWireCodec.RED_FLAG;
+			} else if(flaggedStatuses[ix] == FlaggedStatus.QUESTION_MARK) {
+				state = GameWireCodec.QUESTION_MARK;
+			} else {
+				state = GameWireCodec.HIDDEN;
+			}
+			cells.add(cell(ix / columns + 1, ix % columns + 1, state));
+		}
+	}
+
+	private void decodeCells(InputStream in, ArrayNode cells) throws IOException {
+		long cellsNumber = readVarint(in);
+		for(long ix = 0; ix < cellsNumber; ix++) {
+			int row = (int)readVarint(in);
+			int column = (int)readVarint(in);
+			cells.add(cell(row, column, readByte(in)));
+		}
+	}
+
+	private ObjectNode cell(int row, int column, int state) {
+		ObjectNode cell = objectMapper.createObjectNode();
+		ObjectNode coordinates = cell.putObject("coordinates");
+		coordinates.put("row", row);
+		coordinates.put("column", column);
+		FlaggedStatus flaggedStatus = (state == GameWireCodec.RED_FLAG ? FlaggedStatus.RED_FLAG
+			: state == GameWireCodec.QUESTION_MARK ? FlaggedStatus.QUESTION_MARK : FlaggedStatus.NON_FLAGGED);
+		cell.put("flaggedStatus", flaggedStatus.name());
+		cell.put("revealed", state >= GameWireCodec.REVEALED);
+		cell.put("adjMinesNumberRev", state >= GameWireCodec.REVEALED ? state - GameWireCodec.REVEALED : 0);
+		return cell;
+	}
+
+	private JsonNode readDuration(InputStream in) throws IOException {
+		long seconds = readVarint(in);
+		if(seconds == 0) {
+			return NullNode.getInstance();
+		}
+		return toTree(Duration.ofSeconds(seconds - 1, readVarint(in)));
+	}
+
+	/**
+	 * @param time
+	 * @return tree parsed from time written as JSON, so node types match
+	 * @throws IOException
+	 */
+	private JsonNode toTree(Object time) throws IOException {
+		return objectMapper.readTree(objectMapper.writeValueAsBytes(time));
+	}
+
+	private static String readId(InputStream in) throws IOException {
+		return new ObjectId(readBytes(in, 12)).toHexString();
+	}
+
+	private static boolean isSet(byte[] bitmap, int ix) {
+		return (bitmap[ix >>> 3] & (1 << (ix & 7))) != 0;
+	}
+
+	private static int readByte(InputStream in) throws IOException {
+		int value = in.read();
+		if(value < 0) {
+			throw new EOFException();
+		}
+		return value;
+	}
+
+	private static byte[] readBytes(InputStream in, int length) throws IOException {
+		byte[] bytes = new byte[length];
+		if(in.read(bytes) != length && length > 0) {
+			throw new EOFException();
+		}
+		return bytes;
+	}
+
+	private static long readVarint(InputStream in) throws IOException {
+		long value = 0;
+		for(int shift = 0; ; shift += 7) {
+			int b = readByte(in);
+			value |= (long)(b & 0x7F) << shift;
+			if((b & 0x80) == 0) {
+				return value;
+			}
+		}
+	}
+
+}
@@ -0,0 +1,50 @@
+/**
+ * 
+ */
+package com.deviget.minesweeperserver.api;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Optional;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import com.deviget.minesweeperserver.api.Game.Cell;
+
+/**
+ * @author fernando
+ * Batching and coalescing are covered by {@link GameWriteBehindTests}, here upserts are read back from MongoDB
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest
+public class GameWriteBehindTest {
+
+	@Autowired
+	GameWriteBehind gameWriteBehind;
+	
+	@Autowired
+	GameRepository gameRepository;
+	
+	@Test
+	public void testUpsertedGameIsReadBackByRepository() throws WrongParametersException {
+		short rows = 8;
+		short columns = 8;
+		int mines = 9;
+	  	Game game = Game.createGame(rows, columns, mines);
+	  	Cell.Coordinates flagCoord = new Cell.Coordinates((short)1, (short)1);
+	  	game.flagCell(flagCoord);
+	  	gameWriteBehind.enqueue(game);
+	  	gameWriteBehind.flushAll();
+	  	Optional<Game> savedGame = this.gameRepository.findById(game.getId());
+	  	assertTrue(savedGame.isPresent());
+	  	assertEquals(Game.Status.STARTED, savedGame.get().getStatus());
+	  	assertEquals(game.getVersion(), savedGame.get().getVersion());
+	  	assertEquals(game.getCells().toString(), savedGame.get().getCells().toString());
+	}
+
+}
@@ -0,0 +1,151 @@
+package com.deviget.minesweeperserver.api;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.reset;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.BulkOperations.BulkMode;
+import org.springframework.data.mongodb.core.MongoOperations;
+import org.springframework.data.mongodb.core.convert.MappingMongoConverter;
+import org.springframework.data.mongodb.core.convert.NoOpDbRefResolver;
+import org.springframework.data.mongodb.core.mapping.MongoMappingContext;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import com.deviget.minesweeperserver.api.Game.Cell;
+
+public class GameWriteBehindTests {
+	
+	private MongoOperations mongoOperations;
+	
+	private BulkOperations bulkOperations;
+	
+	private GameWriteBehind writeBehind;
+	
+	@Before
+	public void setUp() {
+		MappingMongoConverter converter = new MappingMongoConverter(NoOpDbRefResolver.INSTANCE, new MongoMappingContext());
+		converter.afterPropertiesSet();
+		mongoOperations = mock(MongoOperations.class);
+		bulkOperations = mock(BulkOperations.class);
+		when(mongoOperations.getConverter()).thenReturn(converter);
+		when(mongoOperations.bulkOps(eq(BulkMode.UNORDERED), eq(Game.class))).thenReturn(bulkOperations);
+		//long interval so only explicit flushes happen
+		writeBehind = new GameWriteBehind(mongoOperations, Duration.ofHours(1), 3, 100);
+	}
+	
+	@After
+	public void tearDown() {
+		writeBehind.shutdown();
+	}
+	
+	@Test
+	public void whenGameIsChangedSeveralTimesThenItIsWrittenOnce() throws WrongParametersException {
+		Game game = Game.createGame((short)8, (short)8, 10);
+		writeBehind.enqueue(game);
+		game.flagCell(new Cell.Coordinates((short)1, (short)1));
+		writeBehind.enqueue(game);
+		game.flagCell(new Cell.Coordinates((short)1, (short)1));
+		writeBehind.enqueue(game);
+		assertEquals(1, writeBehind.getPending());
+		writeBehind.flushAll();
+		assertEquals(0, writeBehind.getPending());
+		assertEquals(1L, writeBehind.getWritten());
+		verify(bulkOperations, times(1)).upsert(any(Query.class), any(Update.class));
+		verify(bulkOperations, times(1)).execute();
+	}
+	
+	@Test
+	public void whenManyGamesArePendingThenTheyAreWrittenInBatches() throws WrongParametersException {
+		for(int ix = 0; ix < 7; ix++) {
+			writeBehind.enqueue(Game.createGame((short)3, (short)3, 1));
+		}
+		writeBehind.flushAll();
+		assertEquals(7L, writeBehind.getWritten());
+		verify(bulkOperations, times(7)).upsert(any(Query.class), any(Update.class));
+		//batches of 3, some may have been flushed by the background thread already
+		verify(bulkOperations, times(3)).execute();
+	}
+	
+	@Test
+	public void whenTooManyGamesArePendingThenEnqueuingFlushesAndOffersAreRefused() throws WrongParametersException {
+		GameWriteBehind offered = new GameWriteBehind(mongoOperations, Duration.ofHours(1), 2, 4);
+		GameWriteBehind enqueued = new GameWriteBehind(mongoOperations, Duration.ofHours(1), 2, 2);
+		try {
+			//no background flush takes games meanwhile
+			offered.shutdown();
+			List<Game> games = new ArrayList<>();
+			for(int ix = 0; ix < 4; ix++) {
+				Game game = Game.createGame((short)3, (short)3, 1);
+				games.add(game);
+				assertTrue(offered.offer(game));
+			}
+			assertFalse(offered.offer(Game.createGame((short)3, (short)3, 1)));
+			//already pending, coalesced
+			assertTrue(offered.offer(games.get(0)));
+			assertEquals(1L, offered.getRefused());
+			assertEquals(4, offered.getPending());
+			verify(bulkOperations, never()).execute();
+
+			//backpressure, caller tries a flush itself
+			List<String> flushingThreads = new ArrayList<>();
+			when(bulkOperations.execute()).thenAnswer(invocation -> {
+				flushingThreads.add(Thread.currentThread().getName());
+				throw new DataAccessResourceFailureException("slow");
+			});
+			enqueued.enqueue(Game.createGame((short)3, (short)3, 1));
+			assertTrue(flushingThreads.isEmpty());
+			enqueued.enqueue(Game.createGame((short)3, (short)3, 1));
+			assertEquals(Collections.singletonList(Thread.currentThread().getName()), flushingThreads);
+			assertEquals(2, enqueued.getPending());
+		} finally {
+			reset(bulkOperations);
+			enqueued.shutdown();
+		}
+	}
+	
+	@Test
+	public void whenGamesAreWrittenThenListenersGetTheirMoveCounts() throws WrongParametersException {
+		Map<String, Long> written = new LinkedHashMap<>();
+		writeBehind.addSnapshotListener(written::putAll);
+		Game game = Game.createGame((short)8, (short)8, 10);
+		game.flagCell(new Cell.Coordinates((short)1, (short)1));
+		game.flagCell(new Cell.Coordinates((short)2, (short)2));
+		writeBehind.enqueue(game);
+		writeBehind.flushAll();
+		assertEquals(Collections.singletonMap(game.getId(), 2L), written);
+	}
+	
+	@Test
+	public void whenBatchCannotBeWrittenThenListenersAreNotTold() throws WrongParametersException {
+		Map<String, Long> written = new LinkedHashMap<>();
+		writeBehind.addSnapshotListener(written::putAll);
+		when(bulkOperations.execute()).thenThrow(new DataAccessResourceFailureException("down"));
+		Game game = Game.createGame((short)8, (short)8, 10);
+		writeBehind.enqueue(game);
+		assertEquals(0, writeBehind.flushBatch());
+		assertEquals(Collections.emptyMap(), written);
+		assertEquals(1, writeBehind.getPending());
+	}
+
+}
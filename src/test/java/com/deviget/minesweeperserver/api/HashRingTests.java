@@ -0,0 +1,69 @@
+package com.deviget.minesweeperserver.api;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.bson.types.ObjectId;
+import org.junit.Test;
+
+public class HashRingTests {
+
+	private static final int GAMES = 30000;
+
+	@Test
+	public void whenNodesAreGivenInAnyOrderThenRingIsTheSame() {
+		HashRing ring = new HashRing(Arrays.asList("node-a", "node-b", "node-c"));
+		HashRing shuffled = new HashRing(Arrays.asList("node-c", "node-a", "node-b", "node-a"));
+		assertEquals(ring, shuffled);
+		assertEquals(Arrays.asList("node-a", "node-b", "node-c"), shuffled.getNodes());
+		for(int ix = 0; ix < 1000; ix++) {
+			ObjectId gameId = ObjectId.get();
+			assertEquals(ring.ownerOf(gameId), shuffled.ownerOf(gameId));
+			assertEquals(ring.ownerOf(gameId), ring.ownerOf(gameId.toHexString()));
+		}
+	}
+
+	@Test
+	public void whenGamesAreCreatedThenTheyAreSpreadAmongNodes() {
+		HashRing ring = new HashRing(Arrays.asList("node-a", "node-b", "node-c"));
+		Map<String, Integer> owned = new HashMap<>();
+		for(int ix = 0; ix < GAMES; ix++) {
+			owned.merge(ring.ownerOf(ObjectId.get()), 1, Integer::sum);
+		}
+		assertEquals(3, owned.size());
+		for(int count : owned.values()) {
+			assertTrue("Owned " + owned, count > GAMES / 5 && count < GAMES / 2);
+		}
+	}
+
+	@Test
+	public void whenNodeJoinsThenOnlyGamesItTakesMove() {
+		HashRing ring = new HashRing(Arrays.asList("node-a", "node-b", "node-c"));
+		HashRing joined = new HashRing(Arrays.asList("node-a", "node-b", "node-c", "node-d"));
+		int moved = 0;
+		for(int ix = 0; ix < GAMES; ix++) {
+			ObjectId gameId = ObjectId.get();
+			String owner = ring.ownerOf(gameId);
+			String newOwner = joined.ownerOf(gameId);
+			if(!owner.equals(newOwner)) {
+				assertEquals("node-d", newOwner);
+				moved++;
+			}
+		}
+		assertTrue("Moved " + moved, moved > GAMES / 8 && moved < GAMES / 3);
+	}
+
+	@Test
+	public void whenRingIsEmptyThenNoNodeOwnsGames() {
+		HashRing ring = new HashRing(Collections.emptyList());
+		assertTrue(ring.isEmpty());
+		assertNull(ring.ownerOf(ObjectId.get()));
+	}
+
+}
@@ -0,0 +1,120 @@
+package com.deviget.minesweeperserver.api;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.bson.types.ObjectId;
+import org.junit.Before;
+import org.junit.Test;
+
+public class InMemoryGameStoreTests {
+	
+	private GameWriteBehind gameWriteBehind;
+	
+	private GameMoveLogService gameMoveLog;
+	
+	private AtomicLong now;
+	
+	@Before
+	public void setUp() {
+		gameWriteBehind = mock(GameWriteBehind.class);
+		gameMoveLog = mock(GameMoveLogService.class);
+		now = new AtomicLong();
+	}
+	
+	@Test
+	public void whenStoredGameIsLookedUpThenItIsAHit() throws WrongParametersException {
+		InMemoryGameStore store = new InMemoryGameStore(16, Duration.ofMinutes(1), gameWriteBehind, gameMoveLog, Collections.singletonList(gameMoveLog), new ExpirationWheel(), now::get);
+		Game game = Game.createGame((short)3, (short)3, 1);
+		store.put(game);
+		assertSame(game, store.get(game.getId()));
+		assertNull(store.get("unknown"));
+		assertEquals(1L, store.getStats().getHits());
+		assertEquals(1L, store.getStats().getMisses());
+	}
+	
+	@Test
+	public void whenStoreIsFullThenLeastRecentlyUsedGamesAreSpilled() throws WrongParametersException {
+		InMemoryGameStore store = new InMemoryGameStore(16, Duration.ofMinutes(1), gameWriteBehind, gameMoveLog, Collections.singletonList(gameMoveLog), new ExpirationWheel(), now::get);
+		List<Game> games = new ArrayList<>();
+		for(int ix = 0; ix < 200; ix++) {
+			Game game = Game.createGame((short)3, (short)3, 1);
+			games.add(game);
+			store.put(game);
+		}
+		//one game per segment at most
+		assertTrue(store.size() <= 16);
+		long evictions = store.getStats().getEvictions();
+		assertEquals(200 - store.size(), evictions);
+		verify(gameWriteBehind, times((int)evictions)).enqueue(any(Game.class));
+	}
+	
+	@Test
+	public void whenGameIsIdleForTooLongThenItIsEvicted() throws WrongParametersException {
+		InMemoryGameStore store = new InMemoryGameStore(1600, Duration.ofSeconds(10), gameWriteBehind, gameMoveLog, Collections.singletonList(gameMoveLog), new ExpirationWheel(), now::get);
+		Game game = Game.createGame((short)3, (short)3, 1);
+		store.put(game);
+		now.addAndGet(Duration.ofSeconds(11).toNanos());
+		assertNull(store.get(game.getId()));
+		assertEquals(1L, store.getStats().getEvictions());
+		verify(gameWriteBehind).enqueue(game);
+	}
+	
+	@Test
+	public void whenSpilledGameIsNotWrittenYetThenItIsTakenBackFromWriteBehind() throws WrongParametersException {
+		InMemoryGameStore store = new InMemoryGameStore(1600, Duration.ofSeconds(10), gameWriteBehind, gameMoveLog, Collections.singletonList(gameMoveLog), new ExpirationWheel(), now::get);
+		Game game = Game.createGame((short)3, (short)3, 1);
+		store.put(game);
+		now.addAndGet(Duration.ofSeconds(11).toNanos());
+		when(gameWriteBehind.getPendingGame(game.getId())).thenReturn(game);
+		
+		//evicted on lookup, then reloaded as it was spilled
+		assertSame(game, store.get(game.getId()));
+		verify(gameWriteBehind).enqueue(game);
+		assertEquals(1L, store.getStats().getEvictions());
+		assertEquals(1L, store.getStats().getLoads());
+		verify(gameMoveLog, never()).recover(game.getId());
+	}
+	
+	@Test
+	public void whenSpilledGameIsLookedUpThenItIsReloaded() throws WrongParametersException {
+		InMemoryGameStore store = new InMemoryGameStore(1600, Duration.ofSeconds(10), gameWriteBehind, gameMoveLog, Collections.singletonList(gameMoveLog), new ExpirationWheel(), now::get);
+		Game game = Game.createGame((short)3, (short)3, 1);
+		when(gameMoveLog.recover(game.getId())).thenReturn(game);
+		assertSame(game, store.get(game.getId()));
+		assertSame(game, store.get(game.getId()));
+		assertEquals(1L, store.getStats().getLoads());
+		assertEquals(1L, store.getStats().getHits());
+		verify(gameWriteBehind, never()).enqueue(any(Game.class));
+	}
+	
+	@Test
+	public void whenGameWasReplacedThenConditionalRemovalKeepsIt() throws WrongParametersException {
+		InMemoryGameStore store = new InMemoryGameStore(1600, Duration.ofMinutes(1), gameWriteBehind, gameMoveLog, Collections.singletonList(gameMoveLog), new ExpirationWheel(), now::get);
+		Game game = Game.createGame((short)3, (short)3, 1);
+		store.put(game);
+		Game reloaded = Game.restoreGame(new ObjectId(game.getId()), game.getCreatedAt(), (short)3, (short)3, 1, false, game.getSeed());
+		store.put(reloaded);
+		
+		assertFalse(store.remove(game.getId(), game));
+		assertSame(reloaded, store.getIfPresent(game.getId()));
+		assertTrue(store.remove(game.getId(), reloaded));
+		assertNull(store.getIfPresent(game.getId()));
+	}
+
+}
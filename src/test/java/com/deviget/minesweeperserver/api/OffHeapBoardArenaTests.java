@@ -0,0 +1,159 @@
+package com.deviget.minesweeperserver.api;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.SplittableRandom;
+import java.util.function.BooleanSupplier;
+
+import org.bson.types.ObjectId;
+import org.junit.After;
+import org.junit.Test;
+import org.springframework.util.unit.DataSize;
+
+import com.deviget.minesweeperserver.api.Game.Cell;
+import com.deviget.minesweeperserver.api.Game.Cell.FlaggedStatus;
+
+public class OffHeapBoardArenaTests {
+
+	private OffHeapBoardArena arena;
+
+	@After
+	public void tearDown() {
+		if(arena != null) {
+			arena.deactivate();
+		}
+	}
+
+	private OffHeapBoardArena activate(long slabSize, long maxSize) {
+		arena = new OffHeapBoardArena(true, DataSize.ofBytes(0L), DataSize.ofBytes(slabSize), DataSize.ofBytes(maxSize));
+		arena.activate();
+		return arena;
+	}
+
+	@Test
+	public void whenArenaIsActiveThenBoardsAreKeptOffHeapAndPlayTheSame() throws Exception {
+		Board heapBoard = new Board((short)16, (short)30);
+		heapBoard.placeMines(99, new SplittableRandom(7L), 0);
+		Game heapGame = Game.createGame((short)16, (short)30, 99);
+
+		activate(4096L, 65536L);
+		Board board = new Board((short)16, (short)30);
+		assertTrue(board.isOffHeap());
+		board.placeMines(99, new SplittableRandom(7L), 0);
+		assertEquals(heapBoard, board);
+		assertEquals(heapBoard.hashCode(), board.hashCode());
+		board.setFlaggedStatus(5, FlaggedStatus.QUESTION_MARK);
+		board.setRevealed(5);
+		assertEquals(FlaggedStatus.QUESTION_MARK, board.getFlaggedStatus(5));
+		assertTrue(board.isRevealed(5));
+		assertEquals(heapBoard.getAdjMinesNumber(5), board.getAdjMinesNumber(5));
+		assertFalse(heapBoard.equals(board));
+
+		//written as a heap board
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		try(ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+			out.writeObject(board);
+		}
+		try(ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+			Board read = (Board) in.readObject();
+			assertFalse(read.isOffHeap());
+			assertEquals(board, read);
+		}
+
+		Game game = Game.restoreGame(new ObjectId(heapGame.getId()), heapGame.getCreatedAt(), (short)16, (short)30, 99,
+			false, heapGame.getSeed());
+		assertTrue(game.getBoard().isOffHeap());
+		assertEquals(heapGame.getBoard(), game.getBoard());
+		Cell.Coordinates safeCell = heapGame.getCells().stream().filter(cell -> !cell.isHasMine()).findFirst().get()
+			.getCoordinates();
+		assertEquals(heapGame.revealCell(safeCell).getAdjCellsRevealedCount(), game.revealCell(safeCell).getAdjCellsRevealedCount());
+		assertEquals(heapGame.getBoard(), game.getBoard());
+		assertEquals(2L, arena.getAllocated());
+		assertEquals(2 * 512L, arena.getInUse());
+		assertEquals(4096L, arena.getReserved());
+	}
+
+	@Test
+	public void whenBoardIsUnreachableThenItsSliceIsRecycledZeroed() throws Exception {
+		//a single slice
+		activate(64L, 64L);
+		Board board = new Board((short)8, (short)8);
+		board.placeMines(10, new SplittableRandom(7L), -1);
+		assertTrue(board.isOffHeap());
+		//arena is full
+		assertFalse(new Board((short)8, (short)8).isOffHeap());
+		assertEquals(1L, arena.getFallbacks());
+
+		board = null;
+		await(() -> {
+			System.gc();
+			return arena.getRecycled() == 1L;
+		});
+		assertEquals(0L, arena.getInUse());
+		Board recycled = new Board((short)8, (short)8);
+		assertTrue(recycled.isOffHeap());
+		assertEquals(new Board((short)8, (short)8, new byte[64]), recycled);
+		assertEquals(64L, arena.getReserved());
+	}
+
+	@Test
+	public void whenBoardIsLargerThanSlabThenItGetsABufferOfItsOwn() throws Exception {
+		activate(1024L, 8192L);
+		Board board = new Board((short)50, (short)50);
+		assertTrue(board.isOffHeap());
+		assertEquals(2500L, arena.getReserved());
+		assertFalse(new Board((short)100, (short)100).isOffHeap());
+
+		board = null;
+		await(() -> {
+			System.gc();
+			return arena.getRecycled() == 1L;
+		});
+		assertEquals(0L, arena.getReserved());
+	}
+
+	@Test
+	public void whenArenaIsNotActiveThenBoardsAreKeptOnHeap() {
+		OffHeapBoardArena disabled = new OffHeapBoardArena(false, DataSize.ofKilobytes(4L), DataSize.ofMegabytes(4L),
+			DataSize.ofGigabytes(1L));
+		disabled.activate();
+		assertNull(OffHeapBoardArena.getActive());
+		assertFalse(new Board((short)8, (short)8).isOffHeap());
+
+		//small boards
+		arena = new OffHeapBoardArena(true, DataSize.ofKilobytes(4L), DataSize.ofMegabytes(4L), DataSize.ofGigabytes(1L));
+		arena.activate();
+		assertFalse(new Board((short)16, (short)30).isOffHeap());
+		assertTrue(new Board((short)64, (short)64).isOffHeap());
+		assertEquals(0L, arena.getFallbacks());
+		arena.deactivate();
+
+		activate(4096L, 65536L).deactivate();
+		assertFalse(new Board((short)8, (short)8).isOffHeap());
+	}
+
+	@Test
+	public void whenSizeIsGivenThenSmallestSliceClassHoldingItIsPicked() {
+		assertEquals(0, OffHeapBoardArena.sliceClassOf(1));
+		assertEquals(0, OffHeapBoardArena.sliceClassOf(64));
+		assertEquals(1, OffHeapBoardArena.sliceClassOf(65));
+		assertEquals(3, OffHeapBoardArena.sliceClassOf(480));
+		assertEquals(8, OffHeapBoardArena.sliceClassOf(10000));
+	}
+
+	private static void await(BooleanSupplier condition) throws InterruptedException {
+		long deadline = System.currentTimeMillis() + 10000L;
+		while(!condition.getAsBoolean()) {
+			assertTrue("Slice wasn't recycled", System.currentTimeMillis() < deadline);
+			Thread.sleep(50L);
+		}
+	}
+
+}
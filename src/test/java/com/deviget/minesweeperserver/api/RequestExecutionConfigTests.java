@@ -0,0 +1,47 @@
+package com.deviget.minesweeperserver.api;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.catalina.connector.Connector;
+import org.junit.Test;
+import org.springframework.boot.web.embedded.tomcat.TomcatServletWebServerFactory;
+
+public class RequestExecutionConfigTests {
+
+	@Test
+	public void whenFactoryIsCustomizedThenConnectorsHandleRequestsOnGivenExecutor() {
+		ExecutorService executor = Executors.newSingleThreadExecutor();
+		try {
+			TomcatServletWebServerFactory factory = new TomcatServletWebServerFactory();
+			RequestExecutionConfig.customizerFor(executor).customize(factory);
+			Connector connector = new Connector();
+			factory.getTomcatConnectorCustomizers().forEach(customizer -> customizer.customize(connector));
+			assertSame(executor, connector.getProtocolHandler().getExecutor());
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	@Test
+	public void whenRuntimeHasVirtualThreadsThenTasksRunOnThem() throws Exception {
+		ExecutorService executor = RequestExecutionConfig.newVirtualThreadPerTaskExecutor();
+		if(Runtime.version().feature() < 21) {
+			assertNull(executor);
+			return;
+		}
+		try {
+			Object virtual = executor.submit(() -> Thread.class.getMethod("isVirtual").invoke(Thread.currentThread()))
+				.get(5, TimeUnit.SECONDS);
+			assertEquals(Boolean.TRUE, virtual);
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+}